@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.api;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.CheckedFuture;
+import java.util.Collection;
+import java.util.Map;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataBrokerExtension;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+
+/**
+ * {@link DOMDataBrokerExtension} of the cached mount points reading many paths at once, from a single snapshot of the
+ * data store: the results are consistent with each other, and come in a single future.
+ */
+public interface CachedDOMBulkReadService extends DOMDataBrokerExtension {
+
+    /**
+     * @return the data at each path, in the order of {@code paths}, absent where there is none
+     */
+    CheckedFuture<Map<YangInstanceIdentifier, Optional<NormalizedNode<?, ?>>>, ReadFailedException> readAll(
+            LogicalDatastoreType store, Collection<YangInstanceIdentifier> paths);
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.api;
+
+import org.opendaylight.controller.md.sal.dom.api.DOMDataBrokerExtension;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeIdentifier;
+import org.reactivestreams.Publisher;
+
+/**
+ * {@link DOMDataBrokerExtension} of the cached mount points publishing the changes of a subtree as a stream with
+ * backpressure: each subscriber gets the changes it requests, the ones it does not keep up with are conflated, and it
+ * can resume after the last change it processed. Java 9+ consumers can adapt the publisher to
+ * {@code java.util.concurrent.Flow} with {@code org.reactivestreams.FlowAdapters}.
+ */
+public interface CachedDOMChangeStreamService extends DOMDataBrokerExtension {
+
+    /**
+     * Only the changes made after subscribing.
+     */
+    long LATEST = -1;
+
+    /**
+     * All the changes the stream still holds, then the new ones.
+     */
+    long EARLIEST = 0;
+
+    /**
+     * @param fromSequence the {@link CachedDataTreeChange#getSequence()} of the last change processed, to get the
+     *                     changes after it, or {@link #LATEST} or {@link #EARLIEST}. Subscribers resuming from a
+     *                     change the stream no longer holds are failed with an {@link IllegalArgumentException}.
+     * @return a publisher of the changes of the subtree
+     */
+    Publisher<CachedDataTreeChange> getChangeStream(DOMDataTreeIdentifier treeId, long fromSequence);
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.api;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidate;
+
+/**
+ * A change published by a {@link CachedDOMChangeStreamService change stream}, numbered by the stream. The changes a subscriber did not keep up with are
+ * conflated: a conflated change is the net difference of the changes numbered {@link #getFirstSequence()} to
+ * {@link #getSequence()}.
+ */
+public final class CachedDataTreeChange {
+
+    private final long firstSequence;
+    private final long sequence;
+    private final DataTreeCandidate candidate;
+
+    public CachedDataTreeChange(final long sequence, final DataTreeCandidate candidate) {
+        this(sequence, sequence, candidate);
+    }
+
+    /**
+     * A conflated change.
+     */
+    public CachedDataTreeChange(final long firstSequence, final long sequence, final DataTreeCandidate candidate) {
+        Preconditions.checkArgument(firstSequence <= sequence, "Change %s ends before its first change %s", sequence,
+                firstSequence);
+        this.firstSequence = firstSequence;
+        this.sequence = sequence;
+        this.candidate = Preconditions.checkNotNull(candidate);
+    }
+
+    /**
+     * @return the sequence number of the first change this one holds, {@link #getSequence()} unless conflated
+     */
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * @return the sequence number of the change, the one to resume from once it is processed
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isConflated() {
+        return firstSequence != sequence;
+    }
+
+    public DataTreeCandidate getCandidate() {
+        return candidate;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("firstSequence", firstSequence).add("sequence", sequence)
+                .add("path", candidate.getRootPath()).toString();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.api;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+
+/**
+ * Reads the same paths from many cached mount points at once, e.g. to build a view across all the nodes. The results
+ * are handed over node by node, as soon as each one is read, rather than collected.
+ */
+public interface CachedMountPointReadService {
+
+    /**
+     * Receives the results of a read. It may be called from several threads at once.
+     */
+    interface ResultListener {
+        /**
+         * @param data the data at each path, in the order of the requested paths, absent where there is none
+         */
+        void onResult(String nodeId, Map<YangInstanceIdentifier, Optional<NormalizedNode<?, ?>>> data);
+
+        void onFailure(String nodeId, Throwable cause);
+    }
+
+    /**
+     * Read the paths from each cached mount point accepted by {@code nodeFilter}, each one from a single snapshot of
+     * its data store, reading at most {@code parallelism} mount points at a time. Mount points created in lazy mode
+     * whose data stores are not active are skipped: the listener is not notified of them. Cancelling the returned
+     * future stops reading the remaining mount points.
+     *
+     * @return the number of mount points read successfully, once they are all read
+     */
+    default ListenableFuture<Integer> read(final LogicalDatastoreType store,
+                                           final Collection<YangInstanceIdentifier> paths,
+                                           final Predicate<String> nodeFilter, final int parallelism,
+                                           final ResultListener listener) {
+        return read(store, paths, nodeFilter, parallelism, false, listener);
+    }
+
+    /**
+     * Same as {@link #read(LogicalDatastoreType, Collection, Predicate, int, ResultListener)}, optionally activating
+     * the lazy mount points whose data stores are not active.
+     *
+     * @param activateInactive whether to activate the data stores of the lazy mount points to read them, restoring
+     *                         their persisted data. Across many nodes this may exceed the maximum number of active
+     *                         mount points, until the idle ones are released.
+     * @return the number of mount points read successfully, once they are all read
+     */
+    ListenableFuture<Integer> read(LogicalDatastoreType store, Collection<YangInstanceIdentifier> paths,
+                                   Predicate<String> nodeFilter, int parallelism, boolean activateInactive,
+                                   ResultListener listener);
+}
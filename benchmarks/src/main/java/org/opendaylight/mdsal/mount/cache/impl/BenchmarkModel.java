@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.impl.schema.Builders;
+import org.opendaylight.yangtools.yang.data.impl.schema.ImmutableNodes;
+import org.opendaylight.yangtools.yang.data.impl.schema.builder.api.DataContainerNodeAttrBuilder;
+
+/**
+ * Models used by the benchmarks, written to the cached mount point schema directory. A model of size 1 is the
+ * {@code car} demo model, larger ones are generated with that many top-level containers of {@code uint8} leaves.
+ */
+final class BenchmarkModel {
+
+    private static final String CAR_MODEL = "car@2016-06-09.yang";
+    private static final String CAR_NAMESPACE = "urn:opendaylight:car";
+    private static final String CAR_REVISION = "2016-06-09";
+
+    private static final String GENERATED_MODULE = "bench-model";
+    private static final String GENERATED_NAMESPACE = "urn:opendaylight:bench-model";
+    private static final String GENERATED_REVISION = "2017-02-01";
+    private static final int GENERATED_LEAF_COUNT = 5;
+
+    private final String schemaCacheDirectory;
+    private final Collection<String> capabilities;
+    private final List<QName> containers;
+    private final List<List<QName>> leaves;
+
+    private BenchmarkModel(final String schemaCacheDirectory, final Collection<String> capabilities,
+                           final List<QName> containers, final List<List<QName>> leaves) {
+        this.schemaCacheDirectory = schemaCacheDirectory;
+        this.capabilities = capabilities;
+        this.containers = containers;
+        this.leaves = leaves;
+    }
+
+    static BenchmarkModel create(final int size) {
+        try {
+            return size <= 1 ? carModel() : generatedModel(size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the benchmark model", e);
+        }
+    }
+
+    private static BenchmarkModel carModel() throws IOException {
+        final String directory = "jmh-car";
+        try (InputStream model = BenchmarkModel.class.getClassLoader().getResourceAsStream(CAR_MODEL)) {
+            Files.copy(model, schemaDirectory(directory).resolve(CAR_MODEL), StandardCopyOption.REPLACE_EXISTING);
+        }
+        final QName carInfo = QName.create(CAR_NAMESPACE, CAR_REVISION, "car-info");
+        return new BenchmarkModel(directory,
+                Collections.singletonList(CAR_NAMESPACE + "?module=car&revision=" + CAR_REVISION),
+                Collections.singletonList(carInfo),
+                Collections.singletonList(ImmutableList.of(QName.create(carInfo, "max-speed"),
+                        QName.create(carInfo, "car-id"))));
+    }
+
+    private static BenchmarkModel generatedModel(final int size) throws IOException {
+        final String directory = "jmh-model-" + size;
+        final StringBuilder module = new StringBuilder()
+                .append("module ").append(GENERATED_MODULE).append(" {\n")
+                .append("    namespace \"").append(GENERATED_NAMESPACE).append("\";\n")
+                .append("    prefix \"bm\";\n\n")
+                .append("    revision ").append(GENERATED_REVISION).append(" {\n")
+                .append("        description \"Generated benchmark model\";\n")
+                .append("    }\n");
+
+        final List<QName> containers = new ArrayList<>(size);
+        final List<List<QName>> leaves = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final QName container = QName.create(GENERATED_NAMESPACE, GENERATED_REVISION, "container-" + i);
+            final List<QName> containerLeaves = new ArrayList<>(GENERATED_LEAF_COUNT);
+            module.append("\n    container ").append(container.getLocalName()).append(" {\n");
+            for (int j = 0; j < GENERATED_LEAF_COUNT; j++) {
+                final QName leaf = QName.create(container, "leaf-" + j);
+                containerLeaves.add(leaf);
+                module.append("        leaf ").append(leaf.getLocalName()).append(" {\n")
+                        .append("            type uint8;\n")
+                        .append("        }\n");
+            }
+            module.append("    }\n");
+            containers.add(container);
+            leaves.add(containerLeaves);
+        }
+        module.append("}\n");
+
+        Files.write(schemaDirectory(directory).resolve(GENERATED_MODULE + "@" + GENERATED_REVISION + ".yang"),
+                module.toString().getBytes(StandardCharsets.UTF_8));
+        return new BenchmarkModel(directory,
+                Collections.singletonList(GENERATED_NAMESPACE + "?module=" + GENERATED_MODULE + "&revision="
+                        + GENERATED_REVISION),
+                containers, leaves);
+    }
+
+    private static Path schemaDirectory(final String directory) throws IOException {
+        return Files.createDirectories(Paths.get(CachedSchemaRepository.DEFAULT_CACHED_MOUNT_POINT_DIRECTORY,
+                directory));
+    }
+
+    String getSchemaCacheDirectory() {
+        return schemaCacheDirectory;
+    }
+
+    Collection<String> getCapabilities() {
+        return capabilities;
+    }
+
+    int size() {
+        return containers.size();
+    }
+
+    YangInstanceIdentifier containerPath(final int index) {
+        return YangInstanceIdentifier.of(containers.get(index));
+    }
+
+    NormalizedNode<?, ?> containerData(final int index, final short value) {
+        final DataContainerNodeAttrBuilder<NodeIdentifier, ContainerNode> builder = Builders.containerBuilder()
+                .withNodeIdentifier(new NodeIdentifier(containers.get(index)));
+        for (QName leaf : leaves.get(index)) {
+            builder.withChild(ImmutableNodes.leafNode(leaf, value));
+        }
+        return builder.build();
+    }
+}
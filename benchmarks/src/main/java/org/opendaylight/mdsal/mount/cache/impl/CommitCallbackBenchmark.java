@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataWriteTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMDataBroker;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.mdsal.mount.cache.impl.listener.CachedDataTreeChangeDispatcher;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMWriteBatcher;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.executors.executor.isolation.CommitCallback;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from the submission of a write transaction to the run of its client callback, on the default commit callback
+ * pool and on virtual threads. Each transaction also gets a slow consumer callback, sleeping for
+ * {@code slowConsumerMillis}, which holds a pool thread meanwhile. The transactions go through group commit, so that
+ * their futures complete on the batcher's thread and the callbacks are handed over to the executor; the sample mode
+ * reports the p99.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class CommitCallbackBenchmark {
+
+    @Param({"POOL", "VIRTUALTHREADS"})
+    public CommitCallback.ExecutionMode mode;
+
+    @Param({"0", "5"})
+    public long slowConsumerMillis;
+
+    private BenchmarkModel model;
+    private CachedSchemaRepository schemaRepository;
+    private ScheduledExecutorService scheduler;
+    private CachedMountPointExecutors callbackExecutors;
+    private CachedDOMDataBroker broker;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkModel.create(1);
+        schemaRepository = CachedSchemaRepository.newInstance("benchmark", model.getSchemaCacheDirectory(),
+                model.getCapabilities());
+        final CachedDOMStores stores = CachedDOMStores.create(
+                YangInstanceIdentifier.of(QName.create("urn:opendaylight:benchmark", "node")),
+                schemaRepository.getSchemaContext());
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        callbackExecutors = new CachedMountPointExecutors();
+        // The defaults of the executor-isolation container
+        final CachedMountPointExecutors.Lease lease = callbackExecutors.acquire("benchmark", mode, 20, 1000,
+                CommitCallback.RejectionPolicy.BLOCK);
+        final CachedMountPointStats stats = new CachedMountPointStats("benchmark");
+        final CachedDOMWriteBatcher writeBatcher = new CachedDOMWriteBatcher("benchmark", stores::getStore,
+                lease.getExecutor(), scheduler, 100, 64, null, stats);
+        broker = new CachedDOMDataBroker("benchmark", stores, lease.getExecutor(), writeBatcher, null,
+                new CachedDataTreeChangeDispatcher("benchmark", stores, MoreExecutors.directExecutor(), null, 0),
+                stats, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.close();
+        callbackExecutors.close();
+        scheduler.shutdownNow();
+        schemaRepository.close();
+    }
+
+    @Benchmark
+    public void submitToCallback() throws InterruptedException {
+        final DOMDataWriteTransaction transaction = broker.newWriteOnlyTransaction();
+        transaction.put(LogicalDatastoreType.CONFIGURATION, model.containerPath(0),
+                model.containerData(0, (short) ThreadLocalRandom.current().nextInt(256)));
+        final ListenableFuture<Void> future = transaction.submit();
+        if (slowConsumerMillis > 0) {
+            future.addListener(this::slowConsumer, MoreExecutors.directExecutor());
+        }
+        final CountDownLatch called = new CountDownLatch(1);
+        future.addListener(called::countDown, MoreExecutors.directExecutor());
+        called.await();
+    }
+
+    private void slowConsumer() {
+        try {
+            Thread.sleep(slowConsumerMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataReadWriteTransaction;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataWriteTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMDataBroker;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.mdsal.mount.cache.impl.listener.CachedDataTreeChangeDispatcher;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read, write and read-write transactions on the {@link CachedDOMDataBroker}s of {@code nodeCount} mount points,
+ * each operation picking a random mount point and a random top-level container of the model. The bulk read reads all
+ * the containers of a random mount point at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DataBrokerBenchmark {
+
+    private static final String NAMESPACE = "urn:opendaylight:benchmark";
+
+    @Param({"1", "100"})
+    public int modelSize;
+
+    @Param({"1", "100"})
+    public int nodeCount;
+
+    private BenchmarkModel model;
+    private CachedSchemaRepository schemaRepository;
+    private final List<CachedDOMDataBroker> brokers = new ArrayList<>();
+    private final List<YangInstanceIdentifier> containerPaths = new ArrayList<>();
+
+    @Setup
+    public void setup() throws TransactionCommitFailedException {
+        model = BenchmarkModel.create(modelSize);
+        schemaRepository = CachedSchemaRepository.newInstance("benchmark", model.getSchemaCacheDirectory(),
+                model.getCapabilities());
+        final SchemaContext schemaContext = schemaRepository.getSchemaContext();
+        for (int c = 0; c < model.size(); c++) {
+            containerPaths.add(model.containerPath(c));
+        }
+
+        for (int i = 0; i < nodeCount; i++) {
+            final YangInstanceIdentifier mountPath = YangInstanceIdentifier.of(QName.create(NAMESPACE, "node-" + i));
+            final CachedDOMStores stores = CachedDOMStores.create(mountPath, schemaContext);
+            final CachedDOMDataBroker broker = new CachedDOMDataBroker("node-" + i, stores,
+                    MoreExecutors.directExecutor(), null, null, new CachedDataTreeChangeDispatcher("node-" + i,
+                            stores, MoreExecutors.directExecutor(), null, 0),
+                    new CachedMountPointStats("node-" + i), null);
+
+            final DOMDataWriteTransaction transaction = broker.newWriteOnlyTransaction();
+            for (int c = 0; c < model.size(); c++) {
+                transaction.put(LogicalDatastoreType.CONFIGURATION, model.containerPath(c),
+                        model.containerData(c, (short) 0));
+            }
+            transaction.submit().checkedGet();
+            brokers.add(broker);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        brokers.forEach(CachedDOMDataBroker::close);
+        brokers.clear();
+        containerPaths.clear();
+        schemaRepository.close();
+    }
+
+    @Benchmark
+    public Object read() throws ReadFailedException {
+        final int container = ThreadLocalRandom.current().nextInt(model.size());
+        try (DOMDataReadOnlyTransaction transaction = randomBroker().newReadOnlyTransaction()) {
+            return transaction.read(LogicalDatastoreType.CONFIGURATION, model.containerPath(container)).checkedGet();
+        }
+    }
+
+    @Benchmark
+    public Object bulkRead() throws ReadFailedException {
+        return randomBroker().readAll(LogicalDatastoreType.CONFIGURATION, containerPaths).checkedGet();
+    }
+
+    @Benchmark
+    public void write() throws TransactionCommitFailedException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int container = random.nextInt(model.size());
+        final DOMDataWriteTransaction transaction = randomBroker().newWriteOnlyTransaction();
+        transaction.put(LogicalDatastoreType.CONFIGURATION, model.containerPath(container),
+                model.containerData(container, (short) random.nextInt(256)));
+        transaction.submit().checkedGet();
+    }
+
+    @Benchmark
+    public Object readWrite() throws ReadFailedException, TransactionCommitFailedException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int container = random.nextInt(model.size());
+        final DOMDataReadWriteTransaction transaction = randomBroker().newReadWriteTransaction();
+        final Object before = transaction.read(LogicalDatastoreType.CONFIGURATION, model.containerPath(container))
+                .checkedGet();
+        transaction.put(LogicalDatastoreType.CONFIGURATION, model.containerPath(container),
+                model.containerData(container, (short) random.nextInt(256)));
+        transaction.submit().checkedGet();
+        return before;
+    }
+
+    private CachedDOMDataBroker randomBroker() {
+        return brokers.get(ThreadLocalRandom.current().nextInt(brokers.size()));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeIdentifier;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataWriteTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMDataBroker;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.mdsal.mount.cache.impl.listener.CachedDataTreeChangeDispatcher;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from the submit of a write until all the {@code listenerCount} data tree change listeners registered on the
+ * written container have been notified.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DataTreeChangeListenerBenchmark {
+
+    @Param({"1", "100"})
+    public int modelSize;
+
+    @Param({"1", "10", "100"})
+    public int listenerCount;
+
+    private final AtomicLong notifications = new AtomicLong();
+    private final List<ListenerRegistration<DOMDataTreeChangeListener>> registrations = new ArrayList<>();
+
+    private BenchmarkModel model;
+    private CachedSchemaRepository schemaRepository;
+    private CachedDOMDataBroker broker;
+    private int writes;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkModel.create(modelSize);
+        schemaRepository = CachedSchemaRepository.newInstance("benchmark", model.getSchemaCacheDirectory(),
+                model.getCapabilities());
+        final CachedDOMStores stores = CachedDOMStores.create(
+                YangInstanceIdentifier.of(QName.create("urn:opendaylight:benchmark", "node")),
+                schemaRepository.getSchemaContext());
+        // No coalescing window, delivered on the notifying thread, to measure the notification path itself
+        broker = new CachedDOMDataBroker("benchmark", stores, MoreExecutors.directExecutor(), null, null,
+                new CachedDataTreeChangeDispatcher("benchmark", stores, MoreExecutors.directExecutor(), null, 0),
+                new CachedMountPointStats("benchmark"), null);
+
+        final DOMDataTreeIdentifier treeId = new DOMDataTreeIdentifier(LogicalDatastoreType.CONFIGURATION,
+                model.containerPath(0));
+        for (int i = 0; i < listenerCount; i++) {
+            final DOMDataTreeChangeListener listener = changes -> notifications.incrementAndGet();
+            registrations.add(broker.registerDataTreeChangeListener(treeId, listener));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        registrations.forEach(ListenerRegistration::close);
+        registrations.clear();
+        broker.close();
+        schemaRepository.close();
+    }
+
+    @Benchmark
+    public void writeAndNotify() throws TransactionCommitFailedException {
+        final long expected = notifications.get() + listenerCount;
+        final DOMDataWriteTransaction transaction = broker.newWriteOnlyTransaction();
+        transaction.put(LogicalDatastoreType.CONFIGURATION, model.containerPath(0),
+                model.containerData(0, (short) (writes++ & 0xFF)));
+        transaction.submit().checkedGet();
+
+        while (notifications.get() < expected) {
+            LockSupport.parkNanos(1000);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataWriteTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMDataBroker;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.mdsal.mount.cache.impl.listener.CachedDataTreeChangeDispatcher;
+import org.opendaylight.mdsal.mount.cache.impl.persistence.CachedMountPointJournal;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of a write transaction submitted to a {@link CachedDOMDataBroker}, with and without a
+ * {@link CachedMountPointJournal}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class JournalBenchmark {
+
+    @Param({"false", "true"})
+    public boolean journalEnabled;
+
+    @Param({"10"})
+    public long syncIntervalMillis;
+
+    private BenchmarkModel model;
+    private CachedSchemaRepository schemaRepository;
+    private ScheduledExecutorService scheduler;
+    private Path journalDirectory;
+    private CachedMountPointJournal journal;
+    private CachedDOMDataBroker broker;
+
+    @Setup
+    public void setup() throws IOException {
+        model = BenchmarkModel.create(1);
+        schemaRepository = CachedSchemaRepository.newInstance("benchmark", model.getSchemaCacheDirectory(),
+                model.getCapabilities());
+        final CachedDOMStores stores = CachedDOMStores.create(
+                YangInstanceIdentifier.of(QName.create("urn:opendaylight:benchmark", "node")),
+                schemaRepository.getSchemaContext());
+
+        if (journalEnabled) {
+            scheduler = Executors.newSingleThreadScheduledExecutor();
+            journalDirectory = Files.createTempDirectory("journal-benchmark");
+            journal = new CachedMountPointJournal("benchmark", journalDirectory.resolve("benchmark.journal"),
+                    scheduler, syncIntervalMillis);
+            journal.recover(stores, 0);
+        }
+        broker = new CachedDOMDataBroker("benchmark", stores, MoreExecutors.directExecutor(), null, journal,
+                new CachedDataTreeChangeDispatcher("benchmark", stores, MoreExecutors.directExecutor(), null, 0),
+                new CachedMountPointStats("benchmark"), null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        broker.close();
+        if (journal != null) {
+            journal.discard();
+            scheduler.shutdownNow();
+            Files.deleteIfExists(journalDirectory);
+        }
+        schemaRepository.close();
+    }
+
+    @Benchmark
+    public void submit() throws TransactionCommitFailedException {
+        final DOMDataWriteTransaction transaction = broker.newWriteOnlyTransaction();
+        transaction.put(LogicalDatastoreType.CONFIGURATION, model.containerPath(0),
+                model.containerData(0, (short) ThreadLocalRandom.current().nextInt(256)));
+        transaction.submit().checkedGet();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Time to create the {@link CachedSchemaRepository} of {@code nodeCount} mount points sharing the same model, then
+ * release them: the first one resolves the schema context, the others reuse it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class SchemaRepositoryBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int modelSize;
+
+    @Param({"1", "100", "1000"})
+    public int nodeCount;
+
+    private BenchmarkModel model;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkModel.create(modelSize);
+    }
+
+    @Benchmark
+    public void createSchemaRepositories(final Blackhole blackhole) {
+        final List<CachedSchemaRepository> repositories = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            final CachedSchemaRepository repository = CachedSchemaRepository.newInstance("node-" + i,
+                    model.getSchemaCacheDirectory(), model.getCapabilities());
+            blackhole.consume(repository.getSchemaContext());
+            repositories.add(repository);
+        }
+        repositories.forEach(CachedSchemaRepository::close);
+    }
+}
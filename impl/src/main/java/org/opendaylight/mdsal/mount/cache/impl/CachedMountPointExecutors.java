@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMCallbackExecutor;
+import org.opendaylight.mdsal.mount.cache.impl.util.VirtualThreadExecutors;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.executors.executor.isolation.CommitCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The executors running the commit callbacks of the cached mount points, one per group of mount points. A mount point
+ * whose clients are slow to process their callbacks fills the executor of its group only, the other groups keep
+ * running. An executor is created with the settings of the first mount point of its group, and shut down once the
+ * last mount point of the group is closed.
+ *
+ * In {@link CommitCallback.ExecutionMode#VIRTUALTHREADS} mode, the executor of a group starts a virtual thread per
+ * callback instead: it has no queue to fill, so slow callbacks never block the committing threads. A runtime without
+ * virtual threads gets the bounded pool of the group settings, and an error.
+ */
+final class CachedMountPointExecutors implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedMountPointExecutors.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    // Guarded by this
+    private final Map<String, Group> groups = new HashMap<>();
+
+    /**
+     * The use of the executor of a group by a mount point, to be closed with the mount point.
+     */
+    final class Lease implements AutoCloseable {
+        private final Group group;
+        private boolean closed;
+
+        private Lease(final Group group) {
+            this.group = group;
+        }
+
+        Executor getExecutor() {
+            return group.callbackExecutor;
+        }
+
+        @Override
+        public void close() {
+            synchronized (CachedMountPointExecutors.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (--group.users == 0 && groups.remove(group.name, group)) {
+                    LOG.debug("Shutting down the commit callback executor of group {}", group.name);
+                    group.executor.shutdown();
+                }
+            }
+        }
+    }
+
+    private static final class Group {
+        private final String name;
+        private final ExecutorService executor;
+        // The executor handed to the mount points
+        private final Executor callbackExecutor;
+        private final CommitCallback.ExecutionMode mode;
+        // Whether the executor runs on virtual threads, false in POOL mode or without virtual threads
+        private final boolean virtual;
+        private final int maxThreads;
+        private final int queueSize;
+        private final CommitCallback.RejectionPolicy rejectionPolicy;
+        private int users;
+
+        Group(final String name, final CommitCallback.ExecutionMode mode, final int maxThreads, final int queueSize,
+              final CommitCallback.RejectionPolicy rejectionPolicy) {
+            this.name = name;
+            this.mode = mode;
+            this.maxThreads = maxThreads;
+            this.queueSize = queueSize;
+            this.rejectionPolicy = rejectionPolicy;
+            ExecutorService virtualThreads = null;
+            if (mode == CommitCallback.ExecutionMode.VIRTUALTHREADS) {
+                try {
+                    virtualThreads = VirtualThreadExecutors.newThreadPerTaskExecutor(
+                            "CachedMountPointCallbacks-" + name + "-");
+                } catch (UnsupportedOperationException e) {
+                    LOG.error("The commit callback executor of group {} cannot use virtual threads, falling back to "
+                            + "{} threads with a queue of {} and policy {}", name, maxThreads, queueSize,
+                            rejectionPolicy, e);
+                }
+            }
+            this.virtual = virtualThreads != null;
+            if (virtual) {
+                this.executor = virtualThreads;
+                this.callbackExecutor = executor;
+            } else {
+                final ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS,
+                        TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueSize), new ThreadFactoryBuilder()
+                                .setNameFormat("CachedMountPointCallbacks-" + name + "-%d").setDaemon(true).build(),
+                        rejectionHandler(name, rejectionPolicy));
+                pool.allowCoreThreadTimeOut(true);
+                this.executor = pool;
+                this.callbackExecutor = rejectionPolicy == CommitCallback.RejectionPolicy.ABORT
+                        ? new AbortingExecutor(pool) : pool;
+            }
+        }
+
+        boolean hasSettings(final CommitCallback.ExecutionMode mode, final int maxThreads, final int queueSize,
+                            final CommitCallback.RejectionPolicy rejectionPolicy) {
+            if (this.mode != mode) {
+                return false;
+            }
+            // The pool settings do not apply to virtual threads
+            return virtual || this.maxThreads == maxThreads
+                    && this.queueSize == queueSize && this.rejectionPolicy == rejectionPolicy;
+        }
+    }
+
+    private static RejectedExecutionHandler rejectionHandler(final String group,
+                                                             final CommitCallback.RejectionPolicy rejectionPolicy) {
+        switch (rejectionPolicy) {
+            case CALLERRUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case ABORT:
+                // The transactions are rejected on submission while the executor is full, see AbortingExecutor
+                return (runnable, executor) -> {
+                    throw new RejectedExecutionException("Commit callback executor of group " + group + " is full");
+                };
+            case BLOCK:
+            default:
+                // Throttle the committers until the callbacks catch up
+                return (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Commit callback executor of group " + group
+                                + " is shut down");
+                    }
+                    try {
+                        executor.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for the commit callback "
+                                + "executor of group " + group, e);
+                    }
+                };
+        }
+    }
+
+    /**
+     * The executor of a group with the {@link CommitCallback.RejectionPolicy#ABORT} policy. The transactions submitted
+     * while its queue is full fail without being committed, so their callbacks are never dropped.
+     */
+    private static final class AbortingExecutor implements CachedDOMCallbackExecutor {
+        private final ThreadPoolExecutor pool;
+
+        AbortingExecutor(final ThreadPoolExecutor pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public boolean isFull() {
+            return pool.getQueue().remainingCapacity() == 0;
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            pool.execute(command);
+        }
+    }
+
+    /**
+     * Start using the executor of a group, creating it with the given settings if the group has none yet.
+     */
+    synchronized Lease acquire(final String group, final CommitCallback.ExecutionMode mode, final int maxThreads,
+                               final int queueSize, final CommitCallback.RejectionPolicy rejectionPolicy) {
+        Preconditions.checkArgument(maxThreads > 0 && queueSize > 0, "Invalid executor settings for group %s",
+                group);
+        Group existing = groups.get(group);
+        if (existing == null) {
+            if (mode == CommitCallback.ExecutionMode.VIRTUALTHREADS) {
+                LOG.info("Creating the commit callback executor of group {} on virtual threads", group);
+            } else {
+                LOG.info("Creating the commit callback executor of group {} with {} threads, a queue of {} and "
+                        + "policy {}", group, maxThreads, queueSize, rejectionPolicy);
+            }
+            existing = new Group(group, mode, maxThreads, queueSize, rejectionPolicy);
+            groups.put(group, existing);
+        } else if (!existing.hasSettings(mode, maxThreads, queueSize, rejectionPolicy)) {
+            LOG.warn("The commit callback executor of group {} already exists, ignoring settings {}/{}/{}/{}", group,
+                    mode, maxThreads, queueSize, rejectionPolicy);
+        }
+        existing.users++;
+        return new Lease(existing);
+    }
+
+    @Override
+    public synchronized void close() {
+        groups.values().forEach(group -> group.executor.shutdownNow());
+        groups.clear();
+    }
+}
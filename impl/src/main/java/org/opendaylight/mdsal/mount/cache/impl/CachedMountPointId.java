@@ -7,10 +7,12 @@
  */
 package org.opendaylight.mdsal.mount.cache.impl;
 
-import java.util.Collection;
-import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataBroker;
 import org.opendaylight.controller.md.sal.dom.api.DOMMountPoint;
-import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.CachedMountPointNode;
 import org.opendaylight.yangtools.concepts.ObjectRegistration;
 
 /**
@@ -18,23 +20,133 @@ import org.opendaylight.yangtools.concepts.ObjectRegistration;
  */
 public class CachedMountPointId implements AutoCloseable {
 
-    private final ObjectRegistration<DOMMountPoint> mountPointReg;
-    private final Collection<ListenerRegistration<DOMDataTreeChangeListener>> listenerRegistrations;
+    private final CachedMountPointStats stats;
+    // Exactly one of them is set, depending on whether the mount point was created in lazy mode
+    private final CachedMountPointInstance instance;
+    private final LazyCachedMountPoint lazyMountPoint;
+    private final CachedMountPointExecutors.Lease callbackExecutor;
+
+    // Guarded by this, replaced when the capabilities change
+    private ObjectRegistration<DOMMountPoint> mountPointReg;
+    private CachedSchemaRepository schemaRepository;
+    private CachedMountPointNode node;
 
     CachedMountPointId(final ObjectRegistration<DOMMountPoint> registration,
-                       final Collection<ListenerRegistration<DOMDataTreeChangeListener>> listenerRegistrations) {
+                       final CachedMountPointNode node,
+                       final CachedSchemaRepository schemaRepository,
+                       final CachedMountPointStats stats,
+                       final CachedMountPointInstance instance,
+                       final LazyCachedMountPoint lazyMountPoint,
+                       final CachedMountPointExecutors.Lease callbackExecutor) {
 
         this.mountPointReg = registration;
-        this.listenerRegistrations = listenerRegistrations;
+        this.node = node;
+        this.schemaRepository = schemaRepository;
+        this.stats = stats;
+        this.instance = instance;
+        this.lazyMountPoint = lazyMountPoint;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * @return the configuration the mount point was created or last updated with
+     */
+    synchronized CachedMountPointNode getNode() {
+        return node;
+    }
+
+    /**
+     * @return whether the models the schema of the mount point was resolved from changed since
+     */
+    synchronized boolean isSchemaStale() {
+        return schemaRepository != null && schemaRepository.isStale();
+    }
+
+    CachedMountPointStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return the data side of the mount point, or {@code null} if it is created in lazy mode
+     */
+    CachedMountPointInstance getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return the lazy mount point, or {@code null} if the mount point is always active
+     */
+    LazyCachedMountPoint getLazyMountPoint() {
+        return lazyMountPoint;
+    }
+
+    /**
+     * @return the executor of the commit callbacks, shared with the mount points of the same group
+     */
+    Executor getCallbackExecutor() {
+        return callbackExecutor.getExecutor();
+    }
+
+    DOMDataBroker getDataBroker() {
+        return instance != null ? instance.getDataBroker() : lazyMountPoint;
+    }
+
+    /**
+     * Register the mount point again with a new schema, then release the previous schema.
+     *
+     * @param mountPointRegistrar registers the mount point, called once the previous registration is closed
+     */
+    synchronized void replaceSchema(final CachedMountPointNode newNode,
+                                    final CachedSchemaRepository newSchemaRepository,
+                                    final Supplier<ObjectRegistration<DOMMountPoint>> mountPointRegistrar) {
+        final CachedSchemaRepository oldSchemaRepository = schemaRepository;
+        node = newNode;
+        schemaRepository = newSchemaRepository;
+        if (mountPointReg != null) {
+            mountPointReg.close();
+            mountPointReg = null;
+        }
+        mountPointReg = mountPointRegistrar.get();
+        if (oldSchemaRepository != null) {
+            oldSchemaRepository.close();
+        }
+    }
+
+    boolean isActive() {
+        return lazyMountPoint == null || lazyMountPoint.isActive();
+    }
+
+    /**
+     * Drop the persisted data of the mount point, so that it is not restored if a node with the same id is created
+     * again. To be called before {@link #close()} when the node is deleted.
+     */
+    void discardPersistentState() {
+        if (instance != null) {
+            instance.discardPersistentState();
+        }
+        if (lazyMountPoint != null) {
+            lazyMountPoint.discardPersistentState();
+        }
     }
 
     @Override
-    public void close() throws Exception {
+    public synchronized void close() throws Exception {
         if (mountPointReg != null) {
             mountPointReg.close();
         }
-        if (listenerRegistrations != null && !listenerRegistrations.isEmpty()) {
-            listenerRegistrations.forEach(ListenerRegistration::close);
+        if (instance != null) {
+            instance.close();
+        }
+        if (lazyMountPoint != null) {
+            lazyMountPoint.close();
+        }
+        if (schemaRepository != null) {
+            schemaRepository.close();
+        }
+        if (stats != null) {
+            stats.unregisterMBean();
         }
+        // Last, the closed data broker may still complete pending commits
+        callbackExecutor.close();
     }
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Collections;
+import java.util.Set;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeIdentifier;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataWriteTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMDataBroker;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMDataTreeChangeListener;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.mdsal.mount.cache.impl.listener.CachedDataTreeChangeDispatcher;
+import org.opendaylight.mdsal.mount.cache.impl.persistence.CachedMountPointJournal;
+import org.opendaylight.mdsal.mount.cache.impl.persistence.CachedMountPointSnapshotter;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The data side of a cached mount point: its data stores and everything built on top of them. It can be released
+ * and built again while the mount point stays registered, see {@link LazyCachedMountPoint}.
+ */
+final class CachedMountPointInstance implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedMountPointInstance.class);
+
+    private final String nodeId;
+    private final CachedDOMStores stores;
+    private final CachedDataTreeChangeDispatcher listenerDispatcher;
+    private final CachedDOMDataBroker dataBroker;
+    private final CachedMountPointSnapshotter snapshotter;
+    private final CachedMountPointJournal journal;
+    // Guarded by this
+    private Set<QName> topLevelNodes = Collections.emptySet();
+    private ListenerRegistration<DOMDataTreeChangeListener> listenerRegistration;
+
+    CachedMountPointInstance(final String nodeId,
+                             final CachedDOMStores stores,
+                             final CachedDataTreeChangeDispatcher listenerDispatcher,
+                             final CachedDOMDataBroker dataBroker,
+                             final CachedMountPointSnapshotter snapshotter,
+                             final CachedMountPointJournal journal) {
+        this.nodeId = nodeId;
+        this.stores = stores;
+        this.listenerDispatcher = listenerDispatcher;
+        this.dataBroker = dataBroker;
+        this.snapshotter = snapshotter;
+        this.journal = journal;
+    }
+
+    CachedDOMDataBroker getDataBroker() {
+        return dataBroker;
+    }
+
+    /**
+     * Number of listeners with changes waiting to be delivered by the dispatcher. The queues of the data stores are
+     * not counted: their only tree change listeners are the dispatcher and the change streams, and the controller
+     * exposes the queue statistics of the legacy data change listeners only.
+     */
+    long getListenerBacklog() {
+        return listenerDispatcher.getBacklog();
+    }
+
+    /**
+     * Track the changes of the given top-level data nodes, through a single listener registered at the root.
+     */
+    synchronized void listenTo(final Set<QName> topLevelNodes) {
+        this.topLevelNodes = ImmutableSet.copyOf(topLevelNodes);
+        if (listenerRegistration == null) {
+            LOG.debug("{}: Registering DTCL at the root", nodeId);
+            listenerRegistration = dataBroker.registerDataTreeChangeListener(
+                    new DOMDataTreeIdentifier(LogicalDatastoreType.CONFIGURATION, YangInstanceIdentifier.EMPTY),
+                    new CachedDOMDataTreeChangeListener());
+        }
+    }
+
+    /**
+     * Switch the data stores to a new schema, keeping the data of the top-level nodes it still contains. The data of
+     * the other top-level nodes is deleted beforehand, through the broker so that the deletion is persisted.
+     * Top-level nodes are matched by QName, revision included: the data of a module whose revision changed is not
+     * migrated, every QName of the subtree would have to be rewritten and validated against the new revision.
+     *
+     * @param topLevelNodes the top-level data nodes of the new schema
+     */
+    synchronized void updateSchemaContext(final SchemaContext schemaContext, final Set<QName> topLevelNodes) {
+        final DOMDataWriteTransaction transaction = dataBroker.newWriteOnlyTransaction();
+        int removed = 0;
+        for (QName topLevelNode : this.topLevelNodes) {
+            if (!topLevelNodes.contains(topLevelNode)) {
+                topLevelNodes.stream().filter(node -> node.getNamespace().equals(topLevelNode.getNamespace())
+                        && node.getLocalName().equals(topLevelNode.getLocalName())).findFirst().ifPresent(node ->
+                        LOG.warn("{}: Revision of {} changed to {}, its data is deleted", nodeId, topLevelNode,
+                                node.getFormattedRevision()));
+                for (LogicalDatastoreType datastoreType : LogicalDatastoreType.values()) {
+                    transaction.delete(datastoreType, YangInstanceIdentifier.of(topLevelNode));
+                }
+                removed++;
+            }
+        }
+        try {
+            transaction.submit().checkedGet();
+        } catch (TransactionCommitFailedException e) {
+            throw new IllegalStateException(nodeId + ": Failed to delete the data of the removed nodes", e);
+        }
+
+        stores.updateSchemaContext(schemaContext);
+        listenTo(topLevelNodes);
+        if (snapshotter != null) {
+            // Do not leave a snapshot with data the new schema cannot restore
+            snapshotter.snapshot();
+        }
+        LOG.info("{}: Schema updated, {} top-level nodes removed", nodeId, removed);
+    }
+
+    /**
+     * @return whether closing this instance loses no data, because it is persisted or because there is none
+     */
+    boolean isReleasable() {
+        if (snapshotter != null || journal != null) {
+            return true;
+        }
+        try {
+            return stores.isEmpty();
+        } catch (ReadFailedException e) {
+            LOG.warn("{}: Failed to read the data stores", nodeId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Drop the persisted data of the mount point, so that it is not restored if a node with the same id is created
+     * again. To be called before {@link #close()} when the node is deleted.
+     */
+    void discardPersistentState() {
+        if (snapshotter != null) {
+            snapshotter.discard();
+        }
+        if (journal != null) {
+            journal.discard();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (listenerRegistration != null) {
+                listenerRegistration.close();
+                listenerRegistration = null;
+            }
+        }
+        // The acknowledged transactions waiting for their group commit must be in the last snapshot
+        dataBroker.flush();
+        if (snapshotter != null) {
+            snapshotter.close();
+        }
+        dataBroker.close();
+        if (journal != null) {
+            // After the broker, so that the transactions it flushes on close are journaled
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.mdsal.mount.cache.api.CachedDOMBulkReadService;
+import org.opendaylight.mdsal.mount.cache.api.CachedMountPointReadService;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CachedMountPointReadService} over the mount points of the topology. A read runs as {@code parallelism}
+ * tasks on the shared executor, each one taking the next mount point to read until there is none left, so a read
+ * across many nodes does not hold more threads than requested.
+ */
+final class CachedMountPointReadFanOut implements CachedMountPointReadService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedMountPointReadFanOut.class);
+
+    private final CachedMountPointRegistry registry;
+    private final Executor executor;
+
+    CachedMountPointReadFanOut(final CachedMountPointRegistry registry, final Executor executor) {
+        this.registry = registry;
+        this.executor = executor;
+    }
+
+    @Override
+    public ListenableFuture<Integer> read(final LogicalDatastoreType store,
+                                          final Collection<YangInstanceIdentifier> paths,
+                                          final Predicate<String> nodeFilter,
+                                          final int parallelism,
+                                          final boolean activateInactive,
+                                          final ResultListener listener) {
+        Preconditions.checkArgument(parallelism > 0, "Parallelism must be positive, got %s", parallelism);
+        final List<String> nodeIds = registry.getActiveNodeIds().stream().filter(nodeFilter)
+                .collect(Collectors.toList());
+        LOG.debug("Reading {} paths from {} cached mount points", paths.size(), nodeIds.size());
+        return new ReadRequest(store, ImmutableList.copyOf(paths), nodeIds, activateInactive, listener)
+                .start(Math.min(parallelism, nodeIds.size()));
+    }
+
+    private final class ReadRequest {
+        private final LogicalDatastoreType store;
+        private final List<YangInstanceIdentifier> paths;
+        private final List<String> nodeIds;
+        private final boolean activateInactive;
+        private final ResultListener listener;
+        private final SettableFuture<Integer> future = SettableFuture.create();
+        private final AtomicInteger nextNode = new AtomicInteger();
+        private final AtomicInteger nodesRead = new AtomicInteger();
+        private final AtomicInteger runningWorkers = new AtomicInteger();
+
+        ReadRequest(final LogicalDatastoreType store, final List<YangInstanceIdentifier> paths,
+                    final List<String> nodeIds, final boolean activateInactive, final ResultListener listener) {
+            this.store = store;
+            this.paths = paths;
+            this.nodeIds = nodeIds;
+            this.activateInactive = activateInactive;
+            this.listener = listener;
+        }
+
+        ListenableFuture<Integer> start(final int workers) {
+            if (workers == 0) {
+                future.set(0);
+                return future;
+            }
+            runningWorkers.set(workers);
+            for (int i = 0; i < workers; i++) {
+                try {
+                    executor.execute(this::work);
+                } catch (RejectedExecutionException e) {
+                    future.setException(e);
+                    workerDone();
+                }
+            }
+            return future;
+        }
+
+        private void work() {
+            try {
+                // Stop early once the future is cancelled
+                for (int i = nextNode.getAndIncrement(); i < nodeIds.size() && !future.isDone();
+                     i = nextNode.getAndIncrement()) {
+                    readNode(nodeIds.get(i));
+                }
+            } finally {
+                workerDone();
+            }
+        }
+
+        private void workerDone() {
+            if (runningWorkers.decrementAndGet() == 0) {
+                future.set(nodesRead.get());
+            }
+        }
+
+        private void readNode(final String nodeId) {
+            final CachedMountPointId cachedMountPoint = registry.get(nodeId);
+            if (cachedMountPoint == null) {
+                // Deleted since the read started
+                return;
+            }
+
+            final Map<YangInstanceIdentifier, Optional<NormalizedNode<?, ?>>> data;
+            try {
+                final LazyCachedMountPoint lazyMountPoint = cachedMountPoint.getLazyMountPoint();
+                final CheckedFuture<Map<YangInstanceIdentifier, Optional<NormalizedNode<?, ?>>>, ReadFailedException>
+                        result;
+                if (lazyMountPoint != null && !activateInactive) {
+                    result = lazyMountPoint.readAllIfActive(store, paths);
+                    if (result == null) {
+                        LOG.debug("{}: Not reading the inactive cached mount point", nodeId);
+                        return;
+                    }
+                } else {
+                    final CachedDOMBulkReadService bulkReadService = (CachedDOMBulkReadService) cachedMountPoint
+                            .getDataBroker().getSupportedExtensions().get(CachedDOMBulkReadService.class);
+                    result = bulkReadService.readAll(store, paths);
+                }
+                data = result.checkedGet();
+            } catch (ReadFailedException | RuntimeException e) {
+                // A mount point closed concurrently fails with a runtime exception
+                LOG.debug("{}: Failed to read {}", nodeId, paths, e);
+                notifyListener(nodeId, () -> listener.onFailure(nodeId, e));
+                return;
+            }
+            nodesRead.incrementAndGet();
+            notifyListener(nodeId, () -> listener.onResult(nodeId, data));
+        }
+
+        private void notifyListener(final String nodeId, final Runnable notification) {
+            try {
+                notification.run();
+            } catch (RuntimeException e) {
+                LOG.warn("{}: Listener {} failed to process the read result", nodeId, listener, e);
+            }
+        }
+    }
+}
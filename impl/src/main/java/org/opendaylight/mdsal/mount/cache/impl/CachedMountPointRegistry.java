@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The cached mount points of the topology and their lifecycle. Each node goes through
+ * {@link State#CREATING}, then {@link State#ACTIVE} or {@link State#FAILED}, and {@link State#CLOSING} once deleted.
+ * Transitions are atomic compare-and-set operations on the entry of the node, so that a node deleted while being
+ * created is closed exactly once, either by the deletion or by the end of its creation. The entry of a deleted node
+ * stays registered until its mount point is {@link #closed(Entry) closed}: a node re-created meanwhile is only created
+ * once the previous incarnation released its persisted files and its mount point path.
+ *
+ * <p>
+ * Lookups by node ID or by mount path, and iterations, do not lock: entries live in {@link ConcurrentHashMap}s,
+ * whose updates are striped over their bins.
+ */
+final class CachedMountPointRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedMountPointRegistry.class);
+
+    enum State {
+        CREATING,
+        ACTIVE,
+        CLOSING,
+        FAILED
+    }
+
+    /**
+     * The registration of a node, from the start of its creation until its deletion.
+     */
+    static final class Entry {
+        private final String nodeId;
+        private final YangInstanceIdentifier path;
+        private final AtomicReference<State> state = new AtomicReference<>(State.CREATING);
+        // Set before the entry becomes active
+        private volatile CachedMountPointId mountPoint;
+        // Guarded by this
+        private Runnable deferredCreation;
+        private boolean closed;
+
+        private Entry(final String nodeId, final YangInstanceIdentifier path) {
+            this.nodeId = nodeId;
+            this.path = path;
+        }
+
+        String getNodeId() {
+            return nodeId;
+        }
+
+        YangInstanceIdentifier getPath() {
+            return path;
+        }
+
+        State getState() {
+            return state.get();
+        }
+
+        /**
+         * @return whether {@code creation} runs once the entry is closed, otherwise it is closed already
+         */
+        private synchronized boolean defer(final Runnable creation) {
+            if (closed) {
+                return false;
+            }
+            deferredCreation = creation;
+            return true;
+        }
+
+        private synchronized void cancelDeferredCreation() {
+            deferredCreation = null;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).add("nodeId", nodeId).add("state", state.get()).toString();
+        }
+    }
+
+    private final Map<String, Entry> byNodeId = new ConcurrentHashMap<>();
+    private final Map<YangInstanceIdentifier, Entry> byPath = new ConcurrentHashMap<>();
+
+    /**
+     * Register the creation of a node, unless it is already registered. A node whose creation failed can be created
+     * again. A node being closed is created once closed, by {@code deferredCreation}.
+     *
+     * @param deferredCreation creates the node once its previous incarnation is closed, or {@code null} to give up
+     * @return the entry of the node, in {@link State#CREATING}, or {@code null} if the node is being created, is
+     *         active or is being closed
+     */
+    @Nullable
+    Entry beginCreation(final String nodeId, final YangInstanceIdentifier path,
+                        @Nullable final Runnable deferredCreation) {
+        final Entry entry = new Entry(nodeId, path);
+        while (true) {
+            final Entry existing = byNodeId.putIfAbsent(nodeId, entry);
+            if (existing == null || existing.getState() == State.FAILED && byNodeId.replace(nodeId, existing, entry)) {
+                byPath.put(path, entry);
+                return entry;
+            }
+            final State state = existing.getState();
+            if (state == State.CLOSING) {
+                if (deferredCreation == null) {
+                    return null;
+                }
+                if (existing.defer(deferredCreation)) {
+                    LOG.info("{}: Cached mount point is being closed, creating it again once closed", nodeId);
+                    return null;
+                }
+            } else if (state != State.FAILED) {
+                return null;
+            }
+            // The failed or closing entry was replaced or removed concurrently, try again
+        }
+    }
+
+    /**
+     * Make a created mount point available.
+     *
+     * @return whether the mount point is now active, otherwise the node was deleted during its creation and the
+     *         caller must close the mount point
+     */
+    boolean activate(final Entry entry, final CachedMountPointId mountPoint) {
+        entry.mountPoint = Preconditions.checkNotNull(mountPoint);
+        return entry.state.compareAndSet(State.CREATING, State.ACTIVE);
+    }
+
+    /**
+     * Record the failure of a creation. The entry is kept, so that the state of the node can be queried, until the
+     * node is deleted or created again.
+     *
+     * @return whether the creation was still current, i.e. the node was not deleted meanwhile
+     */
+    boolean fail(final Entry entry) {
+        return entry.state.compareAndSet(State.CREATING, State.FAILED);
+    }
+
+    /**
+     * Remove a node, whatever its state, moving it to {@link State#CLOSING}. An active mount point is closed right away
+     * by {@code closer}. A node still being created is closed by its creation once it completes, which then calls
+     * {@link #closed(Entry)}, see {@link #activate(Entry, CachedMountPointId)}. Removing a node being closed cancels
+     * the creation deferred meanwhile.
+     */
+    void remove(final String nodeId, final BiConsumer<String, CachedMountPointId> closer) {
+        final Entry entry = byNodeId.get(nodeId);
+        if (entry == null) {
+            return;
+        }
+        byPath.remove(entry.path, entry);
+        final State previous = entry.state.getAndSet(State.CLOSING);
+        LOG.debug("{}: Removed cached mount point in state {}", nodeId, previous);
+        switch (previous) {
+            case ACTIVE:
+                closer.accept(nodeId, entry.mountPoint);
+                closed(entry);
+                break;
+            case FAILED:
+                closed(entry);
+                break;
+            case CLOSING:
+                entry.cancelDeferredCreation();
+                break;
+            case CREATING:
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Unregister a removed node once its mount point is closed, then run the creation requested meanwhile, if any.
+     */
+    void closed(final Entry entry) {
+        Preconditions.checkState(entry.getState() == State.CLOSING, "%s: Closing a node in state %s", entry.nodeId,
+                entry.getState());
+        final Runnable deferredCreation;
+        synchronized (entry) {
+            entry.closed = true;
+            deferredCreation = entry.deferredCreation;
+            entry.deferredCreation = null;
+            byNodeId.remove(entry.nodeId, entry);
+        }
+        if (deferredCreation != null) {
+            deferredCreation.run();
+        }
+    }
+
+    /**
+     * @return the state of a node, or {@code null} if it is not registered
+     */
+    @Nullable
+    State getState(final String nodeId) {
+        final Entry entry = byNodeId.get(nodeId);
+        return entry == null ? null : entry.getState();
+    }
+
+    /**
+     * @return the mount point of a node, if it is active
+     */
+    @Nullable
+    CachedMountPointId get(final String nodeId) {
+        return activeMountPoint(byNodeId.get(nodeId));
+    }
+
+    /**
+     * @return the mount point at the given path, if it is active
+     */
+    @Nullable
+    CachedMountPointId getByPath(final YangInstanceIdentifier path) {
+        return activeMountPoint(byPath.get(path));
+    }
+
+    private static CachedMountPointId activeMountPoint(@Nullable final Entry entry) {
+        return entry != null && entry.getState() == State.ACTIVE ? entry.mountPoint : null;
+    }
+
+    /**
+     * @return the IDs of the active nodes, at the time of the call
+     */
+    List<String> getActiveNodeIds() {
+        return byNodeId.values().stream().filter(entry -> entry.getState() == State.ACTIVE).map(Entry::getNodeId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Invoke the consumer for each active mount point. Mount points activated or removed during the iteration may or
+     * may not be visited.
+     */
+    void forEachActive(final BiConsumer<String, CachedMountPointId> consumer) {
+        for (Entry entry : byNodeId.values()) {
+            final CachedMountPointId mountPoint = activeMountPoint(entry);
+            if (mountPoint != null) {
+                consumer.accept(entry.nodeId, mountPoint);
+            }
+        }
+    }
+
+    /**
+     * Remove all the nodes.
+     *
+     * @param closer invoked for each mount point which was active
+     */
+    void removeAll(final BiConsumer<String, CachedMountPointId> closer) {
+        for (Entry entry : byNodeId.values()) {
+            // Nothing is created anymore
+            entry.cancelDeferredCreation();
+            remove(entry.nodeId, closer);
+        }
+    }
+}
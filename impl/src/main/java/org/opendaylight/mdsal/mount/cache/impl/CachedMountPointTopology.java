@@ -7,14 +7,39 @@
  */
 package org.opendaylight.mdsal.mount.cache.impl;
 
-import com.google.common.collect.Lists;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Executor;
-import java.util.function.Function;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nonnull;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
@@ -24,26 +49,33 @@ import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
 import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.md.sal.dom.api.DOMDataBroker;
-import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
-import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeIdentifier;
 import org.opendaylight.controller.md.sal.dom.api.DOMMountPoint;
 import org.opendaylight.controller.md.sal.dom.api.DOMMountPointService;
-import org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStore;
 import org.opendaylight.mdsal.binding.dom.codec.api.BindingNormalizedNodeSerializer;
+import org.opendaylight.mdsal.mount.cache.api.CachedMountPointReadService;
 import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMDataBroker;
-import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMDataTreeChangeListener;
-import org.opendaylight.mdsal.mount.cache.impl.datastore.InMemoryDOMDataStoreFactory;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.mdsal.mount.cache.impl.listener.CachedDataChangeStreams;
+import org.opendaylight.mdsal.mount.cache.impl.listener.CachedDataTreeChangeDispatcher;
+import org.opendaylight.mdsal.mount.cache.impl.persistence.CachedMountPointJournal;
+import org.opendaylight.mdsal.mount.cache.impl.persistence.CachedMountPointSnapshot;
+import org.opendaylight.mdsal.mount.cache.impl.persistence.CachedMountPointSnapshotter;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMWriteBatcher;
+import org.opendaylight.mdsal.mount.cache.impl.util.ConfigurationHelper;
 import org.opendaylight.mdsal.mount.cache.impl.util.TopologyHelper;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.CachedMountPointConfig;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.CachedMountPointNode;
-import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.CachedMountPointStatus;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.executors.ExecutorIsolation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.group.commit.GroupCommit;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.persistence.Persistence;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Node;
-import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.NodeKey;
 import org.opendaylight.yangtools.concepts.ListenerRegistration;
 import org.opendaylight.yangtools.concepts.ObjectRegistration;
 import org.opendaylight.yangtools.util.concurrent.SpecialExecutors;
 import org.opendaylight.yangtools.yang.common.QName;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
-import org.opendaylight.yangtools.yang.model.api.ContainerSchemaNode;
 import org.opendaylight.yangtools.yang.model.api.SchemaContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,23 +87,66 @@ public class CachedMountPointTopology implements DataTreeChangeListener<Node> {
 
     private static final Logger LOG = LoggerFactory.getLogger(CachedMountPointTopology.class);
 
-    private static final Executor CLIENT_FUTURE_CALLBACK_EXECUTOR =
-            SpecialExecutors.newBlockingBoundedCachedThreadPool(20, 1000, "CachedMoutpointCommitFutures");
+    private static final long IDLE_CHECK_INTERVAL_SECONDS = 10;
 
     private final DOMMountPointService service;
     private final BindingNormalizedNodeSerializer codec;
     private final DataBroker broker;
 
-    private final Map<String, CachedMountPointId> cachedMountPoints = new ConcurrentHashMap<>();
+    private final ListeningExecutorService mountPointCreationExecutor;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2,
+            new ThreadFactoryBuilder().setNameFormat("CachedMountPointScheduler-%d").setDaemon(true).build());
+    // Snapshots, journals and the release of idle mount points, which writes their snapshots, do file I/O: keep them
+    // away from the group commit timers
+    private final ScheduledExecutorService persistenceScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("CachedMountPointPersistence-%d").setDaemon(true).build());
+    // Times the change notification windows of all the mount points, it must never wait for a delivery
+    private final ScheduledExecutorService listenerScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("CachedMountPointListenerScheduler-%d").setDaemon(true).build());
+    private final ExecutorService listenerExecutor;
+    // Shared by all the schema resolutions, see CompiledSchemaSourceCache
+    private final ListeningExecutorService schemaParseExecutor;
+    private final ExecutorService readFanOutExecutor;
+    private final CachedMountPointExecutors callbackExecutors = new CachedMountPointExecutors();
+
+    private final CachedMountPointRegistry registry = new CachedMountPointRegistry();
+
+    private final CachedMountPointConfig config;
+    private final CachedMountPointReadService readService;
+    private final AtomicBoolean bootstrapped = new AtomicBoolean(false);
 
     private ListenerRegistration datastoreListenerRegistration;
+    private SchemaDirectoryWatcher schemaDirectoryWatcher;
 
     public CachedMountPointTopology(final DataBroker broker,
                                     final DOMMountPointService service,
-                                    final BindingNormalizedNodeSerializer codec) {
+                                    final BindingNormalizedNodeSerializer codec,
+                                    final CachedMountPointConfig config) {
         this.broker = broker;
         this.service = service;
         this.codec = codec;
+        this.config = config;
+        this.mountPointCreationExecutor = MoreExecutors.listeningDecorator(
+                SpecialExecutors.newBlockingBoundedCachedThreadPool(ConfigurationHelper.getCreationMaxThreads(config),
+                        ConfigurationHelper.getCreationQueueSize(config), "CachedMountPointCreation"));
+        // Rejects once full, the listener dispatchers decide which threads may wait for a delivery
+        this.listenerExecutor = SpecialExecutors.newBoundedFastThreadPool(
+                ConfigurationHelper.getListenerMaxThreads(config), ConfigurationHelper.getListenerQueueSize(config),
+                "CachedMountPointListeners");
+        this.schemaParseExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(
+                ConfigurationHelper.getSchemaParseThreads(config),
+                new ThreadFactoryBuilder().setNameFormat("CachedMountPointSchemaParser-%d").setDaemon(true).build()));
+        CompiledSchemaSourceCache.getInstance().setExecutor(schemaParseExecutor);
+        this.readFanOutExecutor = Executors.newFixedThreadPool(ConfigurationHelper.getReadFanOutThreads(config),
+                new ThreadFactoryBuilder().setNameFormat("CachedMountPointReadFanOut-%d").setDaemon(true).build());
+        this.readService = new CachedMountPointReadFanOut(registry, readFanOutExecutor);
+    }
+
+    /**
+     * Invoke by blueprint, to export the read service spanning the cached mount points
+     */
+    public CachedMountPointReadService getReadService() {
+        return readService;
     }
 
     /**
@@ -98,6 +173,27 @@ public class CachedMountPointTopology implements DataTreeChangeListener<Node> {
                 broker.registerDataTreeChangeListener(
                         new DataTreeIdentifier<>(LogicalDatastoreType.CONFIGURATION,
                                 TopologyHelper.CACHED_MOUNT_POINT_TOPOLOGY.child(Node.class)), this);
+
+        if (ConfigurationHelper.isLazyActivation(config)) {
+            persistenceScheduler.scheduleWithFixedDelay(this::releaseIdleMountPoints, IDLE_CHECK_INTERVAL_SECONDS,
+                    IDLE_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+
+        if (ConfigurationHelper.isSchemaWatchEnabled(config)) {
+            try {
+                schemaDirectoryWatcher = new SchemaDirectoryWatcher(
+                        Paths.get(CachedSchemaRepository.DEFAULT_CACHED_MOUNT_POINT_DIRECTORY),
+                        ConfigurationHelper.getSchemaWatchDebounceMillis(config), this::onModelsChanged);
+            } catch (IOException e) {
+                LOG.warn("Failed to watch the schema cache directories, changed models require a restart", e);
+            }
+        }
+
+        final long statisticsInterval = ConfigurationHelper.getStatisticsPublishIntervalSeconds(config);
+        if (statisticsInterval > 0) {
+            scheduler.scheduleWithFixedDelay(this::publishStatistics, statisticsInterval, statisticsInterval,
+                    TimeUnit.SECONDS);
+        }
     }
 
     /**
@@ -107,18 +203,48 @@ public class CachedMountPointTopology implements DataTreeChangeListener<Node> {
         if (datastoreListenerRegistration != null) {
             datastoreListenerRegistration.close();
         }
+        if (schemaDirectoryWatcher != null) {
+            schemaDirectoryWatcher.close();
+        }
+        mountPointCreationExecutor.shutdownNow();
+        readFanOutExecutor.shutdownNow();
+        // Close the mount points so that their last changes are persisted
+        registry.removeAll(CachedMountPointTopology::closeCachedMountPoint);
+        scheduler.shutdownNow();
+        persistenceScheduler.shutdownNow();
+        listenerScheduler.shutdownNow();
+        listenerExecutor.shutdownNow();
+        callbackExecutors.close();
+        CompiledSchemaSourceCache.getInstance().resetExecutor();
+        schemaParseExecutor.shutdownNow();
     }
 
     @Override
     public void onDataTreeChanged(@Nonnull Collection<DataTreeModification<Node>> collection) {
+        if (bootstrapped.compareAndSet(false, true)) {
+            // First batch, delivered on registration with all the nodes configured before a restart, if any, whatever
+            // their number. Without configured nodes it is the first change made afterwards.
+            bootstrapCachedMountPoints(collection);
+            return;
+        }
         for (DataTreeModification<Node> change : collection) {
             final DataObjectModification<Node> rootNode = change.getRootNode();
             final String nodeId = TopologyHelper.getNodeId(rootNode.getIdentifier());
             switch (rootNode.getModificationType()) {
                 case SUBTREE_MODIFIED:
                 case WRITE:
-                    if (cachedMountPoints.containsKey(nodeId)) {
-                        LOG.warn("Cached mount point{{}} was already configured - ignore request", nodeId);
+                    final CachedMountPointRegistry.State state = registry.getState(nodeId);
+                    if (state == CachedMountPointRegistry.State.CREATING) {
+                        LOG.warn("Cached mount point{{}} is being created - ignore request", nodeId);
+                        continue;
+                    }
+                    if (state == CachedMountPointRegistry.State.ACTIVE) {
+                        if (isCapabilityUpdate(rootNode.getDataBefore(), rootNode.getDataAfter())) {
+                            updateCachedMountPoint(nodeId,
+                                    rootNode.getDataAfter().getAugmentation(CachedMountPointNode.class));
+                        } else {
+                            LOG.warn("Cached mount point{{}} was already configured - ignore request", nodeId);
+                        }
                         continue;
                     }
                     createCachedMountPoint(nodeId, rootNode.getDataAfter());
@@ -130,34 +256,544 @@ public class CachedMountPointTopology implements DataTreeChangeListener<Node> {
         }
     }
 
-    private Function<QName, YangInstanceIdentifier> fromQnameToYiid = YangInstanceIdentifier::of;
-
+    /**
+     * Create the cached mount point asynchronously: the schema is resolved, then the data store is built, the
+     * listeners and the {@link DOMMountPoint} are registered on the mount point creation executor. The
+     * listener thread only kicks off the pipeline, and the progress is reported in the operational topology.
+     */
     private void createCachedMountPoint(final String nodeId, final Node node) {
 
-        CachedMountPointNode cachedMountPointNode = node.getAugmentation(CachedMountPointNode.class);
+        final CachedMountPointRegistry.Entry entry = registry.beginCreation(nodeId, mountPointPath(nodeId),
+                () -> createCachedMountPoint(nodeId, node));
+        if (entry == null) {
+            if (registry.getState(nodeId) != CachedMountPointRegistry.State.CLOSING) {
+                // Registered concurrently
+                LOG.warn("Cached mount point{{}} was already configured - ignore request", nodeId);
+            }
+            return;
+        }
+        final CachedMountPointNode cachedMountPointNode = node.getAugmentation(CachedMountPointNode.class);
+
+        updateMountStatus(nodeId, CachedMountPointStatus.MountStatus.CREATING, null);
 
-        if (!cachedMountPoints.containsKey(nodeId)) {
+        final ListenableFuture<CachedSchemaRepository> schemaRepositoryFuture =
+                mountPointCreationExecutor.submit(() -> setupSchemaRepository(nodeId, cachedMountPointNode));
+
+        final ListenableFuture<CachedMountPointId> mountPointFuture = Futures.transform(schemaRepositoryFuture,
+                new AsyncFunction<CachedSchemaRepository, CachedMountPointId>() {
+                    @Override
+                    public ListenableFuture<CachedMountPointId> apply(final CachedSchemaRepository repository) {
+                        return mountCachedMountPoint(nodeId, cachedMountPointNode, repository);
+                    }
+                }, mountPointCreationExecutor);
+
+        trackCachedMountPointCreation(entry, mountPointFuture);
+    }
+
+    /**
+     * Create all the cached mount points of the initial batch on a fork-join pool. Nodes are grouped by schema
+     * cache directory and capabilities: the first node of each group resolves the schema context, then the rest
+     * of the group gets it from the {@link SchemaContextCache} and is mounted in parallel. Only the last state of
+     * each node in the batch counts, the deleted ones are cleaned up.
+     */
+    private void bootstrapCachedMountPoints(final Collection<DataTreeModification<Node>> collection) {
+        // The last state of each node in the batch, absent once deleted
+        final Map<String, Optional<Node>> lastStates = new LinkedHashMap<>();
+        for (DataTreeModification<Node> change : collection) {
+            final DataObjectModification<Node> rootNode = change.getRootNode();
+            lastStates.put(TopologyHelper.getNodeId(rootNode.getIdentifier()),
+                    Optional.ofNullable(rootNode.getDataAfter()));
+        }
+
+        final Map<Object, List<Node>> nodesBySchema = new LinkedHashMap<>();
+        for (Map.Entry<String, Optional<Node>> lastState : lastStates.entrySet()) {
+            if (!lastState.getValue().isPresent()) {
+                deleteCachedMountPoint(lastState.getKey());
+                continue;
+            }
+            final Node node = lastState.getValue().get();
+            final CachedMountPointNode cachedMountPointNode = node.getAugmentation(CachedMountPointNode.class);
+            final Object schemaKey = cachedMountPointNode == null ? null : Arrays.asList(
+                    cachedMountPointNode.getSchemaCacheDirectory(), cachedMountPointNode.getYangModuleCapabilities() == null
+                            ? null : ImmutableSet.copyOf(cachedMountPointNode.getYangModuleCapabilities().getCapability()));
+            nodesBySchema.computeIfAbsent(schemaKey, k -> new ArrayList<>()).add(node);
+        }
+
+        final Map<Node, CachedMountPointRegistry.Entry> entries = new IdentityHashMap<>();
+        final Map<Node, SettableFuture<CachedMountPointId>> creations = new IdentityHashMap<>();
+        nodesBySchema.values().forEach(nodes -> nodes.removeIf(node -> {
+            final String nodeId = node.getNodeId().getValue();
+            final CachedMountPointRegistry.Entry entry = registry.beginCreation(nodeId, mountPointPath(nodeId), null);
+            if (entry == null) {
+                LOG.warn("Cached mount point{{}} was already configured - ignore request", nodeId);
+                return true;
+            }
+            final SettableFuture<CachedMountPointId> future = SettableFuture.create();
+            entries.put(node, entry);
+            creations.put(node, future);
+            updateMountStatus(nodeId, CachedMountPointStatus.MountStatus.CREATING, null);
+            trackCachedMountPointCreation(entry, future);
+            return false;
+        }));
+        nodesBySchema.values().removeIf(List::isEmpty);
+
+        final int parallelism = ConfigurationHelper.getBootstrapParallelism(config);
+        LOG.info("Bootstrapping {} cached mount points using {} distinct schemas with parallelism {}",
+                creations.size(), nodesBySchema.size(), parallelism);
+
+        final ForkJoinPool bootstrapPool = new ForkJoinPool(parallelism);
+        bootstrapPool.execute(() -> {
+            nodesBySchema.values().parallelStream().forEach(nodes -> {
+                bootstrapCachedMountPoint(nodes.get(0), entries.get(nodes.get(0)), creations.get(nodes.get(0)));
+                nodes.subList(1, nodes.size()).parallelStream()
+                        .forEach(node -> bootstrapCachedMountPoint(node, entries.get(node), creations.get(node)));
+            });
+            LOG.info("Bootstrap of {} cached mount points completed", creations.size());
+        });
+        bootstrapPool.shutdown();
+    }
+
+    private void bootstrapCachedMountPoint(final Node node, final CachedMountPointRegistry.Entry entry,
+                                           final SettableFuture<CachedMountPointId> future) {
+        final String nodeId = node.getNodeId().getValue();
+        if (entry.getState() != CachedMountPointRegistry.State.CREATING) {
+            // Deleted before we got to it
+            future.cancel(false);
+            return;
+        }
+        try {
+            final CachedMountPointNode cachedMountPointNode = node.getAugmentation(CachedMountPointNode.class);
             final CachedSchemaRepository cachedSchemaRepository = setupSchemaRepository(nodeId, cachedMountPointNode);
-            final SchemaContext schemaContext = cachedSchemaRepository.getSchemaContext();
-            final YangInstanceIdentifier rootNode = mountPointPath(nodeId);
-            final InMemoryDOMDataStore inMemoryDOMDataStore = InMemoryDOMDataStoreFactory.newInstance(rootNode,
-                    schemaContext, LogicalDatastoreType.CONFIGURATION);
-            final CachedDOMDataBroker domDataBroker = new CachedDOMDataBroker(nodeId, inMemoryDOMDataStore,
-                    CLIENT_FUTURE_CALLBACK_EXECUTOR);
-
-            final Collection<ListenerRegistration<DOMDataTreeChangeListener>> listenerRegistrations =
-                    registerDataTreeChangeListener(nodeId, cachedSchemaRepository, domDataBroker);
-
-            final DOMMountPointService.DOMMountPointBuilder cachedMountPointBuilder = service.createMountPoint(rootNode);
-            cachedMountPointBuilder.addService(DOMDataBroker.class, domDataBroker);
-            cachedMountPointBuilder.addInitialSchemaContext(schemaContext);
-            final ObjectRegistration<DOMMountPoint> mountPointReg = cachedMountPointBuilder.register();
-
-            final CachedMountPointId mountPointId = new CachedMountPointId(mountPointReg, listenerRegistrations);
-            cachedMountPoints.put(nodeId, mountPointId);
+            try {
+                future.set(registerCachedMountPoint(nodeId, cachedMountPointNode, cachedSchemaRepository,
+                        cachedSchemaRepository.getSchemaContextFuture().get()));
+            } catch (Exception e) {
+                cachedSchemaRepository.close();
+                throw e;
+            }
+        } catch (Exception e) {
+            future.setException(e);
+        }
+    }
+
+    private void trackCachedMountPointCreation(final CachedMountPointRegistry.Entry entry,
+                                               final ListenableFuture<CachedMountPointId> mountPointFuture) {
+        final String nodeId = entry.getNodeId();
+        Futures.addCallback(mountPointFuture, new FutureCallback<CachedMountPointId>() {
+            @Override
+            public void onSuccess(final CachedMountPointId mountPointId) {
+                if (!registry.activate(entry, mountPointId)) {
+                    LOG.info("{}: Cached mount point was deleted while being created", nodeId);
+                    // The entry is registered until closed, so no newer incarnation uses these files yet
+                    mountPointId.discardPersistentState();
+                    closeCachedMountPoint(nodeId, mountPointId);
+                    registry.closed(entry);
+                    return;
+                }
+                updateMountStatus(nodeId, CachedMountPointStatus.MountStatus.MOUNTED, null);
+                LOG.info("{}: Cached mount point created", nodeId);
+            }
+
+            @Override
+            public void onFailure(final Throwable throwable) {
+                LOG.error("{}: Failed to create cached mount point", nodeId, throwable);
+                if (registry.fail(entry)) {
+                    updateMountStatus(nodeId, CachedMountPointStatus.MountStatus.FAILED, throwable.getMessage());
+                } else {
+                    // Deleted meanwhile, nothing to close
+                    registry.closed(entry);
+                }
+            }
+        });
+    }
+
+    private ListenableFuture<CachedMountPointId> mountCachedMountPoint(final String nodeId,
+                                                                     final CachedMountPointNode cachedMountPointNode,
+                                                                     final CachedSchemaRepository cachedSchemaRepository) {
+        final ListenableFuture<CachedMountPointId> future = Futures.transform(
+                cachedSchemaRepository.getSchemaContextFuture(), new Function<SchemaContext, CachedMountPointId>() {
+                    @Override
+                    public CachedMountPointId apply(final SchemaContext schemaContext) {
+                        return registerCachedMountPoint(nodeId, cachedMountPointNode, cachedSchemaRepository,
+                                schemaContext);
+                    }
+                }, mountPointCreationExecutor);
+
+        Futures.addCallback(future, new FutureCallback<CachedMountPointId>() {
+            @Override
+            public void onSuccess(final CachedMountPointId result) {
+                // The schema repository is now owned by the mount point
+            }
+
+            @Override
+            public void onFailure(final Throwable throwable) {
+                cachedSchemaRepository.close();
+            }
+        });
+        return future;
+    }
+
+    private CachedMountPointId registerCachedMountPoint(final String nodeId,
+                                                        final CachedMountPointNode cachedMountPointNode,
+                                                        final CachedSchemaRepository cachedSchemaRepository,
+                                                        final SchemaContext schemaContext) {
+        final YangInstanceIdentifier rootNode = mountPointPath(nodeId);
+        final ExecutorIsolation isolation = cachedMountPointNode.getExecutorIsolation();
+        final CachedMountPointExecutors.Lease callbackExecutor = callbackExecutors.acquire(
+                ConfigurationHelper.getExecutorGroup(isolation),
+                ConfigurationHelper.getCommitCallbackExecutionMode(isolation),
+                ConfigurationHelper.getCommitCallbackMaxThreads(isolation),
+                ConfigurationHelper.getCommitCallbackQueueSize(isolation),
+                ConfigurationHelper.getCommitCallbackRejectionPolicy(isolation));
+        final CachedMountPointStats stats = new CachedMountPointStats(nodeId);
+        stats.registerMBean();
+
+        try {
+            final DOMDataBroker domDataBroker;
+            final CachedMountPointInstance instance;
+            final LazyCachedMountPoint lazyMountPoint;
+            if (ConfigurationHelper.isLazyActivation(config)) {
+                // The schema context is still needed to register the mount point, but it is shared between the nodes
+                // with the same capabilities
+                instance = null;
+                lazyMountPoint = new LazyCachedMountPoint(nodeId,
+                        () -> activateCachedMountPoint(nodeId, cachedMountPointNode, cachedSchemaRepository,
+                                schemaContext, rootNode, stats, callbackExecutor.getExecutor()),
+                        () -> discardPersistentFiles(nodeId, cachedMountPointNode),
+                        () -> persistenceScheduler.execute(this::releaseIdleMountPoints));
+                stats.setListenerBacklog(lazyMountPoint::getListenerBacklog);
+                domDataBroker = lazyMountPoint;
+            } else {
+                instance = activateCachedMountPoint(nodeId, cachedMountPointNode, cachedSchemaRepository,
+                        schemaContext, rootNode, stats, callbackExecutor.getExecutor());
+                lazyMountPoint = null;
+                stats.setListenerBacklog(instance::getListenerBacklog);
+                domDataBroker = instance.getDataBroker();
+            }
+
+            final ObjectRegistration<DOMMountPoint> mountPointReg = registerMountPoint(nodeId, rootNode,
+                    domDataBroker, schemaContext);
+
+            return new CachedMountPointId(mountPointReg, cachedMountPointNode, cachedSchemaRepository, stats,
+                    instance, lazyMountPoint, callbackExecutor);
+        } catch (RuntimeException e) {
+            callbackExecutor.close();
+            stats.unregisterMBean();
+            throw e;
+        }
+    }
+
+    private ObjectRegistration<DOMMountPoint> registerMountPoint(final String nodeId,
+                                                                 final YangInstanceIdentifier rootNode,
+                                                                 final DOMDataBroker domDataBroker,
+                                                                 final SchemaContext schemaContext) {
+        LOG.debug("{}: Registering mount point", nodeId);
+        final DOMMountPointService.DOMMountPointBuilder cachedMountPointBuilder = service.createMountPoint(rootNode);
+        cachedMountPointBuilder.addService(DOMDataBroker.class, domDataBroker);
+        cachedMountPointBuilder.addInitialSchemaContext(schemaContext);
+        return cachedMountPointBuilder.register();
+    }
+
+    /**
+     * @return whether the only changes of a configured node that require a new schema are to its capabilities. The
+     *         other changes, including the schema cache directory which holds the persisted data, still require the
+     *         node to be deleted and created again.
+     */
+    private static boolean isCapabilityUpdate(final Node before, final Node after) {
+        final CachedMountPointNode cachedBefore = before == null ? null
+                : before.getAugmentation(CachedMountPointNode.class);
+        final CachedMountPointNode cachedAfter = after.getAugmentation(CachedMountPointNode.class);
+        if (cachedBefore == null || cachedAfter == null || cachedBefore.getYangModuleCapabilities() == null
+                || cachedAfter.getYangModuleCapabilities() == null
+                || !Objects.equals(cachedBefore.getSchemaCacheDirectory(), cachedAfter.getSchemaCacheDirectory())) {
+            return false;
+        }
+        final Collection<String> capsBefore = cachedBefore.getYangModuleCapabilities().getCapability();
+        final Collection<String> capsAfter = cachedAfter.getYangModuleCapabilities().getCapability();
+        return capsBefore != null && capsAfter != null
+                && !ImmutableSet.copyOf(capsBefore).equals(ImmutableSet.copyOf(capsAfter));
+    }
+
+    /**
+     * Switch a cached mount point to the schema of its new capabilities, without tearing it down: the data stores
+     * keep the data of the top-level nodes the new schema still has, and the listeners stay registered. A lazy mount
+     * point which is not active is activated for the update. The {@link DOMMountPoint} is registered again, as its schema context
+     * cannot change, around the same {@link DOMDataBroker}.
+     */
+    private void updateCachedMountPoint(final String nodeId, final CachedMountPointNode cachedMountPointNode) {
+        final CachedMountPointId cachedMountPoint = registry.get(nodeId);
+        if (cachedMountPoint == null) {
+            return;
+        }
+        LOG.info("{}: Updating the schema of the cached mount point", nodeId);
+
+        mountPointCreationExecutor.execute(() -> {
+            CachedSchemaRepository cachedSchemaRepository = null;
+            try {
+                cachedSchemaRepository = setupSchemaRepository(nodeId, cachedMountPointNode);
+                final SchemaContext schemaContext = cachedSchemaRepository.getSchemaContextFuture().get();
+                final Set<QName> topLevelNodes = topLevelNodes(cachedSchemaRepository, schemaContext);
+                synchronized (cachedMountPoint) {
+                    if (registry.get(nodeId) != cachedMountPoint) {
+                        LOG.info("{}: Cached mount point was deleted while being updated", nodeId);
+                        cachedSchemaRepository.close();
+                        return;
+                    }
+                    updateCachedMountPoint(nodeId, cachedMountPoint, cachedMountPointNode, cachedSchemaRepository,
+                            schemaContext, topLevelNodes);
+                }
+                updateMountStatus(nodeId, CachedMountPointStatus.MountStatus.MOUNTED, null);
+                LOG.info("{}: Cached mount point updated, {} top-level data nodes", nodeId, topLevelNodes.size());
+            } catch (Exception e) {
+                LOG.error("{}: Failed to update cached mount point", nodeId, e);
+                if (cachedSchemaRepository != null) {
+                    cachedSchemaRepository.close();
+                }
+                updateMountStatus(nodeId, CachedMountPointStatus.MountStatus.FAILED,
+                        "Failed to update schema: " + e.getMessage());
+            }
+        });
+    }
+
+    private void updateCachedMountPoint(final String nodeId,
+                                        final CachedMountPointId cachedMountPoint,
+                                        final CachedMountPointNode cachedMountPointNode,
+                                        final CachedSchemaRepository cachedSchemaRepository,
+                                        final SchemaContext schemaContext,
+                                        final Set<QName> topLevelNodes) {
+        final YangInstanceIdentifier rootNode = mountPointPath(nodeId);
+        final CachedMountPointInstance instance = cachedMountPoint.getInstance();
+        if (instance != null) {
+            instance.updateSchemaContext(schemaContext, topLevelNodes);
         } else {
-            LOG.warn("{}: Mount point already exist", nodeId);
+            final CachedMountPointStats stats = cachedMountPoint.getStats();
+            cachedMountPoint.getLazyMountPoint().update(
+                    () -> activateCachedMountPoint(nodeId, cachedMountPointNode, cachedSchemaRepository,
+                            schemaContext, rootNode, stats, cachedMountPoint.getCallbackExecutor()),
+                    active -> active.updateSchemaContext(schemaContext, topLevelNodes));
+        }
+        cachedMountPoint.replaceSchema(cachedMountPointNode, cachedSchemaRepository, () -> registerMountPoint(nodeId, rootNode,
+                cachedMountPoint.getDataBroker(), schemaContext));
+    }
+
+    /**
+     * Build the data stores of a mount point, restore their persisted data and register the listeners.
+     */
+    private CachedMountPointInstance activateCachedMountPoint(final String nodeId,
+                                                              final CachedMountPointNode cachedMountPointNode,
+                                                              final CachedSchemaRepository cachedSchemaRepository,
+                                                              final SchemaContext schemaContext,
+                                                              final YangInstanceIdentifier rootNode,
+                                                              final CachedMountPointStats stats,
+                                                              final Executor callbackExecutor) {
+        LOG.debug("{}: Building data stores", nodeId);
+        final CachedDOMStores stores = CachedDOMStores.create(rootNode, schemaContext,
+                ConfigurationHelper.getShardCount(cachedMountPointNode.getSharding()),
+                ConfigurationHelper.getShardBy(cachedMountPointNode.getSharding()),
+                ConfigurationHelper.getStoreNotificationProperties(cachedMountPointNode.getExecutorIsolation()));
+        final CachedDataTreeChangeDispatcher listenerDispatcher = new CachedDataTreeChangeDispatcher(nodeId, stores,
+                listenerExecutor, listenerScheduler, ConfigurationHelper.getChangeNotificationBatchWindowMillis(
+                        cachedMountPointNode.getChangeNotification()));
+        final CachedMountPointJournal journal = setupJournal(nodeId, cachedMountPointNode);
+        final CachedMountPointSnapshotter snapshotter = setupSnapshotter(nodeId, cachedMountPointNode, stores,
+                journal);
+        restorePersistentState(nodeId, cachedMountPointNode, stores, journal, snapshotter);
+        final CachedDOMWriteBatcher writeBatcher = setupWriteBatcher(nodeId, cachedMountPointNode, stores, journal,
+                stats, callbackExecutor);
+        final CachedDataChangeStreams changeStreams = new CachedDataChangeStreams(nodeId, stores, listenerExecutor,
+                scheduler, ConfigurationHelper.getChangeStreamBufferSize(cachedMountPointNode.getChangeNotification()),
+                ConfigurationHelper.getChangeStreamHistorySize(cachedMountPointNode.getChangeNotification()),
+                ConfigurationHelper.getChangeStreamRetentionSeconds(cachedMountPointNode.getChangeNotification()));
+        final CachedDOMDataBroker domDataBroker = new CachedDOMDataBroker(nodeId, stores, callbackExecutor,
+                writeBatcher, journal, listenerDispatcher, stats, changeStreams);
+
+        final CachedMountPointInstance instance = new CachedMountPointInstance(nodeId, stores, listenerDispatcher,
+                domDataBroker, snapshotter, journal);
+
+        LOG.debug("{}: Registering data tree change listeners", nodeId);
+        final Set<QName> topLevelNodes = topLevelNodes(cachedSchemaRepository, schemaContext);
+        instance.listenTo(topLevelNodes);
+        LOG.info("{}: Registered DTCL at the root of {} top-level data nodes", nodeId, topLevelNodes.size());
+        return instance;
+    }
+
+    /**
+     * Delete the snapshot and the journal of a mount point whose data stores are not active.
+     */
+    private static void discardPersistentFiles(final String nodeId, final CachedMountPointNode cachedMountPointNode) {
+        final String directory = cachedMountPointNode.getSchemaCacheDirectory();
+        for (Path file : Arrays.asList(CachedMountPointSnapshot.snapshotPath(directory, nodeId),
+                CachedMountPointJournal.journalPath(directory, nodeId))) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.warn("{}: Failed to delete {}", nodeId, file, e);
+            }
+        }
+    }
+
+    /**
+     * Invalidate the schema contexts depending on changed models, then update the mount points using them if hot
+     * reload is enabled.
+     */
+    private void onModelsChanged(final String cacheDirectoryName, final Set<String> moduleNames) {
+        if (SchemaContextCache.getInstance().invalidate(cacheDirectoryName, moduleNames) == 0) {
+            return;
+        }
+        registry.forEachActive((nodeId, cachedMountPoint) -> {
+            if (!cachedMountPoint.isSchemaStale()) {
+                return;
+            }
+            if (ConfigurationHelper.isSchemaHotReload(config)) {
+                updateCachedMountPoint(nodeId, cachedMountPoint.getNode());
+            } else {
+                LOG.info("{}: The models of the cached mount point changed, update its capabilities or create it "
+                        + "again to use them", nodeId);
+            }
+        });
+    }
+
+    /**
+     * Release the data stores of the lazy mount points idle for longer than the idle timeout, then of the least
+     * recently used ones while there are more active mount points than allowed. Runs on the persistence scheduler,
+     * since releasing a mount point writes its snapshot and closes its journal.
+     */
+    private void releaseIdleMountPoints() {
+        final List<Map.Entry<Long, LazyCachedMountPoint>> active = new ArrayList<>();
+        registry.forEachActive((nodeId, cachedMountPoint) -> {
+            final LazyCachedMountPoint lazyMountPoint = cachedMountPoint.getLazyMountPoint();
+            if (lazyMountPoint != null && lazyMountPoint.isActive()) {
+                active.add(new AbstractMap.SimpleImmutableEntry<>(lazyMountPoint.getLastAccessNanos(),
+                        lazyMountPoint));
+            }
+        });
+        // Least recently used first
+        active.sort(Map.Entry.comparingByKey());
+
+        final long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(ConfigurationHelper.getIdleTimeoutSeconds(config));
+        final int maxActive = ConfigurationHelper.getMaxActiveMountPoints(config);
+        int excess = maxActive > 0 ? active.size() - maxActive : 0;
+        final long now = System.nanoTime();
+        for (Map.Entry<Long, LazyCachedMountPoint> entry : active) {
+            final boolean idle = idleTimeoutNanos > 0 && now - entry.getValue().getLastAccessNanos() > idleTimeoutNanos;
+            if ((excess > 0 || idle) && entry.getValue().release()) {
+                excess--;
+            }
+        }
+    }
+
+    private CachedMountPointJournal setupJournal(final String nodeId, final CachedMountPointNode cachedMountPointNode) {
+        final Persistence persistence = cachedMountPointNode.getPersistence();
+        final Path journalPath = CachedMountPointJournal.journalPath(cachedMountPointNode.getSchemaCacheDirectory(),
+                nodeId);
+        if (!ConfigurationHelper.isJournalEnabled(persistence)) {
+            try {
+                // A journal left from a previous configuration no longer matches the snapshots
+                Files.deleteIfExists(journalPath);
+            } catch (IOException e) {
+                LOG.warn("{}: Failed to delete stale journal {}", nodeId, journalPath, e);
+            }
+            return null;
+        }
+        return new CachedMountPointJournal(nodeId, journalPath, persistenceScheduler,
+                ConfigurationHelper.getJournalSyncIntervalMillis(persistence));
+    }
+
+    private CachedMountPointSnapshotter setupSnapshotter(final String nodeId,
+                                                         final CachedMountPointNode cachedMountPointNode,
+                                                         final CachedDOMStores stores,
+                                                         final CachedMountPointJournal journal) {
+        if (!ConfigurationHelper.isSnapshotEnabled(cachedMountPointNode.getPersistence())) {
+            return null;
+        }
+        return new CachedMountPointSnapshotter(nodeId,
+                CachedMountPointSnapshot.snapshotPath(cachedMountPointNode.getSchemaCacheDirectory(), nodeId), stores,
+                journal);
+    }
+
+    /**
+     * Load the last snapshot, replay the journal on top of it, then start taking snapshots.
+     */
+    private void restorePersistentState(final String nodeId, final CachedMountPointNode cachedMountPointNode,
+                                        final CachedDOMStores stores, final CachedMountPointJournal journal,
+                                        final CachedMountPointSnapshotter snapshotter) {
+        long snapshotSequence = 0;
+        if (snapshotter != null) {
+            snapshotter.restore();
+            snapshotSequence = snapshotter.getSequence();
+        }
+        if (journal != null) {
+            try {
+                journal.recover(stores, snapshotSequence);
+            } catch (IOException e) {
+                throw new IllegalStateException(nodeId + ": Failed to open the journal", e);
+            }
+        }
+        if (snapshotter != null) {
+            snapshotter.start(persistenceScheduler,
+                    ConfigurationHelper.getSnapshotIntervalSeconds(cachedMountPointNode.getPersistence()));
+        }
+    }
+
+    private CachedDOMWriteBatcher setupWriteBatcher(final String nodeId,
+                                                    final CachedMountPointNode cachedMountPointNode,
+                                                    final CachedDOMStores stores,
+                                                    final CachedMountPointJournal journal,
+                                                    final CachedMountPointStats stats,
+                                                    final Executor callbackExecutor) {
+        final GroupCommit groupCommit = cachedMountPointNode.getGroupCommit();
+        if (!ConfigurationHelper.isGroupCommitEnabled(groupCommit)) {
+            return null;
+        }
+        return new CachedDOMWriteBatcher(nodeId, stores::getStore, callbackExecutor, scheduler,
+                ConfigurationHelper.getGroupCommitWindowMicros(groupCommit),
+                ConfigurationHelper.getGroupCommitMaxBatchSize(groupCommit), journal, stats);
+    }
+
+    private void updateMountStatus(final String nodeId, final CachedMountPointStatus.MountStatus status,
+                                   final String message) {
+        final WriteTransaction wtx = broker.newWriteOnlyTransaction();
+        wtx.put(LogicalDatastoreType.OPERATIONAL, TopologyHelper.getNodeIdentifier(nodeId),
+                TopologyHelper.buildMountStatusNode(nodeId, status, message));
+        Futures.addCallback(wtx.submit(), new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                LOG.debug("{}: Mount status updated to {}", nodeId, status);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOG.warn("{}: Unable to update mount status to {}", nodeId, status, t);
+            }
+        });
+    }
+
+    /**
+     * Copy the metrics of every cached mount point to its operational node.
+     */
+    private void publishStatistics() {
+        if (registry.getActiveNodeIds().isEmpty()) {
+            return;
         }
+        final WriteTransaction wtx = broker.newWriteOnlyTransaction();
+        registry.forEachActive((nodeId, cachedMountPoint) -> {
+            // The statistics of an idle mount point do not change
+            if (cachedMountPoint.isActive()) {
+                wtx.merge(LogicalDatastoreType.OPERATIONAL, TopologyHelper.getNodeIdentifier(nodeId),
+                        TopologyHelper.buildStatisticsNode(nodeId, cachedMountPoint.getStats()));
+            }
+        });
+        Futures.addCallback(wtx.submit(), new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                LOG.trace("Statistics of the cached mount points published");
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOG.warn("Unable to publish the statistics of the cached mount points", t);
+            }
+        });
     }
 
     private CachedSchemaRepository setupSchemaRepository(final String nodeId, final CachedMountPointNode cachedMountPointNode) {
@@ -170,40 +806,50 @@ public class CachedMountPointTopology implements DataTreeChangeListener<Node> {
     }
 
     private YangInstanceIdentifier mountPointPath(final String nodeId) {
-        NodeKey nodeKey = new NodeKey(new NodeId(nodeId));
-        return codec.toYangInstanceIdentifier(TopologyHelper.CACHED_MOUNT_POINT_TOPOLOGY.child(Node.class, nodeKey));
+        return codec.toYangInstanceIdentifier(TopologyHelper.getNodeIdentifier(nodeId));
     }
 
-    private Collection<ListenerRegistration<DOMDataTreeChangeListener>> registerDataTreeChangeListener(final String nodeId,
-                                                                                                       final CachedSchemaRepository cachedSchemaRepository,
-                                                                                                       final CachedDOMDataBroker domDataBroker) {
-        final Collection<ListenerRegistration<DOMDataTreeChangeListener>> regs = Lists.newArrayList();
-
+    /**
+     * @return every top-level data node of the loaded models, including the nodes other models augment. A listener is
+     *         registered on each of them, they all go through the single root listener of the data store, see
+     *         {@link CachedDataTreeChangeDispatcher}.
+     */
+    private static Set<QName> topLevelNodes(final CachedSchemaRepository cachedSchemaRepository,
+                                            final SchemaContext schemaContext) {
+        final Set<QName> topLevelNodes = new LinkedHashSet<>();
         cachedSchemaRepository.qNames().forEach(qName -> {
-            cachedSchemaRepository.getSchemaContext().findModuleByNamespace(qName.getNamespace()).forEach(module -> {
-                module.getChildNodes().forEach(childNode -> {
-                    // TODO Register listener for lists and other type of DataSchemaNode
-                    if (ContainerSchemaNode.class.isAssignableFrom(childNode.getClass())) {
-                        YangInstanceIdentifier yangInstanceIdentifier = fromQnameToYiid.apply(QName.create(qName, childNode.getQName().getLocalName()));
-                        LOG.info("{}: Registering DTCL for ContainerSchemaNode={}", nodeId, yangInstanceIdentifier);
-                        DOMDataTreeIdentifier dataTreeIdentifier = new DOMDataTreeIdentifier(LogicalDatastoreType.CONFIGURATION, yangInstanceIdentifier);
-                        regs.add(domDataBroker.registerDataTreeChangeListener(dataTreeIdentifier, new CachedDOMDataTreeChangeListener()));
+            schemaContext.findModuleByNamespace(qName.getNamespace()).forEach(module -> {
+                // Containers, lists, leaves, leaf-lists, choices and anyxml alike
+                module.getChildNodes().forEach(childNode -> topLevelNodes.add(childNode.getQName()));
+                module.getAugmentations().forEach(augmentation -> {
+                    final QName target = augmentation.getTargetPath().getPathFromRoot().iterator().next();
+                    // Skip augmentations of RPCs and notifications
+                    if (schemaContext.getDataChildByName(target) != null) {
+                        topLevelNodes.add(target);
                     }
                 });
             });
         });
-        return regs;
+        return topLevelNodes;
     }
 
     private void deleteCachedMountPoint(String nodeId) {
-        final CachedMountPointId cachedMountPoint = cachedMountPoints.get(nodeId);
-        if (cachedMountPoint != null) {
-            try {
-                cachedMountPoint.close();
-                cachedMountPoints.remove(nodeId);
-            } catch (Exception e) {
-                LOG.error("{}: Failed to close mount point", nodeId);
-            }
+        // A mount point being created is closed by its creation callback once the pipeline completes
+        registry.remove(nodeId, (id, cachedMountPoint) -> {
+            cachedMountPoint.discardPersistentState();
+            closeCachedMountPoint(id, cachedMountPoint);
+        });
+
+        final WriteTransaction wtx = broker.newWriteOnlyTransaction();
+        wtx.delete(LogicalDatastoreType.OPERATIONAL, TopologyHelper.getNodeIdentifier(nodeId));
+        wtx.submit();
+    }
+
+    private static void closeCachedMountPoint(final String nodeId, final CachedMountPointId cachedMountPoint) {
+        try {
+            cachedMountPoint.close();
+        } catch (Exception e) {
+            LOG.error("{}: Failed to close mount point", nodeId, e);
         }
     }
 }
@@ -7,75 +7,78 @@
  */
 package org.opendaylight.mdsal.mount.cache.impl;
 
-import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.CheckedFuture;
-import java.io.File;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
-import org.opendaylight.mdsal.mount.cache.impl.util.SourceIdentifierHelper;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.opendaylight.yangtools.yang.common.QName;
 import org.opendaylight.yangtools.yang.model.api.SchemaContext;
-import org.opendaylight.yangtools.yang.model.repo.api.SchemaContextFactory;
-import org.opendaylight.yangtools.yang.model.repo.api.SchemaResolutionException;
-import org.opendaylight.yangtools.yang.model.repo.api.SchemaSourceFilter;
-import org.opendaylight.yangtools.yang.model.repo.api.YangTextSchemaSource;
-import org.opendaylight.yangtools.yang.model.repo.util.FilesystemSchemaSourceCache;
-import org.opendaylight.yangtools.yang.parser.repo.SharedSchemaRepository;
-import org.opendaylight.yangtools.yang.parser.util.TextToASTTransformer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Created by adetalhouet on 2017-02-02.
  */
-public class CachedSchemaRepository {
+public class CachedSchemaRepository implements AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(CachedSchemaRepository.class);
 
     public static final String DEFAULT_CACHED_MOUNT_POINT_DIRECTORY = "cache/cached-mountpoint";
 
-    private SchemaContextFactory schemaContextFactory;
-    private SchemaContext schemaContext;
-    private List<QName> qNameSet;
+    private final String nodeId;
+    private final SchemaContextCache.Entry cacheEntry;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
 
-    private CachedSchemaRepository(final SchemaContextFactory schemaContextFactory, final Collection<String> caps) {
-        this.schemaContextFactory = schemaContextFactory;
-        this.qNameSet = Lists.newArrayList();
-        this.schemaContext = setSchemaContext(caps, qNameSet);
+    private CachedSchemaRepository(final String nodeId, final SchemaContextCache.Entry cacheEntry) {
+        this.nodeId = nodeId;
+        this.cacheEntry = cacheEntry;
     }
 
     static CachedSchemaRepository newInstance(final String nodeId, final String cacheDirectoryName, final Collection<String> caps) {
+        return new CachedSchemaRepository(nodeId,
+                SchemaContextCache.getInstance().acquire(nodeId, cacheDirectoryName, caps));
+    }
 
-        final SharedSchemaRepository schemaRegistry = new SharedSchemaRepository(cacheDirectoryName);
-        final SchemaContextFactory schemaContextFactory = schemaRegistry.createSchemaContextFactory(SchemaSourceFilter.ALWAYS_ACCEPT);
-
-        schemaRegistry.registerSchemaSourceListener(TextToASTTransformer.create(schemaRegistry, schemaRegistry));
-
-        final String relativeSchemaCacheDirectory = DEFAULT_CACHED_MOUNT_POINT_DIRECTORY + File.separator + cacheDirectoryName;
-        final FilesystemSchemaSourceCache filesystemSchemaSourceCache = new FilesystemSchemaSourceCache<>(schemaRegistry,
-                YangTextSchemaSource.class, new File(relativeSchemaCacheDirectory));
-        schemaRegistry.registerSchemaSourceListener(filesystemSchemaSourceCache);
-        LOG.info("{}: Cached mount point will use schema cache directory {} ", nodeId, relativeSchemaCacheDirectory);
-
-        return new CachedSchemaRepository(schemaContextFactory, caps);
+    /**
+     * Parse newly loaded model files in the background, ahead of the mount points using them.
+     */
+    public static void warmUp(final Collection<Path> files) {
+        CompiledSchemaSourceCache.getInstance().warmUp(files);
     }
 
-    private SchemaContext setSchemaContext(final Collection<String> caps, final Collection<QName> qNameSet) {
-        final CheckedFuture<SchemaContext, SchemaResolutionException> schemaBuilderFuture =
-                schemaContextFactory.createSchemaContext(SourceIdentifierHelper.fromStrings(caps, qNameSet));
+    SchemaContext getSchemaContext() {
         try {
-            return schemaBuilderFuture.checkedGet();
-        } catch (SchemaResolutionException exception) {
-            LOG.error("Failed to setup SchemaContext", exception);
+            return cacheEntry.getSchemaContextFuture().get();
+        } catch (InterruptedException | ExecutionException exception) {
+            LOG.error("{}: Failed to setup SchemaContext", nodeId, exception);
             return null;
         }
     }
 
-    SchemaContext getSchemaContext() {
-        return this.schemaContext;
+    ListenableFuture<SchemaContext> getSchemaContextFuture() {
+        return cacheEntry.getSchemaContextFuture();
+    }
+
+    /**
+     * @return whether the models this schema was resolved from changed since
+     */
+    boolean isStale() {
+        return cacheEntry.isStale();
     }
 
     List<QName> qNames() {
-        return this.qNameSet;
+        return cacheEntry.qNames();
+    }
+
+    /**
+     * Release this mount point's reference on the shared schema context.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            SchemaContextCache.getInstance().release(cacheEntry);
+        }
     }
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.opendaylight.yangtools.yang.model.repo.api.SourceIdentifier;
+import org.opendaylight.yangtools.yang.model.repo.api.YangTextSchemaSource;
+import org.opendaylight.yangtools.yang.model.repo.spi.SchemaSourceRegistry;
+import org.opendaylight.yangtools.yang.model.repo.util.SchemaSourceTransformer;
+import org.opendaylight.yangtools.yang.parser.repo.SharedSchemaRepository;
+import org.opendaylight.yangtools.yang.parser.util.ASTSchemaSource;
+import org.opendaylight.yangtools.yang.parser.util.TextToASTTransformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide cache of parsed YANG sources, keyed by source identifier and by the SHA-256 of the source text. It
+ * replaces the {@link TextToASTTransformer} of each schema cache directory: a module shared by several capability sets
+ * or directories is lexed and parsed once, and a source whose file changed on disk is parsed again since its hash
+ * changed. Parsed sources are softly referenced, the memory they use is given back under pressure. A source requested
+ * while it is being parsed waits for that parsing rather than being parsed twice.
+ *
+ * Parsed sources are not persisted: the parser of this yangtools version produces ANTLR parse trees, which cannot be
+ * serialized, so the sources are parsed again after a restart. {@link #warmUp(Collection)} parses them in the
+ * background at startup, ahead of the mount points using them.
+ *
+ * Sources are read and parsed on the executor set with {@link #setExecutor(ListeningExecutorService)}. The schema
+ * context factory requests all the sources of a schema before assembling them, so they are parsed in parallel.
+ */
+final class CompiledSchemaSourceCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompiledSchemaSourceCache.class);
+
+    private static final CompiledSchemaSourceCache INSTANCE = new CompiledSchemaSourceCache();
+
+    private final Cache<Key, ASTSchemaSource> sources = CacheBuilder.newBuilder().softValues().recordStats().build();
+    // Sources being parsed, requested again meanwhile they are parsed once
+    private final ConcurrentMap<Key, ListenableFuture<ASTSchemaSource>> parsing = new ConcurrentHashMap<>();
+
+    private volatile ListeningExecutorService executor = MoreExecutors.newDirectExecutorService();
+
+    private CompiledSchemaSourceCache() {
+    }
+
+    static CompiledSchemaSourceCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Set the executor reading and parsing the sources, sources are parsed on the requesting thread until then.
+     */
+    void setExecutor(final ListeningExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Reset the executor, e.g. before shutting it down.
+     */
+    void resetExecutor() {
+        this.executor = MoreExecutors.newDirectExecutorService();
+    }
+
+    /**
+     * Register the transformation of the YANG text sources of a repository into parsed sources, through this cache.
+     */
+    void register(final SharedSchemaRepository repository, final SchemaSourceRegistry registry) {
+        repository.registerSchemaSourceListener(new SchemaSourceTransformer<>(repository, YangTextSchemaSource.class,
+                registry, ASTSchemaSource.class, this::compileAsync));
+    }
+
+    /**
+     * Parse model files in the background, so that the schema resolutions using them find them already parsed. The
+     * source identifiers are derived from the file names, {@code <module>@<revision>.yang}.
+     */
+    void warmUp(final Collection<Path> files) {
+        for (Path file : files) {
+            final SourceIdentifier sourceIdentifier;
+            try {
+                sourceIdentifier = YangTextSchemaSource.identifierFromFilename(file.getFileName().toString());
+            } catch (IllegalArgumentException e) {
+                LOG.debug("Not parsing {}, it is not named after a module", file, e);
+                continue;
+            }
+            final YangTextSchemaSource text = YangTextSchemaSource.delegateForByteSource(sourceIdentifier,
+                    com.google.common.io.Files.asByteSource(file.toFile()));
+            Futures.addCallback(compileAsync(text), new FutureCallback<ASTSchemaSource>() {
+                @Override
+                public void onSuccess(final ASTSchemaSource result) {
+                    LOG.debug("Parsed {} in the background", file);
+                }
+
+                @Override
+                public void onFailure(final Throwable throwable) {
+                    LOG.warn("Failed to parse {}", file, throwable);
+                }
+            });
+        }
+    }
+
+    private ListenableFuture<ASTSchemaSource> compileAsync(final YangTextSchemaSource text) {
+        return Futures.dereference(executor.submit(() -> compile(text)));
+    }
+
+    private ListenableFuture<ASTSchemaSource> compile(final YangTextSchemaSource text) throws IOException {
+        // Read the text once, it is both hashed and parsed
+        final byte[] bytes = text.read();
+        final Key key = new Key(text.getIdentifier(), Hashing.sha256().hashBytes(bytes));
+        ASTSchemaSource cached = sources.getIfPresent(key);
+        if (cached != null) {
+            LOG.debug("Reusing parsed source {}", key);
+            return Futures.immediateFuture(cached);
+        }
+
+        final SettableFuture<ASTSchemaSource> parsed = SettableFuture.create();
+        final ListenableFuture<ASTSchemaSource> inProgress = parsing.putIfAbsent(key, parsed);
+        if (inProgress != null) {
+            LOG.debug("Waiting for source {} being parsed", key);
+            return inProgress;
+        }
+
+        // The source may have been parsed, and no longer be in progress, since it was looked up
+        cached = sources.getIfPresent(key);
+        if (cached != null) {
+            LOG.debug("Reusing parsed source {}", key);
+            parsing.remove(key, parsed);
+            parsed.set(cached);
+            return parsed;
+        }
+
+        LOG.debug("Parsing source {}", key);
+        final ListenableFuture<ASTSchemaSource> future;
+        try {
+            future = TextToASTTransformer.TRANSFORMATION.apply(
+                    YangTextSchemaSource.delegateForByteSource(text.getIdentifier(), ByteSource.wrap(bytes)));
+        } catch (Exception e) {
+            parsing.remove(key, parsed);
+            parsed.setException(e);
+            return parsed;
+        }
+        Futures.addCallback(future, new FutureCallback<ASTSchemaSource>() {
+            @Override
+            public void onSuccess(final ASTSchemaSource result) {
+                sources.put(key, result);
+                parsing.remove(key, parsed);
+                parsed.set(result);
+            }
+
+            @Override
+            public void onFailure(final Throwable throwable) {
+                // Not cached, the source is parsed again on the next attempt
+                parsing.remove(key, parsed);
+                parsed.setException(throwable);
+            }
+        });
+        return parsed;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("size", sources.size()).add("stats", sources.stats()).toString();
+    }
+
+    private static final class Key {
+        private final SourceIdentifier sourceIdentifier;
+        private final HashCode hash;
+
+        Key(final SourceIdentifier sourceIdentifier, final HashCode hash) {
+            this.sourceIdentifier = sourceIdentifier;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sourceIdentifier, hash);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return sourceIdentifier.equals(other.sourceIdentifier) && hash.equals(other.hash);
+        }
+
+        @Override
+        public String toString() {
+            return sourceIdentifier + "@" + hash;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.Collection;
+import java.util.EventListener;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.annotation.Nonnull;
+import org.opendaylight.controller.md.sal.common.api.TransactionStatus;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionChainListener;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataBroker;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataBrokerExtension;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataChangeListener;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataReadWriteTransaction;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeService;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeIdentifier;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataWriteTransaction;
+import org.opendaylight.controller.md.sal.dom.api.DOMTransactionChain;
+import org.opendaylight.mdsal.mount.cache.api.CachedDOMBulkReadService;
+import org.opendaylight.mdsal.mount.cache.api.CachedDOMChangeStreamService;
+import org.opendaylight.mdsal.mount.cache.api.CachedDataTreeChange;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMDataBroker;
+import org.opendaylight.mdsal.mount.cache.impl.listener.CachedDataChangeStreams;
+import org.opendaylight.yangtools.concepts.AbstractListenerRegistration;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link DOMDataBroker} of a cached mount point created in lazy mode. The data stores are only built when the
+ * mount point is first accessed, and can be released once it is idle: the mount point itself stays registered and
+ * builds them again, restoring the persisted data, on the next access.
+ * Listeners, transaction chains and change stream subscriptions keep the data stores active until they are closed,
+ * write transactions until their commit completes or they are cancelled. Read-only transactions work on a snapshot,
+ * which stays readable once the data stores are released.
+ */
+final class LazyCachedMountPoint implements DOMDataBroker, DOMDataTreeChangeService, CachedDOMBulkReadService,
+        CachedDOMChangeStreamService, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LazyCachedMountPoint.class);
+
+    private final String nodeId;
+    private final Runnable persistentStateDiscarder;
+    private final Runnable activationListener;
+
+    private volatile long lastAccessNanos = System.nanoTime();
+
+    // Guarded by this
+    private Supplier<CachedMountPointInstance> activator;
+    private CachedMountPointInstance instance;
+    private int pins;
+    private boolean closed;
+
+    /**
+     * @param activator                builds the data side of the mount point
+     * @param persistentStateDiscarder deletes the persisted data of the mount point while it is not active
+     * @param activationListener       notified after each activation
+     */
+    LazyCachedMountPoint(final String nodeId,
+                         final Supplier<CachedMountPointInstance> activator,
+                         final Runnable persistentStateDiscarder,
+                         final Runnable activationListener) {
+        this.nodeId = nodeId;
+        this.activator = activator;
+        this.persistentStateDiscarder = persistentStateDiscarder;
+        this.activationListener = activationListener;
+    }
+
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    synchronized boolean isActive() {
+        return instance != null;
+    }
+
+    private CachedDOMDataBroker activate() {
+        lastAccessNanos = System.nanoTime();
+        final boolean activated;
+        final CachedDOMDataBroker dataBroker;
+        synchronized (this) {
+            Preconditions.checkState(!closed, "Cached mount point %s is closed", nodeId);
+            activated = instance == null;
+            if (activated) {
+                LOG.debug("{}: Activating cached mount point", nodeId);
+                instance = activator.get();
+            }
+            dataBroker = instance.getDataBroker();
+        }
+        if (activated) {
+            activationListener.run();
+        }
+        return dataBroker;
+    }
+
+    private synchronized CachedDOMDataBroker pin() {
+        final CachedDOMDataBroker dataBroker = activate();
+        pins++;
+        return dataBroker;
+    }
+
+    private synchronized void unpin() {
+        pins--;
+        lastAccessNanos = System.nanoTime();
+    }
+
+    /**
+     * Release the data stores, unless they are in use or releasing them would lose data.
+     *
+     * @return whether the data stores were released
+     */
+    synchronized boolean release() {
+        if (instance == null || pins > 0 || !instance.isReleasable()) {
+            return false;
+        }
+        LOG.debug("{}: Releasing idle cached mount point", nodeId);
+        instance.close();
+        instance = null;
+        return true;
+    }
+
+    /**
+     * Replace the activator, e.g. after a schema change, and bring the data side up to date. An inactive mount point
+     * is activated first: its persisted data matches the current activator, it is restored with it and then updated,
+     * so that the snapshot and the journal match the new one.
+     *
+     * @param activator builds the data side of the mount point from now on
+     * @param updater   updates the data side currently active
+     */
+    void update(final Supplier<CachedMountPointInstance> activator,
+                final Consumer<CachedMountPointInstance> updater) {
+        pin();
+        try {
+            synchronized (this) {
+                this.activator = activator;
+                updater.accept(instance);
+            }
+        } finally {
+            unpin();
+        }
+    }
+
+    synchronized long getListenerBacklog() {
+        return instance == null ? 0 : instance.getListenerBacklog();
+    }
+
+    @Override
+    public DOMDataReadOnlyTransaction newReadOnlyTransaction() {
+        return activate().newReadOnlyTransaction();
+    }
+
+    @Override
+    public DOMDataReadWriteTransaction newReadWriteTransaction() {
+        return new PinnedReadWriteTransaction(pin().newReadWriteTransaction());
+    }
+
+    @Override
+    public DOMDataWriteTransaction newWriteOnlyTransaction() {
+        return new PinnedWriteTransaction<>(pin().newWriteOnlyTransaction());
+    }
+
+    @Override
+    @Deprecated
+    public ListenerRegistration<DOMDataChangeListener> registerDataChangeListener(
+            final LogicalDatastoreType store, final YangInstanceIdentifier path, final DOMDataChangeListener listener,
+            final DataChangeScope triggeringScope) {
+        return pinned(pin().registerDataChangeListener(store, path, listener, triggeringScope));
+    }
+
+    @Nonnull
+    @Override
+    public <L extends DOMDataTreeChangeListener> ListenerRegistration<L> registerDataTreeChangeListener(
+            @Nonnull final DOMDataTreeIdentifier treeId, @Nonnull final L listener) {
+        return pinned(pin().registerDataTreeChangeListener(treeId, listener));
+    }
+
+    @Override
+    public CheckedFuture<Map<YangInstanceIdentifier, Optional<NormalizedNode<?, ?>>>, ReadFailedException> readAll(
+            final LogicalDatastoreType store, final Collection<YangInstanceIdentifier> paths) {
+        return activate().readAll(store, paths);
+    }
+
+    /**
+     * Read the paths if the data stores are active, without activating them. It is not an access either, so reading
+     * all the nodes periodically does not keep them active.
+     *
+     * @return the data at the paths, or null if the data stores are not active
+     */
+    CheckedFuture<Map<YangInstanceIdentifier, Optional<NormalizedNode<?, ?>>>, ReadFailedException> readAllIfActive(
+            final LogicalDatastoreType store, final Collection<YangInstanceIdentifier> paths) {
+        final CachedDOMDataBroker dataBroker;
+        synchronized (this) {
+            Preconditions.checkState(!closed, "Cached mount point %s is closed", nodeId);
+            if (instance == null) {
+                return null;
+            }
+            dataBroker = instance.getDataBroker();
+        }
+        return dataBroker.readAll(store, paths);
+    }
+
+    /**
+     * The history of the streams is lost when the data stores are released, their subscribers then cannot resume.
+     * A subscriber which cannot be subscribed, e.g. once the mount point is closed, gets the error through
+     * {@link Subscriber#onError(Throwable)}.
+     */
+    @Override
+    public Publisher<CachedDataTreeChange> getChangeStream(final DOMDataTreeIdentifier treeId,
+                                                           final long fromSequence) {
+        return subscriber -> {
+            Preconditions.checkNotNull(subscriber);
+            final CachedDOMDataBroker dataBroker;
+            try {
+                dataBroker = pin();
+            } catch (RuntimeException e) {
+                CachedDataChangeStreams.fail(subscriber, e);
+                return;
+            }
+            final Publisher<CachedDataTreeChange> stream;
+            try {
+                stream = dataBroker.getChangeStream(treeId, fromSequence);
+            } catch (RuntimeException e) {
+                unpin();
+                CachedDataChangeStreams.fail(subscriber, e);
+                return;
+            }
+            stream.subscribe(new PinnedSubscriber(subscriber));
+        };
+    }
+
+    private <L extends EventListener> ListenerRegistration<L> pinned(final ListenerRegistration<L> registration) {
+        return new AbstractListenerRegistration<L>(registration.getInstance()) {
+            @Override
+            protected void removeRegistration() {
+                registration.close();
+                unpin();
+            }
+        };
+    }
+
+    @Override
+    public DOMTransactionChain createTransactionChain(final TransactionChainListener listener) {
+        final DOMTransactionChain chain = pin().createTransactionChain(listener);
+        final AtomicBoolean chainClosed = new AtomicBoolean(false);
+        return new DOMTransactionChain() {
+            @Override
+            public DOMDataReadOnlyTransaction newReadOnlyTransaction() {
+                lastAccessNanos = System.nanoTime();
+                return chain.newReadOnlyTransaction();
+            }
+
+            @Override
+            public DOMDataReadWriteTransaction newReadWriteTransaction() {
+                lastAccessNanos = System.nanoTime();
+                return chain.newReadWriteTransaction();
+            }
+
+            @Override
+            public DOMDataWriteTransaction newWriteOnlyTransaction() {
+                lastAccessNanos = System.nanoTime();
+                return chain.newWriteOnlyTransaction();
+            }
+
+            @Override
+            public void close() {
+                chain.close();
+                if (chainClosed.compareAndSet(false, true)) {
+                    unpin();
+                }
+            }
+        };
+    }
+
+    @Nonnull
+    @Override
+    public Map<Class<? extends DOMDataBrokerExtension>, DOMDataBrokerExtension> getSupportedExtensions() {
+        return ImmutableMap.of(DOMDataTreeChangeService.class, this, CachedDOMBulkReadService.class, this,
+                CachedDOMChangeStreamService.class, this);
+    }
+
+    /**
+     * Drop the persisted data of the mount point. To be called before {@link #close()} when the node is deleted.
+     */
+    synchronized void discardPersistentState() {
+        if (instance != null) {
+            instance.discardPersistentState();
+        } else {
+            persistentStateDiscarder.run();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Keeps the data stores active until the transaction is committed or cancelled.
+     */
+    private class PinnedWriteTransaction<T extends DOMDataWriteTransaction> implements DOMDataWriteTransaction {
+        final T delegate;
+        private final AtomicBoolean pinned = new AtomicBoolean(true);
+
+        PinnedWriteTransaction(final T delegate) {
+            this.delegate = delegate;
+        }
+
+        private void release() {
+            if (pinned.compareAndSet(true, false)) {
+                unpin();
+            }
+        }
+
+        @Override
+        public Object getIdentifier() {
+            return delegate.getIdentifier();
+        }
+
+        @Override
+        public void put(final LogicalDatastoreType store, final YangInstanceIdentifier path,
+                        final NormalizedNode<?, ?> data) {
+            delegate.put(store, path, data);
+        }
+
+        @Override
+        public void merge(final LogicalDatastoreType store, final YangInstanceIdentifier path,
+                          final NormalizedNode<?, ?> data) {
+            delegate.merge(store, path, data);
+        }
+
+        @Override
+        public void delete(final LogicalDatastoreType store, final YangInstanceIdentifier path) {
+            delegate.delete(store, path);
+        }
+
+        @Override
+        public boolean cancel() {
+            final boolean cancelled = delegate.cancel();
+            if (cancelled) {
+                release();
+            }
+            return cancelled;
+        }
+
+        @Override
+        public CheckedFuture<Void, TransactionCommitFailedException> submit() {
+            final CheckedFuture<Void, TransactionCommitFailedException> future;
+            try {
+                future = delegate.submit();
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+            future.addListener(this::release, MoreExecutors.directExecutor());
+            return future;
+        }
+
+        @Override
+        @Deprecated
+        public ListenableFuture<RpcResult<TransactionStatus>> commit() {
+            final ListenableFuture<RpcResult<TransactionStatus>> future;
+            try {
+                future = delegate.commit();
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+            future.addListener(this::release, MoreExecutors.directExecutor());
+            return future;
+        }
+    }
+
+    private final class PinnedReadWriteTransaction extends PinnedWriteTransaction<DOMDataReadWriteTransaction>
+            implements DOMDataReadWriteTransaction {
+
+        PinnedReadWriteTransaction(final DOMDataReadWriteTransaction delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public CheckedFuture<Optional<NormalizedNode<?, ?>>, ReadFailedException> read(
+                final LogicalDatastoreType store, final YangInstanceIdentifier path) {
+            return delegate.read(store, path);
+        }
+
+        @Override
+        public CheckedFuture<Boolean, ReadFailedException> exists(final LogicalDatastoreType store,
+                                                                  final YangInstanceIdentifier path) {
+            return delegate.exists(store, path);
+        }
+    }
+
+    /**
+     * Keeps the data stores active until the subscription ends.
+     */
+    private final class PinnedSubscriber implements Subscriber<CachedDataTreeChange> {
+        private final Subscriber<? super CachedDataTreeChange> delegate;
+        private final AtomicBoolean pinned = new AtomicBoolean(true);
+
+        PinnedSubscriber(final Subscriber<? super CachedDataTreeChange> delegate) {
+            this.delegate = delegate;
+        }
+
+        private void release() {
+            if (pinned.compareAndSet(true, false)) {
+                unpin();
+            }
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            delegate.onSubscribe(new Subscription() {
+                @Override
+                public void request(final long count) {
+                    subscription.request(count);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                    release();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(final CachedDataTreeChange change) {
+            lastAccessNanos = System.nanoTime();
+            delegate.onNext(change);
+        }
+
+        @Override
+        public void onError(final Throwable cause) {
+            release();
+            delegate.onError(cause);
+        }
+
+        @Override
+        public void onComplete() {
+            release();
+            delegate.onComplete();
+        }
+    }
+}
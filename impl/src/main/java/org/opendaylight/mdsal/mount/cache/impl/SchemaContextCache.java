@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.opendaylight.mdsal.mount.cache.impl.util.SourceIdentifierHelper;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.model.api.Module;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+import org.opendaylight.yangtools.yang.model.repo.api.SchemaContextFactory;
+import org.opendaylight.yangtools.yang.model.repo.api.SchemaResolutionException;
+import org.opendaylight.yangtools.yang.model.repo.api.SchemaSourceFilter;
+import org.opendaylight.yangtools.yang.model.repo.api.SourceIdentifier;
+import org.opendaylight.yangtools.yang.model.repo.api.YangTextSchemaSource;
+import org.opendaylight.yangtools.yang.model.repo.util.FilesystemSchemaSourceCache;
+import org.opendaylight.yangtools.yang.parser.repo.SharedSchemaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide cache of {@link SchemaContext}s, keyed by schema cache directory and by the set of
+ * {@link SourceIdentifier}s resolved from the capabilities. Cached mount points with the same
+ * directory and the same capabilities share a single context.
+ *
+ * Entries are reference counted: every {@link CachedSchemaRepository} holds one reference, which is
+ * released when the owning {@link CachedMountPointId} is closed. The entry is dropped with its
+ * last reference.
+ *
+ * When the models of a directory change, the entries depending on them are invalidated: they are no longer handed
+ * out, and the mount points still using them can tell their schema is stale.
+ */
+final class SchemaContextCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaContextCache.class);
+
+    private static final SchemaContextCache INSTANCE = new SchemaContextCache();
+
+    private final Map<String, SchemaContextFactory> schemaContextFactories = new ConcurrentHashMap<>();
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    private SchemaContextCache() {
+    }
+
+    static SchemaContextCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get a reference to the schema context resolved from the given capabilities, starting its
+     * resolution if no mount point uses it yet. Each call must be paired with {@link #release(Entry)}.
+     */
+    Entry acquire(final String nodeId, final String cacheDirectoryName, final Collection<String> caps) {
+        final List<QName> qNameSet = Lists.newArrayList();
+        final Set<SourceIdentifier> sourceIdentifiers =
+                ImmutableSet.copyOf(SourceIdentifierHelper.fromStrings(caps, qNameSet));
+        final Key key = new Key(cacheDirectoryName, sourceIdentifiers);
+        final Entry created = new Entry(key, qNameSet);
+
+        final Entry entry = entries.compute(key, (k, existing) -> {
+            if (existing != null && !existing.isFailed()) {
+                existing.refCount++;
+                return existing;
+            }
+            created.refCount++;
+            return created;
+        });
+
+        if (entry == created) {
+            // Resolve outside of the map lock, other nodes asking for the same key wait on the future
+            LOG.info("{}: Resolving schema context for {} sources in {}", nodeId, sourceIdentifiers.size(),
+                    cacheDirectoryName);
+            final SchemaContextFactory factory = schemaContextFactories.computeIfAbsent(cacheDirectoryName,
+                    dir -> newSchemaContextFactory(nodeId, dir));
+            entry.resolve(factory.createSchemaContext(sourceIdentifiers));
+        } else {
+            LOG.info("{}: Reusing schema context for {} sources in {}", nodeId, sourceIdentifiers.size(),
+                    cacheDirectoryName);
+        }
+        return entry;
+    }
+
+    void release(final Entry entry) {
+        entries.computeIfPresent(entry.key, (k, existing) -> {
+            if (existing != entry) {
+                // A failed entry was already replaced, it is not tracked anymore
+                return existing;
+            }
+            existing.refCount--;
+            if (existing.refCount > 0) {
+                return existing;
+            }
+            LOG.debug("Dropping schema context {}", k);
+            return null;
+        });
+    }
+
+    /**
+     * Invalidate the schema contexts of a directory which depend on the given modules, either directly or through
+     * imports and includes, as well as the contexts still being resolved. The directory is scanned again by the next
+     * resolution, so that added models are found.
+     *
+     * @return the number of invalidated schema contexts
+     */
+    int invalidate(final String cacheDirectoryName, final Set<String> moduleNames) {
+        schemaContextFactories.remove(cacheDirectoryName);
+        int invalidated = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.key.cacheDirectoryName.equals(cacheDirectoryName) && entry.dependsOn(moduleNames)
+                    && entries.remove(entry.key, entry)) {
+                entry.stale = true;
+                invalidated++;
+            }
+        }
+        LOG.info("Invalidated {} schema contexts of {}", invalidated, cacheDirectoryName);
+        return invalidated;
+    }
+
+    private static SchemaContextFactory newSchemaContextFactory(final String nodeId, final String cacheDirectoryName) {
+        final SharedSchemaRepository schemaRegistry = new SharedSchemaRepository(cacheDirectoryName);
+        final SchemaContextFactory schemaContextFactory =
+                schemaRegistry.createSchemaContextFactory(SchemaSourceFilter.ALWAYS_ACCEPT);
+
+        // Sources already parsed for another directory or capability set are not parsed again
+        CompiledSchemaSourceCache.getInstance().register(schemaRegistry, schemaRegistry);
+
+        final String relativeSchemaCacheDirectory =
+                CachedSchemaRepository.DEFAULT_CACHED_MOUNT_POINT_DIRECTORY + File.separator + cacheDirectoryName;
+        final FilesystemSchemaSourceCache filesystemSchemaSourceCache = new FilesystemSchemaSourceCache<>(
+                schemaRegistry, YangTextSchemaSource.class, new File(relativeSchemaCacheDirectory));
+        schemaRegistry.registerSchemaSourceListener(filesystemSchemaSourceCache);
+        LOG.info("{}: Cached mount point will use schema cache directory {} ", nodeId, relativeSchemaCacheDirectory);
+
+        return schemaContextFactory;
+    }
+
+    private static final class Key {
+        private final String cacheDirectoryName;
+        private final Set<SourceIdentifier> sourceIdentifiers;
+
+        Key(final String cacheDirectoryName, final Set<SourceIdentifier> sourceIdentifiers) {
+            this.cacheDirectoryName = cacheDirectoryName;
+            this.sourceIdentifiers = sourceIdentifiers;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(cacheDirectoryName, sourceIdentifiers);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return cacheDirectoryName.equals(other.cacheDirectoryName)
+                    && sourceIdentifiers.equals(other.sourceIdentifiers);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).add("directory", cacheDirectoryName)
+                    .add("sources", sourceIdentifiers).toString();
+        }
+    }
+
+    static final class Entry {
+        private final Key key;
+        private final List<QName> qNameSet;
+        private final SettableFuture<SchemaContext> schemaContextFuture = SettableFuture.create();
+
+        // Guarded by the lock of the owning map bin
+        private int refCount;
+        private volatile boolean failed;
+        private volatile boolean stale;
+        // The modules and submodules of the resolved context, null until it is resolved
+        private volatile Set<String> moduleNames;
+
+        private Entry(final Key key, final List<QName> qNameSet) {
+            this.key = key;
+            this.qNameSet = ImmutableList.copyOf(qNameSet);
+        }
+
+        private void resolve(final CheckedFuture<SchemaContext, SchemaResolutionException> future) {
+            Futures.addCallback(future, new FutureCallback<SchemaContext>() {
+                @Override
+                public void onSuccess(final SchemaContext result) {
+                    moduleNames = result.getModules().stream()
+                            .flatMap(module -> Stream.concat(Stream.of(module), module.getSubmodules().stream()))
+                            .map(Module::getName).collect(Collectors.toSet());
+                    schemaContextFuture.set(result);
+                }
+
+                @Override
+                public void onFailure(final Throwable throwable) {
+                    failed = true;
+                    schemaContextFuture.setException(throwable);
+                }
+            });
+        }
+
+        private boolean isFailed() {
+            return failed;
+        }
+
+        private boolean dependsOn(final Set<String> changedModuleNames) {
+            final Set<String> names = moduleNames;
+            // A context being resolved may already have read the previous version of the models
+            return names == null || changedModuleNames.stream().anyMatch(names::contains);
+        }
+
+        /**
+         * @return whether the models of this context changed since it was resolved
+         */
+        boolean isStale() {
+            return stale;
+        }
+
+        ListenableFuture<SchemaContext> getSchemaContextFuture() {
+            return schemaContextFuture;
+        }
+
+        List<QName> qNames() {
+            return qNameSet;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the schema cache directories for added, modified and deleted models. The changes are accumulated until no
+ * event was received for {@code debounceMillis}, so that a bulk copy is reported once, then handed over per schema
+ * cache directory as the names of the changed modules. Hidden directories, such as the staging directories of the
+ * load-models RPC, are ignored.
+ */
+final class SchemaDirectoryWatcher implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaDirectoryWatcher.class);
+
+    private static final String YANG_EXTENSION = ".yang";
+    // Report the changes even if events keep coming
+    private static final int MAX_DEBOUNCE_ROUNDS = 10;
+
+    private final Path root;
+    private final WatchService watchService;
+    // Of its own, the listener may wait for room in the mount point creation pool
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("CachedMountPointSchemaWatcherFlush-%d").setDaemon(true).build());
+    private final long debounceMillis;
+    private final BiConsumer<String, Set<String>> listener;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<String, Set<String>> pendingChanges = new HashMap<>();
+    private ScheduledFuture<?> pendingFlush;
+    private int debounceRounds;
+    private boolean closed;
+
+    /**
+     * @param listener notified with the name of a schema cache directory and the names of its changed modules, on a
+     *                 thread of the watcher which may block
+     */
+    SchemaDirectoryWatcher(final Path root,
+                           final long debounceMillis,
+                           final BiConsumer<String, Set<String>> listener) throws IOException {
+        this.root = root;
+        this.debounceMillis = debounceMillis;
+        this.listener = listener;
+
+        Files.createDirectories(root);
+        this.watchService = root.getFileSystem().newWatchService();
+        register(root);
+        try (Stream<Path> children = Files.list(root)) {
+            for (Path child : children.filter(this::isSchemaCacheDirectory).collect(Collectors.toList())) {
+                register(child);
+            }
+        }
+
+        final Thread thread = new Thread(this::run, "CachedMountPointSchemaWatcher");
+        thread.setDaemon(true);
+        thread.start();
+        LOG.info("Watching schema cache directories under {}", root);
+    }
+
+    private boolean isSchemaCacheDirectory(final Path path) {
+        return Files.isDirectory(path) && !path.getFileName().toString().startsWith(".");
+    }
+
+    private void register(final Path directory) throws IOException {
+        directories.put(directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), directory);
+    }
+
+    private void run() {
+        while (true) {
+            final WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                LOG.debug("Schema directory watcher stopped", e);
+                return;
+            }
+
+            final Path directory = directories.get(key);
+            if (directory != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        LOG.warn("Missed changes in {}, assuming all the models changed", directory);
+                        directories.values().stream().filter(dir -> !dir.equals(root)).forEach(this::allChanged);
+                    } else if (directory.equals(root)) {
+                        final Path child = root.resolve((Path) event.context());
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && isSchemaCacheDirectory(child)) {
+                            directoryCreated(child);
+                        }
+                    } else {
+                        final String fileName = event.context().toString();
+                        if (fileName.endsWith(YANG_EXTENSION)) {
+                            changed(directory.getFileName().toString(), moduleName(fileName));
+                        }
+                    }
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+        }
+    }
+
+    private void directoryCreated(final Path directory) {
+        try {
+            register(directory);
+            // Files may have been added before the registration
+            allChanged(directory);
+        } catch (IOException e) {
+            LOG.warn("Failed to watch schema cache directory {}", directory, e);
+        }
+    }
+
+    private void allChanged(final Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(YANG_EXTENSION))
+                    .forEach(name -> changed(directory.getFileName().toString(), moduleName(name)));
+        } catch (IOException e) {
+            LOG.warn("Failed to list schema cache directory {}", directory, e);
+        }
+    }
+
+    /**
+     * @return the module name of a {@code <module>@<revision>.yang} file
+     */
+    private static String moduleName(final String fileName) {
+        final String name = fileName.substring(0, fileName.length() - YANG_EXTENSION.length());
+        final int at = name.indexOf('@');
+        return at < 0 ? name : name.substring(0, at);
+    }
+
+    private synchronized void changed(final String directoryName, final String moduleName) {
+        if (closed) {
+            return;
+        }
+        pendingChanges.computeIfAbsent(directoryName, dir -> new HashSet<>()).add(moduleName);
+        if (pendingFlush != null) {
+            if (debounceRounds >= MAX_DEBOUNCE_ROUNDS) {
+                return;
+            }
+            pendingFlush.cancel(false);
+        }
+        debounceRounds++;
+        pendingFlush = scheduler.schedule(this::flush, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        final Map<String, Set<String>> changes;
+        synchronized (this) {
+            changes = new HashMap<>(pendingChanges);
+            pendingChanges.clear();
+            pendingFlush = null;
+            debounceRounds = 0;
+        }
+        changes.forEach((directoryName, moduleNames) -> {
+            LOG.info("Models changed in schema cache directory {}: {}", directoryName, moduleNames);
+            try {
+                listener.accept(directoryName, moduleNames);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to process the changed models of {}", directoryName, e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close the schema directory watcher", e);
+        }
+        synchronized (this) {
+            closed = true;
+        }
+        scheduler.shutdownNow();
+    }
+}
@@ -7,11 +7,20 @@
  */
 package org.opendaylight.mdsal.mount.cache.impl.datastore;
 
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.Futures;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.Executor;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
 import org.opendaylight.controller.md.sal.common.api.data.TransactionChainListener;
 import org.opendaylight.controller.md.sal.dom.api.DOMDataBroker;
 import org.opendaylight.controller.md.sal.dom.api.DOMDataBrokerExtension;
@@ -23,49 +32,110 @@ import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeService;
 import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeIdentifier;
 import org.opendaylight.controller.md.sal.dom.api.DOMDataWriteTransaction;
 import org.opendaylight.controller.md.sal.dom.api.DOMTransactionChain;
-import org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStore;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadTransaction;
+import org.opendaylight.mdsal.mount.cache.api.CachedDOMBulkReadService;
+import org.opendaylight.mdsal.mount.cache.api.CachedDOMChangeStreamService;
+import org.opendaylight.mdsal.mount.cache.api.CachedDataTreeChange;
+import org.opendaylight.mdsal.mount.cache.impl.listener.CachedDataChangeStreams;
+import org.opendaylight.mdsal.mount.cache.impl.listener.CachedDataTreeChangeDispatcher;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.mdsal.mount.cache.impl.tx.BatchedDOMWriteTransaction;
 import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMReadOnlyTransaction;
 import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMReadWriteTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMTransactionChain;
+import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMTransactionJournal;
+import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMWriteBatcher;
 import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMWriteTransaction;
+import org.opendaylight.yangtools.concepts.AbstractListenerRegistration;
 import org.opendaylight.yangtools.concepts.ListenerRegistration;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidate;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Created by adetalhouet on 2017-02-02.
  */
-public class CachedDOMDataBroker implements DOMDataBroker, DOMDataTreeChangeService {
+public class CachedDOMDataBroker implements DOMDataBroker, DOMDataTreeChangeService, CachedDOMBulkReadService,
+        CachedDOMChangeStreamService, AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(CachedDOMDataBroker.class);
 
     private final String nodeId;
-    private final InMemoryDOMDataStore inMemoryDOMDataStore;
+    private final CachedDOMStores stores;
     private final Executor clientFutureCallbackExecutor;
+    private final CachedDOMWriteBatcher writeBatcher;
+    private final CachedDOMTransactionJournal journal;
+    private final CachedDataTreeChangeDispatcher listenerDispatcher;
+    private final CachedMountPointStats stats;
+    private final CachedDataChangeStreams changeStreams;
 
+    /**
+     * @param stores             data stores of the mount point, operations are routed to them by
+     *                           {@link LogicalDatastoreType}
+     * @param writeBatcher       group commit to use for write-only transactions, or {@code null} to commit each
+     *                           transaction on its own
+     * @param journal            journal of the committed transactions, or {@code null}
+     * @param listenerDispatcher delivers the changes to the data tree change listeners
+     * @param stats              metrics of the mount point, updated by the transactions and listeners
+     * @param changeStreams      publishes the changes as streams, or {@code null} if change streams are not offered
+     */
     public CachedDOMDataBroker(final String nodeId,
-                               final InMemoryDOMDataStore inMemoryDOMDataStore,
-                               final Executor clientFutureCallbackExecutor) {
+                               final CachedDOMStores stores,
+                               final Executor clientFutureCallbackExecutor,
+                               @Nullable final CachedDOMWriteBatcher writeBatcher,
+                               @Nullable final CachedDOMTransactionJournal journal,
+                               final CachedDataTreeChangeDispatcher listenerDispatcher,
+                               final CachedMountPointStats stats,
+                               @Nullable final CachedDataChangeStreams changeStreams) {
         LOG.info("{}: Create CachedDOMDataBroker instance", nodeId);
         this.nodeId = nodeId;
-        this.inMemoryDOMDataStore = inMemoryDOMDataStore;
+        this.stores = Preconditions.checkNotNull(stores);
         this.clientFutureCallbackExecutor = clientFutureCallbackExecutor;
+        this.writeBatcher = writeBatcher;
+        this.journal = journal;
+        this.listenerDispatcher = Preconditions.checkNotNull(listenerDispatcher);
+        this.stats = Preconditions.checkNotNull(stats);
+        this.changeStreams = changeStreams;
     }
 
     @Override
     public DOMDataReadOnlyTransaction newReadOnlyTransaction() {
-        return new CachedDOMReadOnlyTransaction(nodeId, inMemoryDOMDataStore.newReadOnlyTransaction());
+        stats.readOnlyTransactionCreated();
+        return createReadOnlyTransaction();
     }
 
     @Override
     public DOMDataReadWriteTransaction newReadWriteTransaction() {
-        return new CachedDOMReadWriteTransaction(newReadOnlyTransaction(), newWriteOnlyTransaction());
+        stats.readWriteTransactionCreated();
+        // Not batched: the writes of a read-write transaction usually depend on its reads, which group commit would
+        // separate from the commit by up to a window
+        return new CachedDOMReadWriteTransaction(createReadOnlyTransaction(), createDirectWriteTransaction());
     }
 
     @Override
     public DOMDataWriteTransaction newWriteOnlyTransaction() {
-        return new CachedDOMWriteTransaction(nodeId, inMemoryDOMDataStore.newWriteOnlyTransaction(),
-                clientFutureCallbackExecutor);
+        stats.writeTransactionCreated();
+        return createWriteOnlyTransaction();
+    }
+
+    private CachedDOMReadOnlyTransaction createReadOnlyTransaction() {
+        return new CachedDOMReadOnlyTransaction(nodeId, store -> stores.getStore(store).newReadOnlyTransaction(),
+                stats);
+    }
+
+    private DOMDataWriteTransaction createWriteOnlyTransaction() {
+        if (writeBatcher != null) {
+            return new BatchedDOMWriteTransaction(nodeId, writeBatcher, stats);
+        }
+        return createDirectWriteTransaction();
+    }
+
+    private DOMDataWriteTransaction createDirectWriteTransaction() {
+        return new CachedDOMWriteTransaction(nodeId, store -> stores.getStore(store).newWriteOnlyTransaction(),
+                clientFutureCallbackExecutor, journal, stats);
     }
 
     @Override
@@ -73,24 +143,113 @@ public class CachedDOMDataBroker implements DOMDataBroker, DOMDataTreeChangeServ
     public ListenerRegistration<DOMDataChangeListener> registerDataChangeListener(
             final LogicalDatastoreType store, final YangInstanceIdentifier path, final DOMDataChangeListener listener,
             final DataChangeScope triggeringScope) {
-        return inMemoryDOMDataStore.registerChangeListener(path, listener, triggeringScope);
+        return stores.getStore(store).registerChangeListener(path, listener, triggeringScope);
     }
 
     @Override
     public DOMTransactionChain createTransactionChain(final TransactionChainListener transactionChainListener) {
-        throw new RuntimeException("Not implemented");
+        return new CachedDOMTransactionChain(nodeId, stores::getStore, transactionChainListener,
+                clientFutureCallbackExecutor, journal, stats);
     }
 
     @Nonnull
     @Override
     public <L extends DOMDataTreeChangeListener> ListenerRegistration<L> registerDataTreeChangeListener(@Nonnull DOMDataTreeIdentifier domDataTreeIdentifier, @Nonnull L l) {
-        return inMemoryDOMDataStore.registerTreeChangeListener(domDataTreeIdentifier.getRootIdentifier(), l);
+        final ListenerRegistration<TimedDataTreeChangeListener> registration = listenerDispatcher.registerListener(
+                domDataTreeIdentifier, new TimedDataTreeChangeListener(l, stats));
+        stats.listenerRegistered();
+        return new AbstractListenerRegistration<L>(l) {
+            @Override
+            protected void removeRegistration() {
+                registration.close();
+                stats.listenerUnregistered();
+            }
+        };
     }
 
     @Nonnull
     @Override
     public Map<Class<? extends DOMDataBrokerExtension>, DOMDataBrokerExtension> getSupportedExtensions() {
-        return Collections.emptyMap();
+        if (changeStreams == null) {
+            return ImmutableMap.of(DOMDataTreeChangeService.class, this, CachedDOMBulkReadService.class, this);
+        }
+        return ImmutableMap.of(DOMDataTreeChangeService.class, this, CachedDOMBulkReadService.class, this,
+                CachedDOMChangeStreamService.class, this);
+    }
+
+    @Override
+    public Publisher<CachedDataTreeChange> getChangeStream(final DOMDataTreeIdentifier treeId,
+                                                           final long fromSequence) {
+        Preconditions.checkState(changeStreams != null, "%s: Change streams are not offered", nodeId);
+        return changeStreams.getChangeStream(treeId, fromSequence);
+    }
+
+    /**
+     * Read all the paths from a single store transaction. A bulk read counts as one read in the statistics.
+     */
+    @Override
+    public CheckedFuture<Map<YangInstanceIdentifier, Optional<NormalizedNode<?, ?>>>, ReadFailedException> readAll(
+            final LogicalDatastoreType store, final Collection<YangInstanceIdentifier> paths) {
+        LOG.debug("{}: Bulk read store={} of {} paths", nodeId, store, paths.size());
+
+        final long start = System.nanoTime();
+        final Map<YangInstanceIdentifier, Optional<NormalizedNode<?, ?>>> results = new LinkedHashMap<>();
+        try (DOMStoreReadTransaction transaction = stores.getStore(store).newReadOnlyTransaction()) {
+            // The in-memory stores complete reads synchronously
+            for (YangInstanceIdentifier path : paths) {
+                results.put(path, transaction.read(path).checkedGet());
+            }
+        } catch (ReadFailedException e) {
+            stats.readFailed();
+            LOG.error("{}: Failed to bulk read store={}", nodeId, store, e);
+            return Futures.immediateFailedCheckedFuture(e);
+        }
+        stats.readCompleted(System.nanoTime() - start);
+        return Futures.immediateCheckedFuture(Collections.unmodifiableMap(results));
+    }
+
+    /**
+     * Commit the write-only transactions waiting for their group commit, e.g. before the last snapshot.
+     */
+    public void flush() {
+        if (writeBatcher != null) {
+            writeBatcher.flush();
+        }
     }
 
+    @Override
+    public void close() {
+        if (writeBatcher != null) {
+            writeBatcher.close();
+        }
+        if (changeStreams != null) {
+            changeStreams.close();
+        }
+        listenerDispatcher.close();
+        stores.close();
+    }
+
+    /**
+     * Measures how long the delegate takes to process each notification.
+     */
+    private static final class TimedDataTreeChangeListener implements DOMDataTreeChangeListener {
+
+        private final DOMDataTreeChangeListener delegate;
+        private final CachedMountPointStats stats;
+
+        TimedDataTreeChangeListener(final DOMDataTreeChangeListener delegate, final CachedMountPointStats stats) {
+            this.delegate = delegate;
+            this.stats = stats;
+        }
+
+        @Override
+        public void onDataTreeChanged(@Nonnull final Collection<DataTreeCandidate> changes) {
+            final long startNanos = System.nanoTime();
+            try {
+                delegate.onDataTreeChanged(changes);
+            } finally {
+                stats.listenerNotified(System.nanoTime() - startNanos);
+            }
+        }
+    }
 }
@@ -11,11 +11,15 @@ import java.util.Collection;
 import javax.annotation.Nonnull;
 import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
 import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidate;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidateNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.ModificationType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Created by adetalhouet on 2017-02-03.
+ *
+ * Traces the modified paths, the data itself is never formatted.
  */
 public class CachedDOMDataTreeChangeListener implements DOMDataTreeChangeListener {
 
@@ -23,6 +27,22 @@ public class CachedDOMDataTreeChangeListener implements DOMDataTreeChangeListene
 
     @Override
     public void onDataTreeChanged(@Nonnull Collection<DataTreeCandidate> collection) {
-        LOG.info("{}", collection);
+        if (!LOG.isDebugEnabled()) {
+            return;
+        }
+        for (DataTreeCandidate candidate : collection) {
+            final DataTreeCandidateNode rootNode = candidate.getRootNode();
+            if (!candidate.getRootPath().isEmpty()) {
+                LOG.debug("{} {}", rootNode.getModificationType(), candidate.getRootPath());
+                continue;
+            }
+            // Registered at the root, trace the modified top-level nodes
+            for (DataTreeCandidateNode child : rootNode.getChildNodes()) {
+                if (child.getModificationType() != ModificationType.UNMODIFIED) {
+                    LOG.debug("{} {}", child.getModificationType(),
+                            candidate.getRootPath().node(child.getIdentifier()));
+                }
+            }
+        }
     }
 }
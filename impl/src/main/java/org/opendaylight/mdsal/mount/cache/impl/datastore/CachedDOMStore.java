@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.datastore;
+
+import org.opendaylight.controller.sal.core.spi.data.DOMStore;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreTreeChangePublisher;
+import org.opendaylight.yangtools.yang.model.api.SchemaContextListener;
+
+/**
+ * The data store backing one {@link org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType} of a
+ * cached mount point, either a single in-memory data tree or several shards of it.
+ */
+public interface CachedDOMStore extends DOMStore, DOMStoreTreeChangePublisher, SchemaContextListener, AutoCloseable {
+
+    @Override
+    void close();
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.datastore;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStore;
+import org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStoreConfigProperties;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadTransaction;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreThreePhaseCommitCohort;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreWriteTransaction;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNodeContainer;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The data stores of a cached mount point, one per {@link LogicalDatastoreType}. Each store has its own data tree,
+ * commit pipeline and listeners, so operational writes never contend with, nor notify, the configuration side. A
+ * store can further be split into shards, see {@link ShardedCachedDOMStore}.
+ */
+public final class CachedDOMStores implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedDOMStores.class);
+
+    /**
+     * How the top-level nodes are assigned to the shards of a store. A shard holds whole top-level subtrees: the nodes
+     * other modules augment into a top-level node are in its shard. The key of a top-level node is hashed onto the
+     * shards, so several keys may share a shard. The mapping only depends on the key and the shard count.
+     */
+    public enum ShardBy {
+        /**
+         * Keyed by the namespace of the module defining the top-level node: the top-level nodes of a module share a
+         * shard.
+         */
+        MODULE,
+        /**
+         * Keyed by the namespace and the name of the top-level node.
+         */
+        TOP_LEVEL_NODE
+    }
+
+    private final Map<LogicalDatastoreType, CachedDOMStore> stores;
+
+    private CachedDOMStores(final Map<LogicalDatastoreType, CachedDOMStore> stores) {
+        this.stores = Collections.unmodifiableMap(stores);
+    }
+
+    /**
+     * Create both the configuration and the operational store for the mount point at {@code path}.
+     */
+    public static CachedDOMStores create(final YangInstanceIdentifier path, final SchemaContext schemaContext) {
+        return create(path, schemaContext, 1, ShardBy.MODULE, null);
+    }
+
+    /**
+     * Create both the configuration and the operational store for the mount point at {@code path}, each one split
+     * into {@code shardCount} shards. Top-level nodes are assigned to the shards by hash, so several of them may
+     * share a shard.
+     *
+     * @param properties sizes the notification executor and queues of each store or shard, or {@code null} for the
+     *                   defaults
+     */
+    public static CachedDOMStores create(final YangInstanceIdentifier path, final SchemaContext schemaContext,
+                                         final int shardCount, final ShardBy shardBy,
+                                         @Nullable final InMemoryDOMDataStoreConfigProperties properties) {
+        Preconditions.checkArgument(shardCount > 0, "Invalid shard count %s", shardCount);
+        final Map<LogicalDatastoreType, CachedDOMStore> stores = new EnumMap<>(LogicalDatastoreType.class);
+        for (LogicalDatastoreType type : LogicalDatastoreType.values()) {
+            if (shardCount == 1) {
+                stores.put(type, new InMemoryCachedDOMStore(
+                        InMemoryDOMDataStoreFactory.newInstance(path, schemaContext, type, properties)));
+            } else {
+                final List<InMemoryDOMDataStore> shards = new ArrayList<>(shardCount);
+                for (int shard = 0; shard < shardCount; shard++) {
+                    shards.add(InMemoryDOMDataStoreFactory.newShardInstance(path, schemaContext, type, shard,
+                            properties));
+                }
+                stores.put(type, new ShardedCachedDOMStore(path + "-" + type, shards, shardBy));
+            }
+        }
+        return new CachedDOMStores(stores);
+    }
+
+    public CachedDOMStore getStore(final LogicalDatastoreType type) {
+        final CachedDOMStore store = stores.get(type);
+        Preconditions.checkArgument(store != null, "No data store for %s", type);
+        return store;
+    }
+
+    public Map<LogicalDatastoreType, CachedDOMStore> getStores() {
+        return stores;
+    }
+
+    /**
+     * Switch all the stores to a new schema. Their data is kept as is, it must fit the new schema.
+     */
+    public void updateSchemaContext(final SchemaContext schemaContext) {
+        stores.values().forEach(store -> store.onGlobalContextUpdated(schemaContext));
+    }
+
+    /**
+     * @return whether none of the stores holds any data
+     */
+    public boolean isEmpty() throws ReadFailedException {
+        for (CachedDOMStore store : stores.values()) {
+            try (DOMStoreReadTransaction transaction = store.newReadOnlyTransaction()) {
+                final Optional<NormalizedNode<?, ?>> root =
+                        transaction.read(YangInstanceIdentifier.EMPTY).checkedGet();
+                if (root.isPresent() && !((NormalizedNodeContainer<?, ?, ?>) root.get()).getValue().isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Commit the given modifications straight to a store, bypassing the broker, and wait for the commit to complete.
+     * Meant to load persisted data before the mount point is exposed.
+     */
+    public void apply(final LogicalDatastoreType type, final Consumer<DOMStoreWriteTransaction> modifications)
+            throws InterruptedException, ExecutionException {
+        final DOMStoreWriteTransaction transaction = getStore(type).newWriteOnlyTransaction();
+        modifications.accept(transaction);
+        final DOMStoreThreePhaseCommitCohort cohort = transaction.ready();
+        if (!cohort.canCommit().get()) {
+            cohort.abort();
+            throw new ExecutionException(new IllegalStateException("The " + type + " data tree rejected the data"));
+        }
+        cohort.preCommit().get();
+        cohort.commit().get();
+    }
+
+    @Override
+    public void close() {
+        for (Map.Entry<LogicalDatastoreType, CachedDOMStore> entry : stores.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (Exception e) {
+                LOG.warn("Failed to close {} data store", entry.getKey(), e);
+            }
+        }
+    }
+}
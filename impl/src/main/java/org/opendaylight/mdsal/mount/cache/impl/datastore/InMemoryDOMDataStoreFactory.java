@@ -8,8 +8,10 @@
 package org.opendaylight.mdsal.mount.cache.impl.datastore;
 
 import com.google.common.base.Preconditions;
+import javax.annotation.Nullable;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStore;
+import org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStoreConfigProperties;
 import org.opendaylight.controller.sal.core.api.model.SchemaService;
 import org.opendaylight.yangtools.concepts.ListenerRegistration;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
@@ -33,26 +35,56 @@ public final class InMemoryDOMDataStoreFactory {
     public static InMemoryDOMDataStore newInstance(final YangInstanceIdentifier path,
                                                    final SchemaContext schemaContext,
                                                    final LogicalDatastoreType store) {
+        return newInstance(path, schemaContext, store, null);
+    }
+
+    /**
+     * @param properties sizes the executor and queues notifying the changes of the store, or {@code null} for the
+     *                   defaults of the in-memory data store
+     */
+    public static InMemoryDOMDataStore newInstance(final YangInstanceIdentifier path,
+                                                   final SchemaContext schemaContext,
+                                                   final LogicalDatastoreType store,
+                                                   @Nullable final InMemoryDOMDataStoreConfigProperties properties) {
 
         LOG.info("Create InMemoryDOMDataStore instance for cached-mountpoint {}" + path.toString());
         final SchemaService schemaService = new SchemaServiceFactory(schemaContext);
-        final InMemoryDOMDataStore inMemoryDOMDataStore = createDataStore(path, schemaService, store);
+        final InMemoryDOMDataStore inMemoryDOMDataStore = createDataStore(path, schemaService, store, "",
+                properties);
         Preconditions.checkArgument(inMemoryDOMDataStore != null);
         return inMemoryDOMDataStore;
 
     }
 
+    /**
+     * Create the store of one shard of the tree, see {@link ShardedCachedDOMStore}.
+     */
+    public static InMemoryDOMDataStore newShardInstance(final YangInstanceIdentifier path,
+                                                        final SchemaContext schemaContext,
+                                                        final LogicalDatastoreType store,
+                                                        final int shard,
+                                                        @Nullable final InMemoryDOMDataStoreConfigProperties properties) {
+        LOG.debug("Create InMemoryDOMDataStore shard {} for cached-mountpoint {}", shard, path);
+        final SchemaService schemaService = new SchemaServiceFactory(schemaContext);
+        final InMemoryDOMDataStore inMemoryDOMDataStore = createDataStore(path, schemaService, store,
+                "-shard-" + shard, properties);
+        Preconditions.checkArgument(inMemoryDOMDataStore != null);
+        return inMemoryDOMDataStore;
+    }
+
     private static InMemoryDOMDataStore createDataStore(final YangInstanceIdentifier path,
                                                         final SchemaService schemaService,
-                                                        final LogicalDatastoreType store) {
+                                                        final LogicalDatastoreType store,
+                                                        final String suffix,
+                                                        final InMemoryDOMDataStoreConfigProperties properties) {
         switch (store) {
             case OPERATIONAL: {
-                return org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStoreFactory.create(path.toString() + "-DOM-OPER",
-                        LogicalDatastoreType.OPERATIONAL, schemaService, true, null);
+                return org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStoreFactory.create(path.toString() + "-DOM-OPER" + suffix,
+                        LogicalDatastoreType.OPERATIONAL, schemaService, true, properties);
             }
             case CONFIGURATION: {
-                return org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStoreFactory.create(path.toString() + "-DOM-CFG",
-                        LogicalDatastoreType.CONFIGURATION, schemaService, true, null);
+                return org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStoreFactory.create(path.toString() + "-DOM-CFG" + suffix,
+                        LogicalDatastoreType.CONFIGURATION, schemaService, true, properties);
             }
         }
         return null;
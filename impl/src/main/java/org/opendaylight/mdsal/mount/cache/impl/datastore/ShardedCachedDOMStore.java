@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.datastore;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import javax.annotation.Nonnull;
+import org.opendaylight.controller.md.sal.common.api.data.AsyncDataBroker.DataChangeScope;
+import org.opendaylight.controller.md.sal.common.api.data.AsyncDataChangeListener;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
+import org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStore;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadTransaction;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadWriteTransaction;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreTransactionChain;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreWriteTransaction;
+import org.opendaylight.yangtools.concepts.AbstractListenerRegistration;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.DataContainerChild;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidate;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidateNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidates;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.ModificationType;
+import org.opendaylight.yangtools.yang.data.impl.schema.Builders;
+import org.opendaylight.yangtools.yang.data.impl.schema.builder.api.DataContainerNodeAttrBuilder;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CachedDOMStore} splitting the data tree of a mount point into independent {@link InMemoryDOMDataStore}
+ * shards, hashing the top-level nodes or their modules onto the shards, see {@link CachedDOMStores.ShardBy}. A
+ * transaction only touching the nodes of one shard commits on that shard alone, concurrently with the transactions
+ * of the other shards.
+ *
+ * <p>
+ * A transaction holds the locks of the shards it wrote to from its can-commit phase to the end of its commit, or its
+ * abort, taken in shard order: the shards it validated cannot change before it commits. A transaction spanning
+ * several shards commits on each of them while also holding the coordination lock exclusively.
+ * Read-only and read-write transactions take their snapshot of all the shards under the same lock, shared, so that
+ * they see either all or none of the changes of such a transaction. Reading or writing the root of the tree spans
+ * all the shards, its children are split between, or merged from, the shards.
+ *
+ * <p>
+ * Listeners registered at the root receive the changes of each shard apart, the root they are notified of being the
+ * root of the whole tree.
+ */
+final class ShardedCachedDOMStore implements CachedDOMStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedCachedDOMStore.class);
+
+    private final String name;
+    private final List<InMemoryDOMDataStore> shards;
+    private final CachedDOMStores.ShardBy shardBy;
+    private final ReadWriteLock coordinationLock = new ReentrantReadWriteLock();
+    // Not owned by a thread, a transaction may commit on another thread than the one which validated it
+    private final List<Semaphore> shardLocks;
+
+    // The last merged root, so that reading an unchanged root returns the same instance
+    private volatile MergedRoot lastRoot;
+
+    ShardedCachedDOMStore(final String name, final List<InMemoryDOMDataStore> shards,
+                          final CachedDOMStores.ShardBy shardBy) {
+        Preconditions.checkArgument(shards.size() > 1, "%s: Sharding requires several shards", name);
+        this.name = name;
+        this.shards = ImmutableList.copyOf(shards);
+        this.shardBy = Preconditions.checkNotNull(shardBy);
+        final List<Semaphore> locks = new ArrayList<>(shards.size());
+        shards.forEach(shard -> locks.add(new Semaphore(1)));
+        this.shardLocks = ImmutableList.copyOf(locks);
+    }
+
+    int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @return the shard holding the given path, which must not be the root
+     */
+    int shardOf(final YangInstanceIdentifier path) {
+        Preconditions.checkArgument(!path.isEmpty(), "%s: The root spans all the shards", name);
+        return shardOf(path.getPathArguments().get(0).getNodeType());
+    }
+
+    private int shardOf(final QName topLevelNode) {
+        // Hash strings, whose hash code is specified, so that a node stays in the same shard across releases
+        final String namespace = topLevelNode.getNamespace().toString();
+        final String key = shardBy == CachedDOMStores.ShardBy.MODULE ? namespace
+                : namespace + ':' + topLevelNode.getLocalName();
+        return Math.floorMod(key.hashCode(), shards.size());
+    }
+
+    /**
+     * Open a transaction on every shard, none of them observing only part of a commit spanning several shards.
+     */
+    <T extends DOMStoreReadTransaction> List<T> snapshot(final IntFunction<T> factory) {
+        final List<T> transactions = new ArrayList<>(shards.size());
+        coordinationLock.readLock().lock();
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                transactions.add(factory.apply(i));
+            }
+        } finally {
+            coordinationLock.readLock().unlock();
+        }
+        return transactions;
+    }
+
+    /**
+     * Lock the given shards, waiting for the transactions committing on them.
+     *
+     * @param shards indexes of the shards, in ascending order so that transactions cannot deadlock
+     */
+    void lockShards(final List<Integer> shards) {
+        shards.forEach(shard -> shardLocks.get(shard).acquireUninterruptibly());
+    }
+
+    void unlockShards(final List<Integer> shards) {
+        shards.forEach(shard -> shardLocks.get(shard).release());
+    }
+
+    /**
+     * Run the commit phase of a transaction spanning several shards, excluding the snapshots and the other commits
+     * spanning several shards. The commits of the in-memory shards complete before returning.
+     */
+    void commitExclusively(final Runnable commit) {
+        coordinationLock.writeLock().lock();
+        try {
+            commit.run();
+        } finally {
+            coordinationLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Split a root node into one root per shard, holding the top-level nodes of that shard.
+     */
+    List<ContainerNode> splitRoot(final NormalizedNode<?, ?> root) {
+        Preconditions.checkArgument(root instanceof ContainerNode, "%s: Unexpected root %s", name, root);
+        final NodeIdentifier identifier = ((ContainerNode) root).getIdentifier();
+        final List<DataContainerNodeAttrBuilder<NodeIdentifier, ContainerNode>> builders =
+                new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            builders.add(Builders.containerBuilder().withNodeIdentifier(identifier));
+        }
+        for (DataContainerChild<? extends PathArgument, ?> child : ((ContainerNode) root).getValue()) {
+            builders.get(shardOf(child.getNodeType())).withChild(child);
+        }
+        final List<ContainerNode> roots = new ArrayList<>(shards.size());
+        builders.forEach(builder -> roots.add(builder.build()));
+        return roots;
+    }
+
+    /**
+     * Merge the roots of the shards, absent where a shard has none, into the root of the whole tree.
+     */
+    Optional<NormalizedNode<?, ?>> mergeRoots(final List<Optional<NormalizedNode<?, ?>>> shardRoots) {
+        final MergedRoot cached = lastRoot;
+        if (cached != null && cached.isMergeOf(shardRoots)) {
+            return cached.root;
+        }
+
+        DataContainerNodeAttrBuilder<NodeIdentifier, ContainerNode> builder = null;
+        for (Optional<NormalizedNode<?, ?>> shardRoot : shardRoots) {
+            if (!shardRoot.isPresent()) {
+                continue;
+            }
+            final ContainerNode container = (ContainerNode) shardRoot.get();
+            if (builder == null) {
+                builder = Builders.containerBuilder().withNodeIdentifier(container.getIdentifier());
+            }
+            for (DataContainerChild<? extends PathArgument, ?> child : container.getValue()) {
+                builder.withChild(child);
+            }
+        }
+        final Optional<NormalizedNode<?, ?>> root = builder == null
+                ? Optional.<NormalizedNode<?, ?>>absent() : Optional.<NormalizedNode<?, ?>>of(builder.build());
+        lastRoot = new MergedRoot(shardRoots, root);
+        return root;
+    }
+
+    @Override
+    public DOMStoreReadTransaction newReadOnlyTransaction() {
+        return ShardedDOMStoreTransaction.readOnly(this, snapshot(i -> shards.get(i).newReadOnlyTransaction()));
+    }
+
+    @Override
+    public DOMStoreWriteTransaction newWriteOnlyTransaction() {
+        return ShardedDOMStoreTransaction.writeOnly(this, i -> shards.get(i).newWriteOnlyTransaction());
+    }
+
+    @Override
+    public DOMStoreReadWriteTransaction newReadWriteTransaction() {
+        return ShardedDOMStoreTransaction.readWrite(this, snapshot(i -> shards.get(i).newReadWriteTransaction()));
+    }
+
+    @Override
+    public DOMStoreTransactionChain createTransactionChain() {
+        final List<DOMStoreTransactionChain> chains = new ArrayList<>(shards.size());
+        shards.forEach(shard -> chains.add(shard.createTransactionChain()));
+        return new ShardedTransactionChain(chains);
+    }
+
+    @Override
+    @Deprecated
+    public <L extends AsyncDataChangeListener<YangInstanceIdentifier, NormalizedNode<?, ?>>> ListenerRegistration<L>
+            registerChangeListener(final YangInstanceIdentifier path, final L listener, final DataChangeScope scope) {
+        if (!path.isEmpty()) {
+            return shards.get(shardOf(path)).registerChangeListener(path, listener, scope);
+        }
+        final List<ListenerRegistration<L>> registrations = new ArrayList<>(shards.size());
+        shards.forEach(shard -> registrations.add(shard.registerChangeListener(path, listener, scope)));
+        return new ShardedListenerRegistration<>(listener, registrations);
+    }
+
+    @Nonnull
+    @Override
+    public <L extends DOMDataTreeChangeListener> ListenerRegistration<L> registerTreeChangeListener(
+            @Nonnull final YangInstanceIdentifier treeId, @Nonnull final L listener) {
+        if (!treeId.isEmpty()) {
+            return shards.get(shardOf(treeId)).registerTreeChangeListener(treeId, listener);
+        }
+        final RootChangeListener rootListener = new RootChangeListener(listener);
+        final List<ListenerRegistration<RootChangeListener>> registrations = new ArrayList<>(shards.size());
+        shards.forEach(shard -> registrations.add(shard.registerTreeChangeListener(treeId, rootListener)));
+        return new ShardedListenerRegistration<>(listener, registrations);
+    }
+
+    @Override
+    public void onGlobalContextUpdated(final SchemaContext schemaContext) {
+        // Each shard validates its top-level nodes against the whole schema
+        shards.forEach(shard -> shard.onGlobalContextUpdated(schemaContext));
+    }
+
+    @Override
+    public void close() {
+        for (InMemoryDOMDataStore shard : shards) {
+            try {
+                shard.close();
+            } catch (Exception e) {
+                LOG.warn("{}: Failed to close shard {}", name, shard.getIdentifier(), e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static final class MergedRoot {
+        private final List<Optional<NormalizedNode<?, ?>>> shardRoots;
+        private final Optional<NormalizedNode<?, ?>> root;
+
+        MergedRoot(final List<Optional<NormalizedNode<?, ?>>> shardRoots, final Optional<NormalizedNode<?, ?>> root) {
+            this.shardRoots = shardRoots;
+            this.root = root;
+        }
+
+        boolean isMergeOf(final List<Optional<NormalizedNode<?, ?>>> roots) {
+            for (int i = 0; i < roots.size(); i++) {
+                // The data trees hand out the same instance as long as a shard is unchanged
+                if (roots.get(i).orNull() != shardRoots.get(i).orNull()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class ShardedListenerRegistration<L> extends AbstractListenerRegistration<L> {
+        private final List<? extends ListenerRegistration<?>> registrations;
+
+        ShardedListenerRegistration(final L listener, final List<? extends ListenerRegistration<?>> registrations) {
+            super(listener);
+            this.registrations = registrations;
+        }
+
+        @Override
+        protected void removeRegistration() {
+            registrations.forEach(ListenerRegistration::close);
+        }
+    }
+
+    /**
+     * Notifies a listener registered at the root of the changes of the shards, one shard at a time, as changes of the
+     * whole tree: the root before and after each change is the root of all the shards.
+     */
+    private static final class RootChangeListener implements DOMDataTreeChangeListener {
+        private final DOMDataTreeChangeListener delegate;
+
+        // Guarded by this
+        private Optional<NormalizedNode<?, ?>> root = Optional.absent();
+
+        RootChangeListener(final DOMDataTreeChangeListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void onDataTreeChanged(@Nonnull final Collection<DataTreeCandidate> changes) {
+            final List<DataTreeCandidate> rootChanges = new ArrayList<>(changes.size());
+            for (DataTreeCandidate change : changes) {
+                final Optional<NormalizedNode<?, ?>> before = root;
+                root = apply(before, change.getRootNode());
+                rootChanges.add(DataTreeCandidates.newDataTreeCandidate(change.getRootPath(),
+                        new RootCandidateNode(change.getRootNode(), before, root)));
+            }
+            // Delivered in order, the next change of another shard applies on top of this one
+            delegate.onDataTreeChanged(rootChanges);
+        }
+
+        private static Optional<NormalizedNode<?, ?>> apply(final Optional<NormalizedNode<?, ?>> root,
+                                                            final DataTreeCandidateNode change) {
+            if (!root.isPresent() && !change.getDataAfter().isPresent()) {
+                return root;
+            }
+            final DataContainerNodeAttrBuilder<NodeIdentifier, ContainerNode> builder = root.isPresent()
+                    ? Builders.containerBuilder((ContainerNode) root.get())
+                    : Builders.containerBuilder().withNodeIdentifier(
+                            ((ContainerNode) change.getDataAfter().get()).getIdentifier());
+            for (DataTreeCandidateNode child : change.getChildNodes()) {
+                if (child.getDataAfter().isPresent()) {
+                    builder.withChild((DataContainerChild<?, ?>) child.getDataAfter().get());
+                } else {
+                    builder.withoutChild(child.getIdentifier());
+                }
+            }
+            return Optional.<NormalizedNode<?, ?>>of(builder.build());
+        }
+    }
+
+    /**
+     * The root of a shard's change, with the data of the whole tree.
+     */
+    private static final class RootCandidateNode implements DataTreeCandidateNode {
+        private final DataTreeCandidateNode shardRoot;
+        private final Optional<NormalizedNode<?, ?>> dataBefore;
+        private final Optional<NormalizedNode<?, ?>> dataAfter;
+
+        RootCandidateNode(final DataTreeCandidateNode shardRoot, final Optional<NormalizedNode<?, ?>> dataBefore,
+                          final Optional<NormalizedNode<?, ?>> dataAfter) {
+            this.shardRoot = shardRoot;
+            this.dataBefore = dataBefore;
+            this.dataAfter = dataAfter;
+        }
+
+        @Nonnull
+        @Override
+        public PathArgument getIdentifier() {
+            return shardRoot.getIdentifier();
+        }
+
+        @Nonnull
+        @Override
+        public Collection<DataTreeCandidateNode> getChildNodes() {
+            return shardRoot.getChildNodes();
+        }
+
+        @Override
+        public DataTreeCandidateNode getModifiedChild(final PathArgument identifier) {
+            return shardRoot.getModifiedChild(identifier);
+        }
+
+        @Nonnull
+        @Override
+        public ModificationType getModificationType() {
+            return shardRoot.getModificationType();
+        }
+
+        @Nonnull
+        @Override
+        public Optional<NormalizedNode<?, ?>> getDataAfter() {
+            return dataAfter;
+        }
+
+        @Nonnull
+        @Override
+        public Optional<NormalizedNode<?, ?>> getDataBefore() {
+            return dataBefore;
+        }
+    }
+
+    /**
+     * Chains the transactions of each shard apart, so a transaction only waits for the previous one on the shards
+     * they both touch.
+     */
+    private final class ShardedTransactionChain implements DOMStoreTransactionChain {
+        private final List<DOMStoreTransactionChain> chains;
+
+        ShardedTransactionChain(final List<DOMStoreTransactionChain> chains) {
+            this.chains = chains;
+        }
+
+        @Override
+        public DOMStoreReadTransaction newReadOnlyTransaction() {
+            return ShardedDOMStoreTransaction.readOnly(ShardedCachedDOMStore.this,
+                    snapshot(i -> chains.get(i).newReadOnlyTransaction()));
+        }
+
+        @Override
+        public DOMStoreWriteTransaction newWriteOnlyTransaction() {
+            return ShardedDOMStoreTransaction.writeOnly(ShardedCachedDOMStore.this,
+                    i -> chains.get(i).newWriteOnlyTransaction());
+        }
+
+        @Override
+        public DOMStoreReadWriteTransaction newReadWriteTransaction() {
+            return ShardedDOMStoreTransaction.readWrite(ShardedCachedDOMStore.this,
+                    snapshot(i -> chains.get(i).newReadWriteTransaction()));
+        }
+
+        @Override
+        public void close() {
+            chains.forEach(DOMStoreTransactionChain::close);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.datastore;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreThreePhaseCommitCohort;
+
+/**
+ * Commits a transaction of a {@link ShardedCachedDOMStore} on the shards it wrote to. The locks of these shards are
+ * held from the can-commit phase until the commit or the abort, so a transaction only waits for the transactions of
+ * the same shards; only the commit phase of a transaction spanning several shards is coordinated with the other
+ * transactions. Failures are reported through the returned futures, never thrown. Once aborted, the cohort fails its
+ * can-commit phase without locking anything.
+ */
+final class ShardedDOMStoreCommitCohort implements DOMStoreThreePhaseCommitCohort {
+
+    private static final Function<List<Boolean>, Boolean> ALL_TRUE = results -> {
+        for (Boolean result : results) {
+            if (!Boolean.TRUE.equals(result)) {
+                return false;
+            }
+        }
+        return true;
+    };
+    private static final Function<List<Void>, Void> TO_VOID = results -> null;
+
+    private final ShardedCachedDOMStore store;
+    private final List<Integer> shards;
+    private final List<DOMStoreThreePhaseCommitCohort> cohorts;
+
+    // Guarded by this
+    private boolean locked;
+    private boolean aborted;
+
+    /**
+     * @param shards  indexes of the shards written to, in ascending order
+     * @param cohorts the cohorts of these shards, in the same order
+     */
+    ShardedDOMStoreCommitCohort(final ShardedCachedDOMStore store, final List<Integer> shards,
+                                final List<DOMStoreThreePhaseCommitCohort> cohorts) {
+        this.store = store;
+        this.shards = shards;
+        this.cohorts = cohorts;
+    }
+
+    private synchronized void unlock() {
+        if (locked) {
+            locked = false;
+            store.unlockShards(shards);
+        }
+    }
+
+    private synchronized boolean needsLocking() {
+        return !locked && !aborted;
+    }
+
+    @Override
+    public ListenableFuture<Boolean> canCommit() {
+        if (needsLocking()) {
+            // Not under the monitor, an abort must not wait for the shards
+            store.lockShards(shards);
+            synchronized (this) {
+                if (locked || aborted) {
+                    store.unlockShards(shards);
+                } else {
+                    locked = true;
+                }
+            }
+        }
+        synchronized (this) {
+            if (aborted) {
+                return Futures.immediateFailedFuture(new IllegalStateException("Transaction on shards " + shards
+                        + " was aborted"));
+            }
+        }
+        final ListenableFuture<Boolean> future;
+        try {
+            if (cohorts.size() == 1) {
+                future = cohorts.get(0).canCommit();
+            } else {
+                final List<ListenableFuture<Boolean>> futures = new ArrayList<>(cohorts.size());
+                cohorts.forEach(cohort -> futures.add(cohort.canCommit()));
+                future = Futures.transform(Futures.allAsList(futures), ALL_TRUE, MoreExecutors.directExecutor());
+            }
+        } catch (RuntimeException e) {
+            unlock();
+            return Futures.immediateFailedFuture(e);
+        }
+        Futures.addCallback(future, new FutureCallback<Boolean>() {
+            @Override
+            public void onSuccess(final Boolean canCommit) {
+                if (!Boolean.TRUE.equals(canCommit)) {
+                    unlock();
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable failure) {
+                unlock();
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    @Override
+    public ListenableFuture<Void> preCommit() {
+        try {
+            if (cohorts.size() == 1) {
+                return cohorts.get(0).preCommit();
+            }
+            final List<ListenableFuture<Void>> futures = new ArrayList<>(cohorts.size());
+            cohorts.forEach(cohort -> futures.add(cohort.preCommit()));
+            return Futures.transform(Futures.allAsList(futures), TO_VOID, MoreExecutors.directExecutor());
+        } catch (RuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<Void> commit() {
+        try {
+            if (cohorts.size() == 1) {
+                // Independent of the other shards
+                return cohorts.get(0).commit();
+            }
+            final List<ListenableFuture<Void>> futures = new ArrayList<>(cohorts.size());
+            store.commitExclusively(() -> cohorts.forEach(cohort -> futures.add(cohort.commit())));
+            return Futures.transform(Futures.allAsList(futures), TO_VOID, MoreExecutors.directExecutor());
+        } catch (RuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        } finally {
+            // The commits of the in-memory shards are done
+            unlock();
+        }
+    }
+
+    @Override
+    public ListenableFuture<Void> abort() {
+        synchronized (this) {
+            aborted = true;
+        }
+        try {
+            if (cohorts.size() == 1) {
+                return cohorts.get(0).abort();
+            }
+            final List<ListenableFuture<Void>> futures = new ArrayList<>(cohorts.size());
+            cohorts.forEach(cohort -> futures.add(cohort.abort()));
+            return Futures.transform(Futures.allAsList(futures), TO_VOID, MoreExecutors.directExecutor());
+        } catch (RuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        } finally {
+            unlock();
+        }
+    }
+}
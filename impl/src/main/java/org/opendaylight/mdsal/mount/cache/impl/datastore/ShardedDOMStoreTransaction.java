@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.datastore;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.Futures;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadTransaction;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadWriteTransaction;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreThreePhaseCommitCohort;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreWriteTransaction;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+
+/**
+ * Transaction of a {@link ShardedCachedDOMStore}, routing each operation to the transaction of the shard holding its
+ * path. Read transactions are opened on all the shards upfront, from a consistent snapshot, write transactions on
+ * the first write to a shard. Only the shards written to take part in the commit.
+ */
+final class ShardedDOMStoreTransaction implements DOMStoreReadWriteTransaction {
+
+    private final ShardedCachedDOMStore store;
+    // Absent for a write-only transaction
+    private final List<? extends DOMStoreReadTransaction> readers;
+    // Absent for a read-only transaction
+    private final IntFunction<? extends DOMStoreWriteTransaction> writerFactory;
+    // Guarded by this
+    private final DOMStoreWriteTransaction[] writers;
+    private boolean ready;
+
+    private ShardedDOMStoreTransaction(final ShardedCachedDOMStore store,
+                                       final List<? extends DOMStoreReadTransaction> readers,
+                                       final IntFunction<? extends DOMStoreWriteTransaction> writerFactory) {
+        this.store = store;
+        this.readers = readers;
+        this.writerFactory = writerFactory;
+        this.writers = new DOMStoreWriteTransaction[store.getShardCount()];
+    }
+
+    static DOMStoreReadTransaction readOnly(final ShardedCachedDOMStore store,
+                                            final List<? extends DOMStoreReadTransaction> readers) {
+        return new ShardedDOMStoreTransaction(store, readers, null);
+    }
+
+    static DOMStoreWriteTransaction writeOnly(final ShardedCachedDOMStore store,
+                                              final IntFunction<? extends DOMStoreWriteTransaction> writerFactory) {
+        return new ShardedDOMStoreTransaction(store, null, writerFactory);
+    }
+
+    static DOMStoreReadWriteTransaction readWrite(final ShardedCachedDOMStore store,
+                                                  final List<? extends DOMStoreReadWriteTransaction> transactions) {
+        return new ShardedDOMStoreTransaction(store, transactions, transactions::get);
+    }
+
+    @Override
+    public CheckedFuture<Optional<NormalizedNode<?, ?>>, ReadFailedException> read(final YangInstanceIdentifier path) {
+        Preconditions.checkState(readers != null, "Transaction %s is write-only", this);
+        if (!path.isEmpty()) {
+            return readers.get(store.shardOf(path)).read(path);
+        }
+
+        final List<Optional<NormalizedNode<?, ?>>> roots = new ArrayList<>(readers.size());
+        try {
+            // The in-memory stores complete reads synchronously
+            for (DOMStoreReadTransaction reader : readers) {
+                roots.add(reader.read(path).checkedGet());
+            }
+        } catch (ReadFailedException e) {
+            return Futures.immediateFailedCheckedFuture(e);
+        }
+        return Futures.immediateCheckedFuture(store.mergeRoots(roots));
+    }
+
+    @Override
+    public CheckedFuture<Boolean, ReadFailedException> exists(final YangInstanceIdentifier path) {
+        Preconditions.checkState(readers != null, "Transaction %s is write-only", this);
+        if (!path.isEmpty()) {
+            return readers.get(store.shardOf(path)).exists(path);
+        }
+        try {
+            return Futures.immediateCheckedFuture(read(path).checkedGet().isPresent());
+        } catch (ReadFailedException e) {
+            return Futures.immediateFailedCheckedFuture(e);
+        }
+    }
+
+    private synchronized DOMStoreWriteTransaction getWriter(final int shard) {
+        Preconditions.checkState(writerFactory != null, "Transaction %s is read-only", this);
+        Preconditions.checkState(!ready, "Transaction %s is ready", this);
+        if (writers[shard] == null) {
+            writers[shard] = writerFactory.apply(shard);
+        }
+        return writers[shard];
+    }
+
+    @Override
+    public void write(final YangInstanceIdentifier path, final NormalizedNode<?, ?> data) {
+        if (!path.isEmpty()) {
+            getWriter(store.shardOf(path)).write(path, data);
+            return;
+        }
+        // Replacing the root replaces the top-level nodes of every shard
+        final List<ContainerNode> roots = store.splitRoot(data);
+        for (int i = 0; i < roots.size(); i++) {
+            getWriter(i).write(path, roots.get(i));
+        }
+    }
+
+    @Override
+    public void merge(final YangInstanceIdentifier path, final NormalizedNode<?, ?> data) {
+        if (!path.isEmpty()) {
+            getWriter(store.shardOf(path)).merge(path, data);
+            return;
+        }
+        final List<ContainerNode> roots = store.splitRoot(data);
+        for (int i = 0; i < roots.size(); i++) {
+            if (!roots.get(i).getValue().isEmpty()) {
+                getWriter(i).merge(path, roots.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void delete(final YangInstanceIdentifier path) {
+        if (!path.isEmpty()) {
+            getWriter(store.shardOf(path)).delete(path);
+            return;
+        }
+        for (int i = 0; i < writers.length; i++) {
+            getWriter(i).delete(path);
+        }
+    }
+
+    @Override
+    public synchronized DOMStoreThreePhaseCommitCohort ready() {
+        Preconditions.checkState(writerFactory != null, "Transaction %s is read-only", this);
+        Preconditions.checkState(!ready, "Transaction %s is already ready", this);
+        ready = true;
+        final List<DOMStoreThreePhaseCommitCohort> cohorts = new ArrayList<>();
+        final List<Integer> shards = new ArrayList<>();
+        for (int i = 0; i < writers.length; i++) {
+            if (writers[i] != null) {
+                cohorts.add(writers[i].ready());
+                shards.add(i);
+            } else if (readers != null) {
+                // Not written to, it does not take part in the commit
+                readers.get(i).close();
+            }
+        }
+        return new ShardedDOMStoreCommitCohort(store, shards, cohorts);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (readers != null) {
+            // A read-write transaction reads and writes through the same shard transactions
+            readers.forEach(DOMStoreReadTransaction::close);
+            return;
+        }
+        for (DOMStoreWriteTransaction writer : writers) {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    @Override
+    public Object getIdentifier() {
+        return this;
+    }
+}
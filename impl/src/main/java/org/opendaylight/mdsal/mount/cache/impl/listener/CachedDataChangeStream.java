@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.listener;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeIdentifier;
+import org.opendaylight.mdsal.mount.cache.api.CachedDOMChangeStreamService;
+import org.opendaylight.mdsal.mount.cache.api.CachedDataTreeChange;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidate;
+import org.reactivestreams.Subscriber;
+
+/**
+ * The changes of a subtree, numbered and published to any number of subscribers. The stream is registered on the
+ * data store as a tree change listener for its whole life, and keeps the last {@code historySize} changes so that a
+ * subscriber can resume after the last change it processed. Its owner is notified each time it loses its last
+ * subscriber, to close it.
+ *
+ * Sequence numbers are consecutive within a stream. Each stream starts from a new epoch, in the high bits, so that
+ * the numbers of a released stream are not mistaken for the ones of its replacement.
+ */
+final class CachedDataChangeStream implements DOMDataTreeChangeListener, AutoCloseable {
+
+    private static final int EPOCH_SHIFT = 40;
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    private final String nodeId;
+    private final DOMDataTreeIdentifier treeId;
+    private final Executor executor;
+    private final int bufferSize;
+    private final int historySize;
+    private final Consumer<CachedDataChangeStream> idleListener;
+
+    // Guarded by this
+    private final Deque<CachedDataTreeChange> history = new ArrayDeque<>();
+    private final Set<CachedDataChangeSubscription> subscriptions = new LinkedHashSet<>();
+    private long lastSequence = EPOCHS.incrementAndGet() << EPOCH_SHIFT;
+    private boolean closed;
+    // Subscribers about to be added
+    private int acquired;
+    private long idleSinceNanos = System.nanoTime();
+
+    private ListenerRegistration<CachedDataChangeStream> registration;
+
+    CachedDataChangeStream(final String nodeId,
+                           final DOMDataTreeIdentifier treeId,
+                           final Executor executor,
+                           final int bufferSize,
+                           final int historySize,
+                           final Consumer<CachedDataChangeStream> idleListener) {
+        Preconditions.checkArgument(bufferSize > 0, "%s: Buffer size must be positive", nodeId);
+        Preconditions.checkArgument(historySize >= 0, "%s: Negative history size", nodeId);
+        this.nodeId = nodeId;
+        this.treeId = treeId;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.historySize = historySize;
+        this.idleListener = Preconditions.checkNotNull(idleListener);
+    }
+
+    DOMDataTreeIdentifier getTreeId() {
+        return treeId;
+    }
+
+    /**
+     * Keep the stream from being idle until the next {@link #subscribe(Subscriber, long)}.
+     *
+     * @return this stream
+     */
+    synchronized CachedDataChangeStream acquire() {
+        acquired++;
+        return this;
+    }
+
+    /**
+     * @return whether the stream had no subscriber for at least {@code nanos}
+     */
+    synchronized boolean isIdleFor(final long nanos) {
+        return subscriptions.isEmpty() && acquired == 0 && System.nanoTime() - idleSinceNanos >= nanos;
+    }
+
+    private boolean becameIdle() {
+        if (subscriptions.isEmpty() && acquired == 0 && !closed) {
+            idleSinceNanos = System.nanoTime();
+            return true;
+        }
+        return false;
+    }
+
+    void setRegistration(final ListenerRegistration<CachedDataChangeStream> registration) {
+        this.registration = registration;
+    }
+
+    /**
+     * Must follow {@link #acquire()}.
+     *
+     * @param fromSequence the sequence number of the last change the subscriber processed, or
+     *                     {@link CachedDOMChangeStreamService#LATEST} or {@link CachedDOMChangeStreamService#EARLIEST}
+     */
+    void subscribe(final Subscriber<? super CachedDataTreeChange> subscriber, final long fromSequence) {
+        final CachedDataChangeSubscription subscription = new CachedDataChangeSubscription(this, subscriber, executor,
+                bufferSize);
+        final boolean idle;
+        synchronized (this) {
+            acquired--;
+            final long firstRetained = history.isEmpty() ? lastSequence + 1 : history.peekFirst().getSequence();
+            final long from = fromSequence == CachedDOMChangeStreamService.EARLIEST ? firstRetained - 1
+                    : fromSequence;
+            if (closed) {
+                subscription.complete();
+            } else if (fromSequence == CachedDOMChangeStreamService.LATEST) {
+                subscriptions.add(subscription);
+            } else if (from < firstRetained - 1 || from > lastSequence) {
+                subscription.fail(new IllegalArgumentException("Cannot resume " + this + " from " + fromSequence
+                        + ", it holds changes " + firstRetained + " to " + lastSequence));
+            } else {
+                history.stream().filter(change -> change.getSequence() > from).forEach(subscription::offer);
+                subscriptions.add(subscription);
+            }
+            idle = becameIdle();
+        }
+        subscription.signal();
+        if (idle) {
+            idleListener.accept(this);
+        }
+    }
+
+    void remove(final CachedDataChangeSubscription subscription) {
+        final boolean idle;
+        synchronized (this) {
+            idle = subscriptions.remove(subscription) && becameIdle();
+        }
+        if (idle) {
+            idleListener.accept(this);
+        }
+    }
+
+    @Override
+    public void onDataTreeChanged(@Nonnull final Collection<DataTreeCandidate> changes) {
+        final List<CachedDataChangeSubscription> toSignal;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            for (DataTreeCandidate candidate : changes) {
+                final CachedDataTreeChange change = new CachedDataTreeChange(++lastSequence, candidate);
+                if (historySize > 0) {
+                    if (history.size() == historySize) {
+                        history.removeFirst();
+                    }
+                    history.addLast(change);
+                }
+                subscriptions.forEach(subscription -> subscription.offer(change));
+            }
+            toSignal = new ArrayList<>(subscriptions);
+        }
+        toSignal.forEach(CachedDataChangeSubscription::signal);
+    }
+
+    /**
+     * Stop listening to the data store and complete the subscriptions once they got their buffered changes.
+     */
+    @Override
+    public void close() {
+        final List<CachedDataChangeSubscription> toComplete;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            history.clear();
+            toComplete = new ArrayList<>(subscriptions);
+        }
+        if (registration != null) {
+            registration.close();
+        }
+        toComplete.forEach(CachedDataChangeSubscription::complete);
+    }
+
+    @Override
+    public String toString() {
+        return nodeId + " change stream of " + treeId;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.listener;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeIdentifier;
+import org.opendaylight.mdsal.mount.cache.api.CachedDataTreeChange;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The change streams of a cached mount point, one per subtree. A stream is created and registered on its data store
+ * when its first subscriber subscribes, and closed {@code retentionSeconds} after its last subscriber left, so that
+ * the subscribers reconnecting within that delay can resume.
+ */
+public class CachedDataChangeStreams implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedDataChangeStreams.class);
+
+    private static final Subscription NOOP_SUBSCRIPTION = new Subscription() {
+        @Override
+        public void request(final long count) {
+            // Nothing to deliver
+        }
+
+        @Override
+        public void cancel() {
+            // Nothing to cancel
+        }
+    };
+
+    private final String nodeId;
+    private final CachedDOMStores stores;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    private final int bufferSize;
+    private final int historySize;
+    private final long retentionNanos;
+
+    // Guarded by this
+    private final Map<DOMDataTreeIdentifier, CachedDataChangeStream> streams = new HashMap<>();
+    private boolean closed;
+
+    /**
+     * @param executor         delivers the changes to the subscribers
+     * @param scheduler        closes the streams without subscribers
+     * @param bufferSize       number of changes buffered for each subscriber before they are conflated
+     * @param historySize      number of past changes each stream keeps for the subscribers resuming
+     * @param retentionSeconds how long a stream is kept once its last subscriber left
+     */
+    public CachedDataChangeStreams(final String nodeId,
+                                   final CachedDOMStores stores,
+                                   final Executor executor,
+                                   final ScheduledExecutorService scheduler,
+                                   final int bufferSize,
+                                   final int historySize,
+                                   final long retentionSeconds) {
+        this.nodeId = nodeId;
+        this.stores = Preconditions.checkNotNull(stores);
+        this.executor = Preconditions.checkNotNull(executor);
+        this.scheduler = Preconditions.checkNotNull(scheduler);
+        this.bufferSize = bufferSize;
+        this.historySize = historySize;
+        this.retentionNanos = TimeUnit.SECONDS.toNanos(retentionSeconds);
+    }
+
+    /**
+     * Terminate a subscriber which cannot be subscribed, as the Reactive Streams specification requires: it gets a
+     * subscription doing nothing, then the error.
+     */
+    public static void fail(final Subscriber<?> subscriber, final Throwable cause) {
+        Preconditions.checkNotNull(subscriber);
+        try {
+            subscriber.onSubscribe(NOOP_SUBSCRIPTION);
+            subscriber.onError(cause);
+        } catch (RuntimeException e) {
+            LOG.warn("Subscriber {} failed to process the failure of its subscription", subscriber, e);
+        }
+    }
+
+    /**
+     * @see org.opendaylight.mdsal.mount.cache.api.CachedDOMChangeStreamService#getChangeStream
+     */
+    public Publisher<CachedDataTreeChange> getChangeStream(final DOMDataTreeIdentifier treeId,
+                                                           final long fromSequence) {
+        Preconditions.checkNotNull(treeId);
+        return subscriber -> subscribe(treeId, subscriber, fromSequence);
+    }
+
+    private void subscribe(final DOMDataTreeIdentifier treeId,
+                           final Subscriber<? super CachedDataTreeChange> subscriber, final long fromSequence) {
+        Preconditions.checkNotNull(subscriber);
+        final CachedDataChangeStream stream;
+        synchronized (this) {
+            // Not closed for being idle until the subscriber is added
+            stream = closed ? null : streams.computeIfAbsent(treeId, this::createStream).acquire();
+        }
+        if (stream == null) {
+            fail(subscriber, new IllegalStateException(nodeId + ": Change streams are closed"));
+        } else {
+            stream.subscribe(subscriber, fromSequence);
+        }
+    }
+
+    private CachedDataChangeStream createStream(final DOMDataTreeIdentifier treeId) {
+        LOG.debug("{}: Creating change stream of {}", nodeId, treeId);
+        final CachedDataChangeStream stream = new CachedDataChangeStream(nodeId, treeId, executor, bufferSize,
+                historySize, this::onIdle);
+        stream.setRegistration(stores.getStore(treeId.getDatastoreType())
+                .registerTreeChangeListener(treeId.getRootIdentifier(), stream));
+        return stream;
+    }
+
+    private void onIdle(final CachedDataChangeStream stream) {
+        if (retentionNanos == 0) {
+            closeIfIdle(stream);
+            return;
+        }
+        try {
+            scheduler.schedule(() -> closeIfIdle(stream), retentionNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            closeIfIdle(stream);
+        }
+    }
+
+    private void closeIfIdle(final CachedDataChangeStream stream) {
+        synchronized (this) {
+            // A subscriber may have come and left since, its own check closes the stream
+            if (streams.get(stream.getTreeId()) != stream || !stream.isIdleFor(retentionNanos)) {
+                return;
+            }
+            streams.remove(stream.getTreeId());
+        }
+        LOG.debug("{}: Closing idle {}", nodeId, stream);
+        stream.close();
+    }
+
+    @Override
+    public void close() {
+        final Collection<CachedDataChangeStream> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(streams.values());
+            streams.clear();
+        }
+        toClose.forEach(CachedDataChangeStream::close);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.listener;
+
+import com.google.common.base.Optional;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.opendaylight.mdsal.mount.cache.api.CachedDataTreeChange;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidateNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidates;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The subscription of a {@link Subscriber} to a {@link CachedDataChangeStream}. Changes are buffered until the
+ * subscriber requests them; once {@code bufferSize} changes are buffered, each new change is conflated into the last
+ * buffered one, so the memory held for a slow subscriber is bounded. The signals are delivered on the executor, by at
+ * most one task at a time, which keeps them ordered.
+ */
+final class CachedDataChangeSubscription implements Subscription {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedDataChangeSubscription.class);
+
+    // Changes delivered by a task before it gives the executor back to the other subscriptions
+    private static final int MAX_DELIVERIES_PER_TASK = 64;
+
+    private final CachedDataChangeStream stream;
+    private final Subscriber<? super CachedDataTreeChange> subscriber;
+    private final Executor executor;
+    private final int bufferSize;
+
+    // Guarded by this
+    private final Deque<CachedDataTreeChange> buffer = new ArrayDeque<>();
+    private long demand;
+    private boolean subscribed;
+    private boolean scheduled;
+    private boolean completed;
+    private Throwable failure;
+    private boolean terminated;
+
+    CachedDataChangeSubscription(final CachedDataChangeStream stream,
+                                 final Subscriber<? super CachedDataTreeChange> subscriber,
+                                 final Executor executor,
+                                 final int bufferSize) {
+        this.stream = stream;
+        this.subscriber = subscriber;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Buffer a change, to be delivered once {@link #signal()} is called.
+     */
+    synchronized void offer(final CachedDataTreeChange change) {
+        if (terminated) {
+            return;
+        }
+        if (buffer.size() >= bufferSize) {
+            buffer.addLast(conflate(buffer.pollLast(), change));
+        } else {
+            buffer.addLast(change);
+        }
+    }
+
+    /**
+     * Merge two consecutive changes of the same subtree.
+     */
+    private static CachedDataTreeChange conflate(final CachedDataTreeChange older, final CachedDataTreeChange newer) {
+        final DataTreeCandidateNode newerRoot = newer.getCandidate().getRootNode();
+        final Optional<NormalizedNode<?, ?>> before = older.getCandidate().getRootNode().getDataBefore();
+        return new CachedDataTreeChange(older.getFirstSequence(), newer.getSequence(),
+                DataTreeCandidates.newDataTreeCandidate(newer.getCandidate().getRootPath(),
+                        new CoalescedDataTreeCandidateNode(newerRoot.getIdentifier(), before,
+                                newerRoot.getDataAfter())));
+    }
+
+    /**
+     * Complete the subscription once the buffered changes are delivered.
+     */
+    void complete() {
+        synchronized (this) {
+            completed = true;
+        }
+        signal();
+    }
+
+    /**
+     * Fail the subscription, dropping the buffered changes.
+     */
+    void fail(final Throwable cause) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = cause;
+            }
+            buffer.clear();
+        }
+        signal();
+    }
+
+    @Override
+    public void request(final long count) {
+        if (count <= 0) {
+            fail(new IllegalArgumentException("Requested " + count + " changes, the count must be positive"));
+            return;
+        }
+        synchronized (this) {
+            demand = demand + count < 0 ? Long.MAX_VALUE : demand + count;
+        }
+        signal();
+    }
+
+    @Override
+    public void cancel() {
+        synchronized (this) {
+            terminated = true;
+            buffer.clear();
+        }
+        stream.remove(this);
+    }
+
+    /**
+     * Schedule the delivery of the pending signals, unless one is already scheduled.
+     */
+    void signal() {
+        synchronized (this) {
+            if (scheduled || terminated && subscribed) {
+                return;
+            }
+            scheduled = true;
+        }
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException e) {
+            if (CachedDataTreeChangeDispatcher.isShutdown(executor)) {
+                LOG.debug("{}: Dropping change stream signals, executor is shut down", stream, e);
+                synchronized (this) {
+                    scheduled = false;
+                }
+            } else {
+                // Saturated, the signalling thread delivers itself
+                deliver();
+            }
+        }
+    }
+
+    private void deliver() {
+        final boolean subscribing;
+        synchronized (this) {
+            subscribing = !subscribed;
+            subscribed = true;
+        }
+        if (subscribing) {
+            try {
+                subscriber.onSubscribe(this);
+            } catch (RuntimeException e) {
+                LOG.warn("{}: Subscriber {} failed to subscribe", stream, subscriber, e);
+                cancel();
+            }
+        }
+
+        for (int i = 0; i < MAX_DELIVERIES_PER_TASK; i++) {
+            CachedDataTreeChange next = null;
+            Throwable error = null;
+            synchronized (this) {
+                if (terminated) {
+                    scheduled = false;
+                    return;
+                }
+                if (failure != null) {
+                    terminated = true;
+                    error = failure;
+                } else if (demand > 0 && !buffer.isEmpty()) {
+                    next = buffer.pollFirst();
+                    if (demand != Long.MAX_VALUE) {
+                        demand--;
+                    }
+                } else if (completed && buffer.isEmpty()) {
+                    terminated = true;
+                } else {
+                    scheduled = false;
+                    return;
+                }
+            }
+
+            if (next == null) {
+                // Terminated, whatever the subscriber does
+                stream.remove(this);
+                try {
+                    if (error != null) {
+                        subscriber.onError(error);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                } catch (RuntimeException e) {
+                    LOG.warn("{}: Subscriber {} failed to process the end of the stream", stream, subscriber, e);
+                }
+                continue;
+            }
+            try {
+                subscriber.onNext(next);
+            } catch (RuntimeException e) {
+                LOG.warn("{}: Subscriber {} failed to process {}, cancelling its subscription", stream, subscriber,
+                        next, e);
+                cancel();
+            }
+        }
+
+        // Let the other subscriptions run, then carry on
+        synchronized (this) {
+            scheduled = false;
+        }
+        signal();
+    }
+}
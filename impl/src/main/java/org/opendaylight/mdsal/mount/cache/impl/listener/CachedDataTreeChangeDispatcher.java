@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.listener;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeIdentifier;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNodes;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the data tree changes of a cached mount point to the listeners registered per path. A single listener is
+ * registered at the root of each data store, whatever the number of listeners, and changes are dispatched to the
+ * subscribed paths through a {@link CachedDataTreeChangeTrie}. The changes notified within {@code windowMillis} are
+ * coalesced into a single notification per listener, delivered on {@code executor}. Coalescing bounds the memory held
+ * for each listener; a bounded executor throttles the deliveries when the listeners cannot keep up. Once it rejects
+ * them, the notifying thread delivers itself, while the scheduler, shared by the mount points, never blocks and tries
+ * again after another window.
+ */
+public class CachedDataTreeChangeDispatcher implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedDataTreeChangeDispatcher.class);
+
+    private final String nodeId;
+    private final CachedDOMStores stores;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduler;
+    private final long windowMillis;
+
+    // Guarded by itself
+    private final Map<LogicalDatastoreType, RootListener> rootListeners = new EnumMap<>(LogicalDatastoreType.class);
+    private final AtomicLong backlog = new AtomicLong();
+
+    /**
+     * @param executor     delivers the notifications to the listeners
+     * @param scheduler    times the coalescing windows, may be {@code null} if {@code windowMillis} is {@code 0}
+     * @param windowMillis how long changes are accumulated before being delivered, {@code 0} to deliver them as
+     *                     soon as the executor allows
+     */
+    public CachedDataTreeChangeDispatcher(final String nodeId,
+                                          final CachedDOMStores stores,
+                                          final Executor executor,
+                                          @Nullable final ScheduledExecutorService scheduler,
+                                          final long windowMillis) {
+        Preconditions.checkArgument(windowMillis >= 0, "Negative window %s", windowMillis);
+        Preconditions.checkArgument(windowMillis == 0 || scheduler != null, "A window requires a scheduler");
+        this.nodeId = nodeId;
+        this.stores = Preconditions.checkNotNull(stores);
+        this.executor = Preconditions.checkNotNull(executor);
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+    }
+
+    public <L extends DOMDataTreeChangeListener> ListenerRegistration<L> registerListener(
+            final DOMDataTreeIdentifier treeId, final L listener) {
+        final CachedDataTreeChangeSubscription<L> subscription = new CachedDataTreeChangeSubscription<>(this,
+                treeId.getDatastoreType(), treeId.getRootIdentifier(), listener);
+        getRootListener(treeId.getDatastoreType()).add(subscription);
+        LOG.debug("{}: Registered listener {} on {}", nodeId, listener, treeId);
+        return subscription;
+    }
+
+    private RootListener getRootListener(final LogicalDatastoreType datastoreType) {
+        synchronized (rootListeners) {
+            RootListener rootListener = rootListeners.get(datastoreType);
+            if (rootListener == null) {
+                rootListener = new RootListener();
+                rootListener.registration = stores.getStore(datastoreType)
+                        .registerTreeChangeListener(YangInstanceIdentifier.EMPTY, rootListener);
+                rootListeners.put(datastoreType, rootListener);
+            }
+            return rootListener;
+        }
+    }
+
+    /**
+     * @return the number of listeners with changes waiting to be delivered
+     */
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Schedule the delivery of the pending changes of a subscription. If it cannot be, the subscription is told so
+     * through {@link CachedDataTreeChangeSubscription#rejected()}.
+     */
+    void schedule(final CachedDataTreeChangeSubscription<?> subscription) {
+        if (windowMillis == 0) {
+            execute(subscription, true);
+        } else {
+            scheduleWindow(subscription);
+        }
+    }
+
+    private void scheduleWindow(final CachedDataTreeChangeSubscription<?> subscription) {
+        try {
+            scheduler.schedule(() -> execute(subscription, false), windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("{}: Dropping change notification, scheduler is shut down", nodeId, e);
+            subscription.rejected();
+        }
+    }
+
+    /**
+     * @param mayDeliver whether the calling thread may deliver itself when the executor is saturated
+     */
+    private void execute(final CachedDataTreeChangeSubscription<?> subscription, final boolean mayDeliver) {
+        try {
+            executor.execute(subscription::deliver);
+        } catch (RejectedExecutionException e) {
+            if (isShutdown(executor)) {
+                LOG.debug("{}: Dropping change notification, executor is shut down", nodeId, e);
+                subscription.rejected();
+            } else if (mayDeliver) {
+                subscription.deliver();
+            } else {
+                LOG.trace("{}: Listener executor saturated, delaying the delivery to {}", nodeId, subscription);
+                scheduleWindow(subscription);
+            }
+        }
+    }
+
+    /**
+     * @return whether an executor rejects its tasks because it is shut down, rather than saturated
+     */
+    static boolean isShutdown(final Executor executor) {
+        return executor instanceof ExecutorService && ((ExecutorService) executor).isShutdown();
+    }
+
+    void backlogIncreased() {
+        backlog.incrementAndGet();
+    }
+
+    void backlogDecreased() {
+        backlog.decrementAndGet();
+    }
+
+    void removeSubscription(final CachedDataTreeChangeSubscription<?> subscription) {
+        final RootListener rootListener;
+        synchronized (rootListeners) {
+            rootListener = rootListeners.get(subscription.getDatastoreType());
+        }
+        if (rootListener != null) {
+            rootListener.remove(subscription);
+        }
+    }
+
+    @Override
+    public void close() {
+        final List<CachedDataTreeChangeSubscription<?>> subscriptions = new ArrayList<>();
+        synchronized (rootListeners) {
+            for (RootListener rootListener : rootListeners.values()) {
+                rootListener.close();
+                rootListener.collect(subscriptions);
+            }
+            rootListeners.clear();
+        }
+        // Drop the changes not delivered yet
+        for (CachedDataTreeChangeSubscription<?> subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    /**
+     * The only listener registered on a data store. It remembers the last state it was notified of, so that a
+     * subscription added later starts from the data its first notification is relative to.
+     */
+    private static final class RootListener implements DOMDataTreeChangeListener, AutoCloseable {
+
+        // Guarded by this
+        private final CachedDataTreeChangeTrie trie = new CachedDataTreeChangeTrie();
+        private Optional<NormalizedNode<?, ?>> lastRoot = Optional.absent();
+
+        private ListenerRegistration<RootListener> registration;
+
+        synchronized void add(final CachedDataTreeChangeSubscription<?> subscription) {
+            trie.add(subscription.getPath(), subscription);
+            final Optional<NormalizedNode<?, ?>> current = lastRoot.isPresent()
+                    ? NormalizedNodes.findNode(lastRoot.get(), subscription.getPath())
+                    : Optional.<NormalizedNode<?, ?>>absent();
+            if (current.isPresent()) {
+                subscription.changed(Optional.<NormalizedNode<?, ?>>absent(), current);
+            }
+        }
+
+        synchronized void remove(final CachedDataTreeChangeSubscription<?> subscription) {
+            trie.remove(subscription.getPath(), subscription);
+        }
+
+        synchronized void collect(final Collection<CachedDataTreeChangeSubscription<?>> into) {
+            trie.collect(into);
+        }
+
+        @Override
+        public synchronized void onDataTreeChanged(@Nonnull final Collection<DataTreeCandidate> changes) {
+            for (DataTreeCandidate change : changes) {
+                trie.dispatch(change.getRootNode());
+                lastRoot = change.getRootNode().getDataAfter();
+            }
+        }
+
+        @Override
+        public void close() {
+            registration.close();
+        }
+    }
+}
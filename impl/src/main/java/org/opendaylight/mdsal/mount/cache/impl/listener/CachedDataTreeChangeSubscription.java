@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.listener;
+
+import com.google.common.base.Optional;
+import java.util.Collections;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
+import org.opendaylight.yangtools.concepts.AbstractListenerRegistration;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A listener registered through a {@link CachedDataTreeChangeDispatcher}. The changes notified while a delivery is
+ * pending are coalesced: only the state before the first one and the state after the last one are kept, so the
+ * memory held for a slow listener does not depend on the number of commits. At most one delivery per subscription is
+ * scheduled or running at any time, which keeps the notifications ordered.
+ */
+final class CachedDataTreeChangeSubscription<L extends DOMDataTreeChangeListener>
+        extends AbstractListenerRegistration<L> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedDataTreeChangeSubscription.class);
+
+    private final CachedDataTreeChangeDispatcher dispatcher;
+    private final LogicalDatastoreType datastoreType;
+    private final YangInstanceIdentifier path;
+
+    // Guarded by this
+    private boolean pending;
+    private boolean scheduled;
+    private boolean closed;
+    private Optional<NormalizedNode<?, ?>> dataBefore;
+    private Optional<NormalizedNode<?, ?>> dataAfter;
+
+    CachedDataTreeChangeSubscription(final CachedDataTreeChangeDispatcher dispatcher,
+                                     final LogicalDatastoreType datastoreType,
+                                     final YangInstanceIdentifier path,
+                                     final L listener) {
+        super(listener);
+        this.dispatcher = dispatcher;
+        this.datastoreType = datastoreType;
+        this.path = path;
+    }
+
+    LogicalDatastoreType getDatastoreType() {
+        return datastoreType;
+    }
+
+    YangInstanceIdentifier getPath() {
+        return path;
+    }
+
+    /**
+     * Record a change of the subscribed subtree and schedule its delivery, unless one is already pending.
+     */
+    void changed(final Optional<NormalizedNode<?, ?>> before, final Optional<NormalizedNode<?, ?>> after) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (!pending) {
+                pending = true;
+                dataBefore = before;
+                dispatcher.backlogIncreased();
+            }
+            dataAfter = after;
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        dispatcher.schedule(this);
+    }
+
+    /**
+     * The delivery could not be scheduled, the dispatcher is shutting down: let the next change try again.
+     */
+    synchronized void rejected() {
+        scheduled = false;
+    }
+
+    void deliver() {
+        final Optional<NormalizedNode<?, ?>> before;
+        final Optional<NormalizedNode<?, ?>> after;
+        synchronized (this) {
+            if (!pending) {
+                scheduled = false;
+                return;
+            }
+            before = dataBefore;
+            after = dataAfter;
+            dataBefore = null;
+            dataAfter = null;
+            pending = false;
+            dispatcher.backlogDecreased();
+        }
+
+        try {
+            if (CoalescedDataTreeCandidateNode.isModified(before, after)) {
+                getInstance().onDataTreeChanged(Collections.singletonList(DataTreeCandidates.newDataTreeCandidate(
+                        path, new CoalescedDataTreeCandidateNode(before.or(after).get().getIdentifier(), before,
+                                after))));
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("{}: Listener {} failed to process changes of {}", dispatcher.getNodeId(), getInstance(), path,
+                    e);
+        } finally {
+            final boolean reschedule;
+            synchronized (this) {
+                reschedule = pending;
+                scheduled = reschedule;
+            }
+            if (reschedule) {
+                dispatcher.schedule(this);
+            }
+        }
+    }
+
+    @Override
+    protected void removeRegistration() {
+        synchronized (this) {
+            closed = true;
+            if (pending) {
+                pending = false;
+                dataBefore = null;
+                dataAfter = null;
+                dispatcher.backlogDecreased();
+            }
+        }
+        dispatcher.removeSubscription(this);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.listener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidateNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.ModificationType;
+
+/**
+ * The subscriptions of a data store, indexed by path. A change is dispatched by walking the trie alongside the
+ * modified nodes of the candidate, so its cost depends on the subscribed paths that were actually modified, not on
+ * the number of subscriptions. Not thread-safe.
+ */
+final class CachedDataTreeChangeTrie {
+
+    private final Map<PathArgument, CachedDataTreeChangeTrie> children = new HashMap<>();
+    private final List<CachedDataTreeChangeSubscription<?>> subscriptions = new ArrayList<>(1);
+
+    void add(final YangInstanceIdentifier path, final CachedDataTreeChangeSubscription<?> subscription) {
+        CachedDataTreeChangeTrie node = this;
+        for (PathArgument pathArgument : path.getPathArguments()) {
+            node = node.children.computeIfAbsent(pathArgument, key -> new CachedDataTreeChangeTrie());
+        }
+        node.subscriptions.add(subscription);
+    }
+
+    void remove(final YangInstanceIdentifier path, final CachedDataTreeChangeSubscription<?> subscription) {
+        remove(path.getPathArguments(), 0, subscription);
+    }
+
+    private void remove(final List<PathArgument> path, final int depth,
+                        final CachedDataTreeChangeSubscription<?> subscription) {
+        if (depth == path.size()) {
+            subscriptions.remove(subscription);
+            return;
+        }
+        final CachedDataTreeChangeTrie child = children.get(path.get(depth));
+        if (child != null) {
+            child.remove(path, depth + 1, subscription);
+            if (child.isEmpty()) {
+                children.remove(path.get(depth));
+            }
+        }
+    }
+
+    void collect(final Collection<CachedDataTreeChangeSubscription<?>> into) {
+        into.addAll(subscriptions);
+        children.values().forEach(child -> child.collect(into));
+    }
+
+    boolean isEmpty() {
+        return subscriptions.isEmpty() && children.isEmpty();
+    }
+
+    /**
+     * Hand the change of {@code candidate}, the node matching this trie node, to the subscriptions at and below it.
+     */
+    void dispatch(final DataTreeCandidateNode candidate) {
+        for (CachedDataTreeChangeSubscription<?> subscription : subscriptions) {
+            subscription.changed(candidate.getDataBefore(), candidate.getDataAfter());
+        }
+        if (children.isEmpty()) {
+            return;
+        }
+        // Only the children the candidate holds, the trie may hold many more subscribed paths than were modified
+        for (DataTreeCandidateNode child : candidate.getChildNodes()) {
+            if (child.getModificationType() != ModificationType.UNMODIFIED) {
+                final CachedDataTreeChangeTrie node = children.get(child.getIdentifier());
+                if (node != null) {
+                    node.dispatch(child);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.listener;
+
+import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNodeContainer;
+import org.opendaylight.yangtools.yang.data.api.schema.UnkeyedListNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidateNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.ModificationType;
+
+/**
+ * The net change between two states of a subtree, whatever the modifications in between. Children are computed on
+ * demand by comparing the two states; the data trees share unmodified subtrees, so identical instances are skipped
+ * without being walked.
+ */
+final class CoalescedDataTreeCandidateNode implements DataTreeCandidateNode {
+
+    private final PathArgument identifier;
+    private final Optional<NormalizedNode<?, ?>> dataBefore;
+    private final Optional<NormalizedNode<?, ?>> dataAfter;
+
+    CoalescedDataTreeCandidateNode(final PathArgument identifier, final Optional<NormalizedNode<?, ?>> dataBefore,
+                                   final Optional<NormalizedNode<?, ?>> dataAfter) {
+        this.identifier = identifier;
+        this.dataBefore = dataBefore;
+        this.dataAfter = dataAfter;
+    }
+
+    /**
+     * @return whether the two states differ, i.e. there is something to notify
+     */
+    static boolean isModified(final Optional<NormalizedNode<?, ?>> dataBefore,
+                              final Optional<NormalizedNode<?, ?>> dataAfter) {
+        return dataBefore.orNull() != dataAfter.orNull();
+    }
+
+    @Nonnull
+    @Override
+    public PathArgument getIdentifier() {
+        return identifier;
+    }
+
+    @Nonnull
+    @Override
+    public Collection<DataTreeCandidateNode> getChildNodes() {
+        if (getModificationType() == ModificationType.DELETE) {
+            return Collections.emptyList();
+        }
+        if (!isComparable()) {
+            // Written from scratch, or replaced as a whole
+            final Collection<DataTreeCandidateNode> children = new ArrayList<>();
+            for (NormalizedNode<?, ?> child : children(dataAfter)) {
+                children.add(new CoalescedDataTreeCandidateNode(child.getIdentifier(),
+                        Optional.<NormalizedNode<?, ?>>absent(), Optional.<NormalizedNode<?, ?>>of(child)));
+            }
+            return children;
+        }
+
+        final Set<PathArgument> identifiers = new LinkedHashSet<>();
+        for (NormalizedNode<?, ?> child : children(dataBefore)) {
+            identifiers.add(child.getIdentifier());
+        }
+        for (NormalizedNode<?, ?> child : children(dataAfter)) {
+            identifiers.add(child.getIdentifier());
+        }
+        final Collection<DataTreeCandidateNode> children = new ArrayList<>();
+        for (PathArgument childIdentifier : identifiers) {
+            final DataTreeCandidateNode child = getModifiedChild(childIdentifier);
+            if (child != null) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    @Override
+    public DataTreeCandidateNode getModifiedChild(final PathArgument childIdentifier) {
+        final Optional<NormalizedNode<?, ?>> childBefore = child(dataBefore, childIdentifier);
+        final Optional<NormalizedNode<?, ?>> childAfter = child(dataAfter, childIdentifier);
+        if (!isModified(childBefore, childAfter)) {
+            return null;
+        }
+        return new CoalescedDataTreeCandidateNode(childIdentifier, childBefore, childAfter);
+    }
+
+    @Nonnull
+    @Override
+    public ModificationType getModificationType() {
+        if (!dataAfter.isPresent()) {
+            return dataBefore.isPresent() ? ModificationType.DELETE : ModificationType.UNMODIFIED;
+        }
+        if (!isModified(dataBefore, dataAfter)) {
+            return ModificationType.UNMODIFIED;
+        }
+        return isComparable() ? ModificationType.SUBTREE_MODIFIED : ModificationType.WRITE;
+    }
+
+    @Nonnull
+    @Override
+    public Optional<NormalizedNode<?, ?>> getDataAfter() {
+        return dataAfter;
+    }
+
+    @Nonnull
+    @Override
+    public Optional<NormalizedNode<?, ?>> getDataBefore() {
+        return dataBefore;
+    }
+
+    /**
+     * Unkeyed list entries cannot be told apart, such lists are replaced as a whole like the data tree does.
+     */
+    private boolean isComparable() {
+        return isContainer(dataBefore) && isContainer(dataAfter);
+    }
+
+    private static boolean isContainer(final Optional<NormalizedNode<?, ?>> node) {
+        return node.isPresent() && node.get() instanceof NormalizedNodeContainer
+                && !(node.get() instanceof UnkeyedListNode);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<NormalizedNode<?, ?>> children(final Optional<NormalizedNode<?, ?>> node) {
+        if (!isContainer(node)) {
+            return Collections.emptyList();
+        }
+        return ((NormalizedNodeContainer<?, ?, NormalizedNode<?, ?>>) node.get()).getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Optional<NormalizedNode<?, ?>> child(final Optional<NormalizedNode<?, ?>> node,
+                                                        final PathArgument childIdentifier) {
+        if (!isContainer(node)) {
+            return Optional.absent();
+        }
+        final NormalizedNodeContainer<?, PathArgument, ?> container =
+                (NormalizedNodeContainer<?, PathArgument, ?>) node.get();
+        return (Optional<NormalizedNode<?, ?>>) container.getChild(childIdentifier);
+    }
+}
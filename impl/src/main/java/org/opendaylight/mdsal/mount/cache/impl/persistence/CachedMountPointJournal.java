@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.persistence;
+
+import com.google.common.base.Preconditions;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import org.opendaylight.controller.cluster.datastore.node.utils.stream.NormalizedNodeDataInput;
+import org.opendaylight.controller.cluster.datastore.node.utils.stream.NormalizedNodeDataOutput;
+import org.opendaylight.controller.cluster.datastore.node.utils.stream.NormalizedNodeInputOutput;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.mdsal.mount.cache.impl.CachedSchemaRepository;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMModification;
+import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMTransactionJournal;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the transactions committed to a cached mount point, stored in
+ * {@code cache/cached-mountpoint/<schema-cache-directory>/.journal/<node-id>.journal}.
+ * <p>
+ * Committing only queues the modifications, with a sequence number, so the commit path never waits for the disk.
+ * The queue is written, and the file synced, at most {@code syncIntervalMillis} after the first queued entry: the
+ * entries committed within that interval share a single fsync, and are lost if the process dies before it.
+ * <p>
+ * Commits run concurrently, the entries are written in sequence order. The sequence is assigned once the transaction
+ * is prepared, and a store only commits a transaction prepared on its current state, so the sequence order is the
+ * commit order of the transactions touching the same data.
+ * <p>
+ * If the journal cannot be written, the entries are kept and written again after {@code syncIntervalMillis}; in the
+ * meantime the journal is failed and rejects the commits, so no transaction is acknowledged without being journaled.
+ * <p>
+ * Each entry is framed by its length and CRC32, a torn entry at the end of the file is discarded on recovery. Once a
+ * {@link CachedMountPointSnapshot} contains the entries up to a sequence, the journal is {@link #roll(long) rolled}
+ * and drops them.
+ */
+public class CachedMountPointJournal implements CachedDOMTransactionJournal, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedMountPointJournal.class);
+
+    private static final String JOURNAL_DIRECTORY = ".journal";
+    private static final String JOURNAL_EXTENSION = ".journal";
+    // length + checksum
+    private static final int FRAME_HEADER_SIZE = 4 + 4;
+
+    private final String nodeId;
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+    private final long syncIntervalMillis;
+
+    // Commits share the read lock, a checkpoint takes the write lock to wait for the commits in progress
+    private final ReadWriteLock commitLock = new ReentrantReadWriteLock();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Queue<Entry> pendingEntries = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile long rolledSequence;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private final Object writeLock = new Object();
+    private FileChannel channel;
+    // Guarded by writeLock: the entries not written yet, the ones following a commit in progress wait for it
+    private final SortedMap<Long, Entry> unwritten = new TreeMap<>();
+    private long flushedSequence;
+    private long writtenSequence;
+
+    public CachedMountPointJournal(final String nodeId, final Path file, final ScheduledExecutorService scheduler,
+                                   final long syncIntervalMillis) {
+        this.nodeId = nodeId;
+        this.file = Preconditions.checkNotNull(file);
+        this.scheduler = Preconditions.checkNotNull(scheduler);
+        this.syncIntervalMillis = syncIntervalMillis;
+    }
+
+    public static Path journalPath(final String schemaCacheDirectory, final String nodeId) {
+        return Paths.get(CachedSchemaRepository.DEFAULT_CACHED_MOUNT_POINT_DIRECTORY, schemaCacheDirectory,
+                JOURNAL_DIRECTORY, CachedMountPointSnapshot.fileName(nodeId) + JOURNAL_EXTENSION);
+    }
+
+    /**
+     * Replay the entries following {@code snapshotSequence} into the stores, then open the journal for appending.
+     * Must be called before the stores are used.
+     *
+     * @param snapshotSequence sequence of the last entry contained in the restored snapshot, {@code 0} if none
+     * @return the number of replayed entries
+     */
+    public long recover(final CachedDOMStores stores, final long snapshotSequence) throws IOException {
+        Files.createDirectories(file.getParent());
+        long replayed = 0;
+        long lastSequence = 0;
+        long validSize = 0;
+
+        if (Files.exists(file)) {
+            final long start = System.nanoTime();
+            try (FileChannel readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final MappedByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+                    final int length = buffer.getInt(buffer.position());
+                    if (length < 0 || length > buffer.remaining() - FRAME_HEADER_SIZE) {
+                        break;
+                    }
+                    final ByteBuffer payload = buffer.duplicate();
+                    payload.position(buffer.position() + FRAME_HEADER_SIZE);
+                    payload.limit(payload.position() + length);
+                    final CRC32 crc = new CRC32();
+                    crc.update(payload.duplicate());
+                    if ((int) crc.getValue() != buffer.getInt(buffer.position() + 4)) {
+                        break;
+                    }
+
+                    final Entry entry;
+                    try {
+                        entry = deserialize(payload);
+                    } catch (IOException | RuntimeException e) {
+                        LOG.warn("{}: Unreadable entry at offset {} of journal {}", nodeId, buffer.position(), file, e);
+                        break;
+                    }
+                    if (entry.sequence > snapshotSequence) {
+                        apply(stores, entry);
+                        replayed++;
+                    }
+                    lastSequence = entry.sequence;
+                    buffer.position(payload.limit());
+                    validSize = buffer.position();
+                }
+                if (buffer.hasRemaining()) {
+                    LOG.warn("{}: Discarding {} bytes of torn entry at the end of journal {}", nodeId,
+                            buffer.remaining(), file);
+                }
+            }
+            LOG.info("{}: Replayed {} journal entries from {} in {}ms", nodeId, replayed, file,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        sequence.set(Math.max(lastSequence, snapshotSequence));
+        synchronized (writeLock) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.truncate(validSize);
+            channel.position(validSize);
+            flushedSequence = sequence.get();
+            writtenSequence = lastSequence;
+        }
+        return replayed;
+    }
+
+    @Override
+    public void commit(final Runnable commit, final List<CachedDOMModification> modifications) {
+        commitLock.readLock().lock();
+        try {
+            // Committing to the stores of a released mount point would lose the transaction
+            Preconditions.checkState(!closed, "%s: Journal %s is closed", nodeId, file);
+            final IOException writeFailure = failure;
+            if (writeFailure != null) {
+                throw new IllegalStateException(nodeId + ": Journal " + file + " cannot be written", writeFailure);
+            }
+
+            final long entrySequence = sequence.incrementAndGet();
+            boolean committed = false;
+            try {
+                commit.run();
+                committed = true;
+            } finally {
+                // An empty entry fills the gap of a failed commit, so that the following ones get written
+                pendingEntries.add(new Entry(entrySequence,
+                        committed ? modifications : Collections.<CachedDOMModification>emptyList()));
+            }
+        } finally {
+            commitLock.readLock().unlock();
+        }
+
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this::flush, syncIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Run {@code readState} while no journaled commit is in progress.
+     *
+     * @return the sequence of the last entry whose modifications are visible to {@code readState}
+     */
+    public long checkpoint(final Runnable readState) {
+        commitLock.writeLock().lock();
+        try {
+            readState.run();
+            return sequence.get();
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the entries up to {@code snapshotSequence}, which are now contained in a snapshot.
+     */
+    public void roll(final long snapshotSequence) {
+        if (snapshotSequence > rolledSequence) {
+            rolledSequence = snapshotSequence;
+            if (flushScheduled.compareAndSet(false, true)) {
+                try {
+                    scheduler.execute(this::flush);
+                } catch (RejectedExecutionException e) {
+                    flush();
+                }
+            }
+        }
+    }
+
+    private void flush() {
+        synchronized (writeLock) {
+            flushScheduled.set(false);
+            if (channel == null) {
+                return;
+            }
+
+            Entry pending;
+            while ((pending = pendingEntries.poll()) != null) {
+                unwritten.put(pending.sequence, pending);
+            }
+
+            // The entries following the last flushed one without gap, those after the gap wait for the next flush
+            final long rolled = rolledSequence;
+            final List<Entry> entries = new ArrayList<>();
+            long nextSequence = flushedSequence + 1;
+            for (Entry entry : unwritten.values()) {
+                if (entry.sequence != nextSequence) {
+                    break;
+                }
+                entries.add(entry);
+                nextSequence++;
+            }
+
+            long position = -1;
+            try {
+                if (writtenSequence <= rolled && channel.size() > 0) {
+                    // Everything on disk is in a snapshot
+                    channel.truncate(0);
+                }
+                position = channel.position();
+
+                final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+                final DataOutputStream output = new DataOutputStream(frames);
+                long lastWritten = writtenSequence;
+                int count = 0;
+                for (Entry entry : entries) {
+                    if (entry.sequence <= rolled || entry.modifications.isEmpty()) {
+                        continue;
+                    }
+                    final byte[] payload = serialize(entry);
+                    final CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    output.writeInt(payload.length);
+                    output.writeInt((int) crc.getValue());
+                    output.write(payload);
+                    lastWritten = entry.sequence;
+                    count++;
+                }
+
+                if (count > 0) {
+                    final ByteBuffer buffer = ByteBuffer.wrap(frames.toByteArray());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                    LOG.trace("{}: Synced {} journal entries", nodeId, count);
+                }
+                entries.forEach(entry -> unwritten.remove(entry.sequence));
+                flushedSequence = nextSequence - 1;
+                writtenSequence = lastWritten;
+                if (failure != null) {
+                    LOG.info("{}: Journal {} is written again", nodeId, file);
+                    failure = null;
+                }
+            } catch (IOException e) {
+                LOG.error("{}: Failed to write journal {}, keeping {} entries to write again", nodeId, file,
+                        unwritten.size(), e);
+                failure = e;
+                discardTornWrite(position);
+                retryFlush();
+            }
+        }
+    }
+
+    private void discardTornWrite(final long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException e) {
+            // Recovery stops at the torn entry anyway
+            LOG.warn("{}: Failed to discard the partial write at the end of journal {}", nodeId, file, e);
+        }
+    }
+
+    private void retryFlush() {
+        if (!closed && flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this::flush, syncIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down, the journal is flushed once more when closed
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Stop journaling and remove the journal file, e.g. when the mount point is deleted.
+     */
+    public void discard() {
+        closed = true;
+        synchronized (writeLock) {
+            pendingEntries.clear();
+            unwritten.clear();
+            closeChannel();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.warn("{}: Failed to delete journal {}", nodeId, file, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        commitLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+        synchronized (writeLock) {
+            flush();
+            if (!unwritten.isEmpty() || !pendingEntries.isEmpty()) {
+                LOG.error("{}: Closing journal {} without {} entries", nodeId, file,
+                        unwritten.size() + pendingEntries.size());
+            }
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("{}: Failed to close journal {}", nodeId, file, e);
+            }
+            channel = null;
+        }
+    }
+
+    private void apply(final CachedDOMStores stores, final Entry entry) {
+        final Map<LogicalDatastoreType, List<CachedDOMModification>> modificationsByStore =
+                new EnumMap<>(LogicalDatastoreType.class);
+        entry.modifications.forEach(modification -> modificationsByStore
+                .computeIfAbsent(modification.getStore(), store -> new ArrayList<>()).add(modification));
+
+        for (Map.Entry<LogicalDatastoreType, List<CachedDOMModification>> storeModifications
+                : modificationsByStore.entrySet()) {
+            try {
+                stores.apply(storeModifications.getKey(),
+                        transaction -> storeModifications.getValue().forEach(modification ->
+                                modification.applyTo(transaction)));
+            } catch (Exception e) {
+                LOG.warn("{}: Failed to replay journal entry {} on the {} store", nodeId, entry.sequence,
+                        storeModifications.getKey(), e);
+            }
+        }
+    }
+
+    private static byte[] serialize(final Entry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (NormalizedNodeDataOutput output = NormalizedNodeInputOutput.newDataOutput(new DataOutputStream(bytes))) {
+            output.writeLong(entry.sequence);
+            output.writeInt(entry.modifications.size());
+            for (CachedDOMModification modification : entry.modifications) {
+                output.writeByte(modification.getType().ordinal());
+                output.writeByte(modification.getStore().ordinal());
+                output.writeYangInstanceIdentifier(modification.getPath());
+                if (modification.getType() != CachedDOMModification.Type.DELETE) {
+                    output.writeNormalizedNode(modification.getData());
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry deserialize(final ByteBuffer payload) throws IOException {
+        final NormalizedNodeDataInput input =
+                NormalizedNodeInputOutput.newDataInput(new DataInputStream(new ByteBufferInputStream(payload)));
+        final long sequence = input.readLong();
+        final int count = input.readInt();
+        final List<CachedDOMModification> modifications = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final CachedDOMModification.Type type = CachedDOMModification.Type.values()[input.readByte()];
+            final LogicalDatastoreType store = LogicalDatastoreType.values()[input.readByte()];
+            final YangInstanceIdentifier path = input.readYangInstanceIdentifier();
+            switch (type) {
+                case PUT:
+                    modifications.add(CachedDOMModification.put(store, path, input.readNormalizedNode()));
+                    break;
+                case MERGE:
+                    modifications.add(CachedDOMModification.merge(store, path, input.readNormalizedNode()));
+                    break;
+                case DELETE:
+                    modifications.add(CachedDOMModification.delete(store, path));
+                    break;
+            }
+        }
+        return new Entry(sequence, modifications);
+    }
+
+    private static final class Entry {
+        private final long sequence;
+        private final List<CachedDOMModification> modifications;
+
+        Entry(final long sequence, final List<CachedDOMModification> modifications) {
+            this.sequence = sequence;
+            this.modifications = modifications;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.persistence;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.opendaylight.controller.cluster.datastore.node.utils.stream.NormalizedNodeDataOutput;
+import org.opendaylight.controller.cluster.datastore.node.utils.stream.NormalizedNodeInputOutput;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.mdsal.mount.cache.impl.CachedSchemaRepository;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+
+/**
+ * Binary snapshot of the data trees of a cached mount point, stored in
+ * {@code cache/cached-mountpoint/<schema-cache-directory>/.snapshots/<node-id>.snapshot}.
+ * <p>
+ * The file is a fixed header (magic, version, payload length, CRC32 of the payload, journal sequence) followed by
+ * one record per data store: the store type, the length of the serialized root node and the root node itself. The
+ * journal sequence is the one of the last journaled commit contained in the snapshot, {@code 0} if the mount point
+ * has no journal.
+ * <p>
+ * The records are streamed to the file, which is read through a memory-mapped buffer; a new snapshot is written aside
+ * and atomically moved over the previous one so a crash never leaves a partial file behind.
+ */
+public final class CachedMountPointSnapshot {
+
+    private static final int MAGIC = 0x434D5053;
+    private static final int VERSION = 2;
+    // magic + version + payload length + checksum
+    private static final int V1_HEADER_SIZE = 4 + 4 + 8 + 8;
+    // v1 header + journal sequence
+    private static final int HEADER_SIZE = V1_HEADER_SIZE + 8;
+
+    private static final int CHECKSUM_CHUNK_SIZE = 64 * 1024;
+
+    private static final String SNAPSHOT_DIRECTORY = ".snapshots";
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    private final long sequence;
+    private final Map<LogicalDatastoreType, NormalizedNode<?, ?>> roots;
+
+    public CachedMountPointSnapshot(final long sequence, final Map<LogicalDatastoreType, NormalizedNode<?, ?>> roots) {
+        this.sequence = sequence;
+        this.roots = roots;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Map<LogicalDatastoreType, NormalizedNode<?, ?>> getRoots() {
+        return roots;
+    }
+
+    public static Path snapshotPath(final String schemaCacheDirectory, final String nodeId) {
+        return Paths.get(CachedSchemaRepository.DEFAULT_CACHED_MOUNT_POINT_DIRECTORY, schemaCacheDirectory,
+                SNAPSHOT_DIRECTORY, fileName(nodeId) + SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * @return the node id in a form that is safe to use as a file name
+     */
+    static String fileName(final String nodeId) {
+        try {
+            return URLEncoder.encode(nodeId, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+    }
+
+    public static void write(final Path file, final CachedMountPointSnapshot snapshot) throws IOException {
+        Files.createDirectories(file.getParent());
+        final Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // The records are streamed to the file, whatever their size only the stream buffer is on the heap
+            final ChannelOutputStream stream = new ChannelOutputStream(channel, HEADER_SIZE);
+            for (Map.Entry<LogicalDatastoreType, NormalizedNode<?, ?>> entry : snapshot.roots.entrySet()) {
+                stream.write(entry.getKey().ordinal());
+                // The length of the record is known once it is written
+                final long lengthPosition = stream.getPosition();
+                stream.write(new byte[4]);
+                try (NormalizedNodeDataOutput output =
+                             NormalizedNodeInputOutput.newDataOutput(new DataOutputStream(stream))) {
+                    output.writeNormalizedNode(entry.getValue());
+                }
+                stream.flush();
+                final long length = stream.getPosition() - lengthPosition - 4;
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("The " + entry.getKey() + " record of snapshot " + file + " exceeds 2GiB");
+                }
+                final ByteBuffer lengthBuffer = ByteBuffer.allocate(4).putInt(0, (int) length);
+                writeFully(channel, lengthBuffer, lengthPosition);
+            }
+            final long payloadSize = stream.getPosition() - HEADER_SIZE;
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(payloadSize);
+            header.putLong(checksum(channel, HEADER_SIZE, payloadSize));
+            header.putLong(snapshot.sequence);
+            header.flip();
+            writeFully(channel, header, 0);
+            channel.force(true);
+        }
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * @return the CRC32 of {@code size} bytes of the file from {@code position}, read by chunks
+     */
+    private static long checksum(final FileChannel channel, final long position, final long size)
+            throws IOException {
+        final CRC32 crc = new CRC32();
+        final ByteBuffer chunk = ByteBuffer.allocateDirect(CHECKSUM_CHUNK_SIZE);
+        final long end = position + size;
+        long offset = position;
+        while (offset < end) {
+            chunk.clear();
+            chunk.limit((int) Math.min(CHECKSUM_CHUNK_SIZE, end - offset));
+            final int read = channel.read(chunk, offset);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file while checksumming a snapshot");
+            }
+            offset += read;
+            chunk.flip();
+            crc.update(chunk);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @return the snapshot, or {@code null} if there is none
+     * @throws IOException if the file cannot be read, or is corrupted
+     */
+    public static CachedMountPointSnapshot read(final Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        final Map<LogicalDatastoreType, NormalizedNode<?, ?>> roots = new EnumMap<>(LogicalDatastoreType.class);
+        final long sequence;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < V1_HEADER_SIZE) {
+                throw new IOException("Truncated snapshot " + file);
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Unsupported snapshot format " + file);
+            }
+            final int headerSize;
+            switch (buffer.getInt(4)) {
+                case 1:
+                    headerSize = V1_HEADER_SIZE;
+                    break;
+                case VERSION:
+                    headerSize = HEADER_SIZE;
+                    break;
+                default:
+                    throw new IOException("Unsupported snapshot format " + file);
+            }
+            if (size < headerSize || buffer.getLong(8) != size - headerSize) {
+                throw new IOException("Truncated snapshot " + file);
+            }
+            // Snapshots written before the journal existed are not related to any journal entry
+            sequence = headerSize == HEADER_SIZE ? buffer.getLong(24) : 0;
+
+            final ByteBuffer payload = buffer.duplicate();
+            payload.position(headerSize);
+            final CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != buffer.getLong(16)) {
+                throw new IOException("Corrupted snapshot " + file);
+            }
+
+            buffer.position(headerSize);
+            final LogicalDatastoreType[] types = LogicalDatastoreType.values();
+            while (buffer.hasRemaining()) {
+                final LogicalDatastoreType type = types[buffer.get()];
+                final int length = buffer.getInt();
+                final ByteBuffer record = buffer.slice();
+                record.limit(length);
+                buffer.position(buffer.position() + length);
+                roots.put(type, deserialize(record));
+            }
+        }
+        return new CachedMountPointSnapshot(sequence, roots);
+    }
+
+    public static void delete(final Path file) throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static NormalizedNode<?, ?> deserialize(final ByteBuffer record) throws IOException {
+        return NormalizedNodeInputOutput.newDataInput(new DataInputStream(new ByteBufferInputStream(record)))
+                .readNormalizedNode();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.persistence;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStore;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically writes a {@link CachedMountPointSnapshot} of the data stores of a cached mount point.
+ * <p>
+ * The data trees are immutable, any commit replaces their root node: a snapshot is only written when a root differs,
+ * by identity, from the one written last time, so idle mount points cost a read per interval. A last snapshot is
+ * taken when the mount point is closed.
+ */
+public class CachedMountPointSnapshotter implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedMountPointSnapshotter.class);
+
+    private final String nodeId;
+    private final Path file;
+    private final CachedDOMStores stores;
+    private final CachedMountPointJournal journal;
+    private final Map<LogicalDatastoreType, NormalizedNode<?, ?>> lastRoots =
+            new EnumMap<>(LogicalDatastoreType.class);
+
+    private ScheduledFuture<?> scheduledSnapshot;
+    private boolean closed;
+
+    private long sequence;
+
+    /**
+     * @param journal journal of the mount point, which is rolled once its entries are contained in a snapshot,
+     *                or {@code null}
+     */
+    public CachedMountPointSnapshotter(final String nodeId, final Path file, final CachedDOMStores stores,
+                                       @Nullable final CachedMountPointJournal journal) {
+        this.nodeId = nodeId;
+        this.file = Preconditions.checkNotNull(file);
+        this.stores = Preconditions.checkNotNull(stores);
+        this.journal = journal;
+    }
+
+    /**
+     * Load the last snapshot, if any, into the stores. Must be called before the stores are used. A snapshot which
+     * cannot be read, or which no longer matches the schema of the mount point, is ignored and the stores are left
+     * empty.
+     *
+     * @return whether data was restored
+     */
+    public synchronized boolean restore() {
+        final CachedMountPointSnapshot snapshot;
+        try {
+            snapshot = CachedMountPointSnapshot.read(file);
+        } catch (IOException e) {
+            LOG.warn("{}: Ignoring unreadable snapshot {}", nodeId, file, e);
+            return false;
+        }
+        if (snapshot == null) {
+            return false;
+        }
+
+        final long start = System.nanoTime();
+        for (Map.Entry<LogicalDatastoreType, NormalizedNode<?, ?>> entry : snapshot.getRoots().entrySet()) {
+            try {
+                stores.apply(entry.getKey(), transaction -> transaction.write(YangInstanceIdentifier.EMPTY,
+                        entry.getValue()));
+            } catch (Exception e) {
+                LOG.warn("{}: Failed to restore the {} store from snapshot {}", nodeId, entry.getKey(), file, e);
+                return false;
+            }
+        }
+        lastRoots.putAll(readRoots());
+        sequence = snapshot.getSequence();
+        LOG.info("{}: Restored snapshot {} in {}ms", nodeId, file,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return true;
+    }
+
+    /**
+     * @return the journal sequence of the last snapshot restored or written
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Start taking a snapshot every {@code intervalSeconds} on the given scheduler.
+     */
+    public synchronized void start(final ScheduledExecutorService scheduler, final long intervalSeconds) {
+        Preconditions.checkState(scheduledSnapshot == null && !closed, "%s: Snapshots already started", nodeId);
+        scheduledSnapshot = scheduler.scheduleWithFixedDelay(this::snapshot, intervalSeconds, intervalSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Write a snapshot if the data changed since the last one.
+     *
+     * @return whether a snapshot was written
+     */
+    public synchronized boolean snapshot() {
+        if (closed) {
+            return false;
+        }
+        final Map<LogicalDatastoreType, NormalizedNode<?, ?>> roots = new EnumMap<>(LogicalDatastoreType.class);
+        // The roots must contain exactly the journal entries up to the returned sequence
+        final long snapshotSequence = journal == null ? sequence : journal.checkpoint(() -> roots.putAll(readRoots()));
+        if (journal == null) {
+            roots.putAll(readRoots());
+        }
+        if (roots.keySet().equals(lastRoots.keySet()) && sameInstances(roots)) {
+            return false;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            CachedMountPointSnapshot.write(file, new CachedMountPointSnapshot(snapshotSequence, roots));
+        } catch (IOException e) {
+            LOG.error("{}: Failed to write snapshot {}", nodeId, file, e);
+            return false;
+        }
+        lastRoots.clear();
+        lastRoots.putAll(roots);
+        sequence = snapshotSequence;
+        if (journal != null) {
+            journal.roll(snapshotSequence);
+        }
+        LOG.debug("{}: Wrote snapshot {} in {}us", nodeId, file,
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        return true;
+    }
+
+    /**
+     * Stop taking snapshots and remove the snapshot file, e.g. when the mount point is deleted.
+     */
+    public synchronized void discard() {
+        cancel();
+        closed = true;
+        try {
+            CachedMountPointSnapshot.delete(file);
+        } catch (IOException e) {
+            LOG.warn("{}: Failed to delete snapshot {}", nodeId, file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        cancel();
+        snapshot();
+        closed = true;
+    }
+
+    private void cancel() {
+        if (scheduledSnapshot != null) {
+            scheduledSnapshot.cancel(false);
+            scheduledSnapshot = null;
+        }
+    }
+
+    private boolean sameInstances(final Map<LogicalDatastoreType, NormalizedNode<?, ?>> roots) {
+        for (Map.Entry<LogicalDatastoreType, NormalizedNode<?, ?>> entry : roots.entrySet()) {
+            if (lastRoots.get(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<LogicalDatastoreType, NormalizedNode<?, ?>> readRoots() {
+        final Map<LogicalDatastoreType, NormalizedNode<?, ?>> roots = new EnumMap<>(LogicalDatastoreType.class);
+        for (Map.Entry<LogicalDatastoreType, CachedDOMStore> entry : stores.getStores().entrySet()) {
+            try (DOMStoreReadTransaction transaction = entry.getValue().newReadOnlyTransaction()) {
+                final Optional<NormalizedNode<?, ?>> root = transaction.read(YangInstanceIdentifier.EMPTY).checkedGet();
+                if (root.isPresent()) {
+                    roots.put(entry.getKey(), root.get());
+                }
+            } catch (ReadFailedException e) {
+                LOG.warn("{}: Failed to read the {} store", nodeId, entry.getKey(), e);
+            }
+        }
+        return roots;
+    }
+}
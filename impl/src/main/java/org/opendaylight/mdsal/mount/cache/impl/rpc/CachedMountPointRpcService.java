@@ -1,17 +1,28 @@
 package org.opendaylight.mdsal.mount.cache.impl.rpc;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.opendaylight.mdsal.mount.cache.impl.CachedSchemaRepository;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.CachedMountPointService;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.LoadModelsInput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.LoadModelsOutput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.LoadModelsOutputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.load.models.output.LoadedFile;
 import org.opendaylight.yangtools.yang.common.RpcResult;
 import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
 import org.slf4j.Logger;
@@ -20,63 +31,121 @@ import org.slf4j.LoggerFactory;
 /**
  * Created by adetalhouet on 2017-02-03.
  */
-public class CachedMountPointRpcService implements CachedMountPointService {
+public class CachedMountPointRpcService implements CachedMountPointService, AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(CachedMountPointRpcService.class);
 
-    @Override
-    public Future<RpcResult<LoadModelsOutput>> loadModels(LoadModelsInput input) {
-        final Path outputFolder = Paths.get(CachedSchemaRepository.DEFAULT_CACHED_MOUNT_POINT_DIRECTORY, input.getSchemaCacheDirectory());
-        if (Files.exists(outputFolder) && !input.isOverwrite()) {
-            LOG.debug("Folder already exist {}. If you want to overwrite files, please specify in the request.", outputFolder.toString());
-            return handleResponse(LoadModelsOutput.Status.ALREADYEXIST);
-        } else if (!Files.exists(outputFolder)) {
-            try {
-                Files.createDirectories(outputFolder);
-            } catch (IOException e) {
-                LOG.error("Failed to create directory={}", outputFolder, e);
-                return handleResponse(e.getMessage());
-            }
-        }
-        final Path models = Paths.get(input.getPath());
-        if (Files.isDirectory(models)) {
-            try {
-                Stream<Path> files = Files.list(models);
-                files.forEach(f -> {
-                    try {
-                        Files.copy(f, outputFolder.resolve(f.getFileName()), StandardCopyOption.REPLACE_EXISTING);
-                    } catch (IOException e) {
-                        LOG.error("Failed to copy file={} to folder={}", f, outputFolder, e);
-                    }
-                });
-            } catch (IOException e) {
-                LOG.error("Failed to list the files in directory={}", models, e);
-                return handleResponse(e.getMessage());
-            }
+    // Loads run one at a time, so that two loads into the same folder do not interleave
+    private final ListeningExecutorService loadExecutor = MoreExecutors.listeningDecorator(
+            Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("CachedMountPointModelLoader-%d").setDaemon(true).build()));
 
-        } else {
-            try {
-                Files.copy(models, outputFolder.resolve(models.getFileName()));
-            } catch (IOException e) {
-                LOG.error("Failed to copy file={} to folder={}", models, outputFolder, e);
-                return handleResponse(e.getMessage());
-            }
+    /**
+     * Load the models asynchronously: they are first copied to a staging folder next to the schema cache directory,
+     * and only moved into it once they are all copied. A new directory is moved at once, the files of an existing
+     * one are replaced one by one, each atomically. The loaded models are then parsed in the background.
+     */
+    @Override
+    public Future<RpcResult<LoadModelsOutput>> loadModels(final LoadModelsInput input) {
+        try {
+            return loadExecutor.submit(() -> load(input));
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Model loader is closed", e);
+            return Futures.immediateFuture(handleError("The service is shutting down", Collections.emptyList()));
         }
-        return handleResponse(LoadModelsOutput.Status.CREATED);
     }
 
-    private Future<RpcResult<LoadModelsOutput>> handleResponse(final LoadModelsOutput.Status status) {
+    private RpcResult<LoadModelsOutput> handleResponse(final LoadModelsOutput.Status status,
+                                                       final List<LoadedFile> files) {
         final LoadModelsOutput res = new LoadModelsOutputBuilder()
                 .setStatus(status)
+                .setLoadedFile(files)
                 .build();
-        return RpcResultBuilder.success(res).buildFuture();
+        return RpcResultBuilder.success(res).build();
     }
 
-    private Future<RpcResult<LoadModelsOutput>> handleResponse(final String message) {
+    private RpcResult<LoadModelsOutput> handleError(final String message, final List<LoadedFile> files) {
         final LoadModelsOutput res = new LoadModelsOutputBuilder()
                 .setStatus(LoadModelsOutput.Status.ERROR)
                 .setErrorMessage(message)
+                .setLoadedFile(files)
                 .build();
-        return RpcResultBuilder.success(res).buildFuture();
+        return RpcResultBuilder.success(res).build();
+    }
+
+    private RpcResult<LoadModelsOutput> load(final LoadModelsInput input) {
+        final Path outputFolder = Paths.get(CachedSchemaRepository.DEFAULT_CACHED_MOUNT_POINT_DIRECTORY, input.getSchemaCacheDirectory());
+        final boolean exists = Files.exists(outputFolder);
+        if (exists && !Boolean.TRUE.equals(input.isOverwrite())) {
+            LOG.debug("Folder already exist {}. If you want to overwrite files, please specify in the request.", outputFolder.toString());
+            return handleResponse(LoadModelsOutput.Status.ALREADYEXIST, Collections.emptyList());
+        }
+
+        final Path staging;
+        try {
+            final Path parent = outputFolder.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            // On the same file system as the output folder, so that the files can be moved atomically
+            staging = Files.createTempDirectory(parent, "." + outputFolder.getFileName() + ".loading-");
+        } catch (IOException e) {
+            LOG.error("Failed to create a staging directory for {}", outputFolder, e);
+            return handleError(e.getMessage(), Collections.emptyList());
+        }
+
+        final ModelStager stager = new ModelStager(staging);
+        try {
+            stager.stage(Paths.get(input.getPath()));
+            final long failures = stager.getFailureCount();
+            if (failures > 0) {
+                LOG.error("Failed to load {} models into {}, none was loaded", failures, outputFolder);
+                return handleError(failures + " models failed to load, none was loaded", stager.getFiles());
+            }
+
+            final List<Path> loaded = stager.getLoadedNames().stream().map(outputFolder::resolve)
+                    .collect(Collectors.toList());
+            if (exists) {
+                for (String name : stager.getLoadedNames()) {
+                    Files.move(staging.resolve(name), outputFolder.resolve(name), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else {
+                Files.move(staging, outputFolder, StandardCopyOption.ATOMIC_MOVE);
+            }
+            LOG.info("Loaded {} models into {}", loaded.size(), outputFolder);
+
+            CachedSchemaRepository.warmUp(loaded);
+            return handleResponse(LoadModelsOutput.Status.CREATED, stager.getFiles());
+        } catch (IOException e) {
+            LOG.error("Failed to load models from {} into {}", input.getPath(), outputFolder, e);
+            return handleError(e.getMessage(), stager.getFiles());
+        } finally {
+            deleteRecursively(staging);
+        }
+    }
+
+    private static void deleteRecursively(final Path directory) {
+        if (!Files.exists(directory)) {
+            // Moved into place
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    LOG.warn("Failed to delete {}", path, e);
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Failed to delete staging directory {}", directory, e);
+        }
+    }
+
+    /**
+     * Invoke by blueprint
+     */
+    @Override
+    public void close() {
+        loadExecutor.shutdownNow();
     }
 }
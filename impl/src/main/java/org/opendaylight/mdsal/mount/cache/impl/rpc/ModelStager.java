@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.rpc;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.load.models.output.LoadedFile;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.load.models.output.LoadedFileBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies models into a staging directory, flattened, and records the result of each of them. Files are copied with
+ * {@link FileChannel#transferTo}, archive entries are streamed straight to their file.
+ */
+final class ModelStager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ModelStager.class);
+
+    private static final String YANG_EXTENSION = ".yang";
+    private static final long TRANSFER_CHUNK = 1 << 20;
+
+    private final Path staging;
+    private final Map<String, LoadedFile> files = new LinkedHashMap<>();
+
+    ModelStager(final Path staging) {
+        this.staging = staging;
+    }
+
+    /**
+     * Stage the models of a folder, an archive or a single model file.
+     *
+     * @throws IOException if the models cannot be listed or the archive cannot be read
+     */
+    void stage(final Path models) throws IOException {
+        final String name = models.getFileName().toString().toLowerCase();
+        if (Files.isDirectory(models)) {
+            final List<Path> sources;
+            try (Stream<Path> walk = Files.walk(models)) {
+                sources = walk.filter(f -> Files.isRegularFile(f) && f.toString().endsWith(YANG_EXTENSION))
+                        .collect(Collectors.toList());
+            }
+            sources.forEach(this::stageFile);
+        } else if (name.endsWith(".zip") || name.endsWith(".jar")) {
+            try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(models)))) {
+                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    if (!entry.isDirectory()) {
+                        stageEntry(entry.getName(), zip);
+                    }
+                }
+            }
+        } else if (name.endsWith(".tar")) {
+            try (InputStream tar = new BufferedInputStream(Files.newInputStream(models))) {
+                TarArchiveReader.read(tar, this::stageEntry);
+            }
+        } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            try (InputStream tar = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(models)))) {
+                TarArchiveReader.read(tar, this::stageEntry);
+            }
+        } else {
+            // A single model is loaded whatever its name
+            stageFile(models);
+        }
+    }
+
+    private void stageFile(final Path source) {
+        final String name = source.getFileName().toString();
+        if (!reserve(name)) {
+            return;
+        }
+        final Path target = staging.resolve(name);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            final long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            // The copy does not go through user space, hash the copy, it is still in the page cache
+            loaded(name, size, com.google.common.io.Files.asByteSource(target.toFile()).hash(Hashing.sha256()));
+        } catch (IOException e) {
+            failed(name, source, e);
+        }
+    }
+
+    private void stageEntry(final String entryName, final InputStream content) {
+        final String name = entryName.substring(entryName.lastIndexOf('/') + 1);
+        if (!name.endsWith(YANG_EXTENSION) || !reserve(name)) {
+            return;
+        }
+        final HashingInputStream hashing = new HashingInputStream(Hashing.sha256(), content);
+        // Not closed, the archive stream is still in use
+        final ReadableByteChannel channel = Channels.newChannel(hashing);
+        try (FileChannel out = FileChannel.open(staging.resolve(name), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            long size = 0;
+            long transferred;
+            while ((transferred = out.transferFrom(channel, size, TRANSFER_CHUNK)) > 0) {
+                size += transferred;
+            }
+            loaded(name, size, hashing.hash());
+        } catch (IOException e) {
+            failed(name, entryName, e);
+        }
+    }
+
+    /**
+     * @return whether no other model with the same name was staged, otherwise the model is reported as failed
+     */
+    private boolean reserve(final String name) {
+        if (files.containsKey(name)) {
+            files.put(name, new LoadedFileBuilder().setName(name).setResult(LoadedFile.Result.FAILED)
+                    .setErrorMessage("Several models are named " + name).build());
+            return false;
+        }
+        return true;
+    }
+
+    private void loaded(final String name, final long size, final HashCode sha256) {
+        files.put(name, new LoadedFileBuilder().setName(name).setResult(LoadedFile.Result.LOADED)
+                .setSize(BigInteger.valueOf(size)).setSha256(sha256.toString()).build());
+    }
+
+    private void failed(final String name, final Object source, final IOException cause) {
+        LOG.error("Failed to copy model {} to {}", source, staging, cause);
+        files.put(name, new LoadedFileBuilder().setName(name).setResult(LoadedFile.Result.FAILED)
+                .setErrorMessage(cause.getMessage()).build());
+    }
+
+    List<LoadedFile> getFiles() {
+        return new ArrayList<>(files.values());
+    }
+
+    long getFailureCount() {
+        return files.values().stream().filter(file -> file.getResult() != LoadedFile.Result.LOADED).count();
+    }
+
+    /**
+     * @return the names of the staged files
+     */
+    Collection<String> getLoadedNames() {
+        return files.values().stream().filter(file -> file.getResult() == LoadedFile.Result.LOADED)
+                .map(LoadedFile::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.rpc;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal streaming reader of ustar and GNU tar archives: regular files are handed over one after the other, without
+ * buffering their content. GNU long names are supported, other extended headers are skipped.
+ */
+final class TarArchiveReader {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final byte TYPE_FILE = '0';
+    private static final byte TYPE_OLD_FILE = 0;
+    private static final byte TYPE_GNU_LONG_NAME = 'L';
+
+    interface EntryHandler {
+        /**
+         * @param content the content of the entry, only valid during the call and not to be closed
+         */
+        void accept(String name, InputStream content) throws IOException;
+    }
+
+    private TarArchiveReader() {
+        throw new AssertionError("Utility class");
+    }
+
+    static void read(final InputStream archive, final EntryHandler handler) throws IOException {
+        final byte[] header = new byte[BLOCK_SIZE];
+        String longName = null;
+        while (readHeader(archive, header)) {
+            final String name = longName != null ? longName : name(header);
+            longName = null;
+            final long size = parseOctal(header, 124, 12);
+            final byte type = header[156];
+
+            final CountingInputStream content = new CountingInputStream(ByteStreams.limit(archive, size));
+            if (type == TYPE_GNU_LONG_NAME) {
+                longName = trimNul(new String(ByteStreams.toByteArray(content), StandardCharsets.UTF_8));
+            } else if (type == TYPE_FILE || type == TYPE_OLD_FILE) {
+                handler.accept(name, content);
+            }
+            // Skip whatever the handler did not read, and the padding of the last block
+            ByteStreams.skipFully(archive, size - content.getCount() + (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * @return whether a header was read, {@code false} at the end of the archive
+     */
+    private static boolean readHeader(final InputStream archive, final byte[] header) throws IOException {
+        final int read = ByteStreams.read(archive, header, 0, BLOCK_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK_SIZE) {
+            throw new EOFException("Truncated tar header");
+        }
+        for (byte b : header) {
+            if (b != 0) {
+                return true;
+            }
+        }
+        // An empty block marks the end of the archive
+        return false;
+    }
+
+    private static String name(final byte[] header) {
+        final String name = field(header, 0, 100);
+        // ustar splits long paths between the name and the prefix fields
+        if ("ustar".equals(field(header, 257, 6).trim())) {
+            final String prefix = field(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + '/' + name;
+            }
+        }
+        return name;
+    }
+
+    private static String field(final byte[] header, final int offset, final int length) {
+        return trimNul(new String(header, offset, length, StandardCharsets.UTF_8));
+    }
+
+    private static String trimNul(final String value) {
+        final int end = value.indexOf(0);
+        return end < 0 ? value : value.substring(0, end);
+    }
+
+    private static long parseOctal(final byte[] header, final int offset, final int length) throws IOException {
+        final String value = field(header, offset, length).trim();
+        if (value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid tar header field " + value, e);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.opendaylight.controller.md.sal.common.util.jmx.AbstractMXBean;
+
+/**
+ * {@link CachedMountPointStatsMXBean} implementation, one per cached mount point. The recording methods are called
+ * on the transaction paths: they only update {@link LongAdder}s and {@link LatencyHistogram}s, and never allocate.
+ */
+public class CachedMountPointStats extends AbstractMXBean implements CachedMountPointStatsMXBean {
+
+    private static final String JMX_TYPE = "Transactions";
+    private static final String JMX_CATEGORY = "CachedMountPoint";
+
+    /**
+     * Three-phase commit phases, to report failures.
+     */
+    public enum Phase {
+        CAN_COMMIT,
+        PRE_COMMIT,
+        COMMIT
+    }
+
+    private final LongAdder readOnlyTransactions = new LongAdder();
+    private final LongAdder writeTransactions = new LongAdder();
+    private final LongAdder readWriteTransactions = new LongAdder();
+    private final LongAdder submittedTransactions = new LongAdder();
+    private final LongAdder canCommitFailures = new LongAdder();
+    private final LongAdder preCommitFailures = new LongAdder();
+    private final LongAdder commitFailures = new LongAdder();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+
+    private final LongAdder readFailures = new LongAdder();
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+
+    private final LongAdder listeners = new LongAdder();
+    private final LatencyHistogram listenerLatency = new LatencyHistogram();
+    private volatile LongSupplier listenerBacklog = () -> 0;
+
+    private final long startNanos = System.nanoTime();
+
+    public CachedMountPointStats(final String nodeId) {
+        this(nodeId, JMX_TYPE);
+    }
+
+    /**
+     * @param jmxType type of the bean, to register the statistics of internal transactions apart from the ones of the
+     *                mount point
+     */
+    public CachedMountPointStats(final String nodeId, final String jmxType) {
+        super(nodeId, jmxType, JMX_CATEGORY);
+    }
+
+    /**
+     * @param listenerBacklog provides the number of notifications waiting to be delivered to listeners, by the data
+     *                        stores the mount point currently uses
+     */
+    public void setListenerBacklog(final LongSupplier listenerBacklog) {
+        this.listenerBacklog = listenerBacklog;
+    }
+
+    public void readOnlyTransactionCreated() {
+        readOnlyTransactions.increment();
+    }
+
+    public void writeTransactionCreated() {
+        writeTransactions.increment();
+    }
+
+    public void readWriteTransactionCreated() {
+        readWriteTransactions.increment();
+    }
+
+    public void transactionSubmitted() {
+        submittedTransactions.increment();
+    }
+
+    public void transactionCommitted(final long latencyNanos) {
+        commitLatency.record(latencyNanos);
+    }
+
+    public void transactionFailed(final Phase phase) {
+        switch (phase) {
+            case CAN_COMMIT:
+                canCommitFailures.increment();
+                break;
+            case PRE_COMMIT:
+                preCommitFailures.increment();
+                break;
+            case COMMIT:
+                commitFailures.increment();
+                break;
+        }
+    }
+
+    public void readCompleted(final long latencyNanos) {
+        readLatency.record(latencyNanos);
+    }
+
+    public void readFailed() {
+        readFailures.increment();
+    }
+
+    public void listenerRegistered() {
+        listeners.increment();
+    }
+
+    public void listenerUnregistered() {
+        listeners.decrement();
+    }
+
+    public void listenerNotified(final long latencyNanos) {
+        listenerLatency.record(latencyNanos);
+    }
+
+    @Override
+    public long getReadOnlyTransactionCount() {
+        return readOnlyTransactions.sum();
+    }
+
+    @Override
+    public long getWriteTransactionCount() {
+        return writeTransactions.sum();
+    }
+
+    @Override
+    public long getReadWriteTransactionCount() {
+        return readWriteTransactions.sum();
+    }
+
+    @Override
+    public long getSubmittedTransactionCount() {
+        return submittedTransactions.sum();
+    }
+
+    @Override
+    public long getCommittedTransactionCount() {
+        return commitLatency.getCount();
+    }
+
+    @Override
+    public long getCanCommitFailureCount() {
+        return canCommitFailures.sum();
+    }
+
+    @Override
+    public long getPreCommitFailureCount() {
+        return preCommitFailures.sum();
+    }
+
+    @Override
+    public long getCommitFailureCount() {
+        return commitFailures.sum();
+    }
+
+    @Override
+    public double getCommittedTransactionsPerSecond() {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        return elapsedNanos == 0 ? 0 : commitLatency.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public long getAverageCommitLatencyMicros() {
+        return commitLatency.getAverageMicros();
+    }
+
+    @Override
+    public long getCommitLatency99thPercentileMicros() {
+        return commitLatency.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getMaxCommitLatencyMicros() {
+        return commitLatency.getMaxMicros();
+    }
+
+    @Override
+    public long getReadCount() {
+        return readLatency.getCount();
+    }
+
+    @Override
+    public long getReadFailureCount() {
+        return readFailures.sum();
+    }
+
+    @Override
+    public long getAverageReadLatencyMicros() {
+        return readLatency.getAverageMicros();
+    }
+
+    @Override
+    public long getReadLatency99thPercentileMicros() {
+        return readLatency.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getMaxReadLatencyMicros() {
+        return readLatency.getMaxMicros();
+    }
+
+    @Override
+    public long getListenerCount() {
+        return listeners.sum();
+    }
+
+    @Override
+    public long getListenerNotificationCount() {
+        return listenerLatency.getCount();
+    }
+
+    @Override
+    public long getListenerBacklog() {
+        return listenerBacklog.getAsLong();
+    }
+
+    @Override
+    public long getAverageListenerLatencyMicros() {
+        return listenerLatency.getAverageMicros();
+    }
+
+    @Override
+    public long getMaxListenerLatencyMicros() {
+        return listenerLatency.getMaxMicros();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.stats;
+
+/**
+ * Transactions, reads and listeners of a cached mount point.
+ */
+public interface CachedMountPointStatsMXBean {
+
+    long getReadOnlyTransactionCount();
+
+    long getWriteTransactionCount();
+
+    long getReadWriteTransactionCount();
+
+    long getSubmittedTransactionCount();
+
+    long getCommittedTransactionCount();
+
+    long getCanCommitFailureCount();
+
+    long getPreCommitFailureCount();
+
+    long getCommitFailureCount();
+
+    double getCommittedTransactionsPerSecond();
+
+    long getAverageCommitLatencyMicros();
+
+    long getCommitLatency99thPercentileMicros();
+
+    long getMaxCommitLatencyMicros();
+
+    long getReadCount();
+
+    long getReadFailureCount();
+
+    long getAverageReadLatencyMicros();
+
+    long getReadLatency99thPercentileMicros();
+
+    long getMaxReadLatencyMicros();
+
+    long getListenerCount();
+
+    long getListenerNotificationCount();
+
+    long getListenerBacklog();
+
+    long getAverageListenerLatencyMicros();
+
+    long getMaxListenerLatencyMicros();
+}
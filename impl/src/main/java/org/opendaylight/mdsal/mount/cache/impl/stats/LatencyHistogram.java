@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two buckets: bucket {@code i} counts the samples in
+ * {@code [2^(i-1), 2^i)} nanoseconds. Recording a sample does not allocate, percentiles are resolved to the upper
+ * bound of their bucket, i.e. within a factor of two.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(final long nanos) {
+        final long sample = Math.max(nanos, 0);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(sample));
+        count.increment();
+        totalNanos.add(sample);
+        // Only contended until the maximum settles
+        long max = maxNanos.get();
+        while (sample > max && !maxNanos.compareAndSet(max, sample)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getAverageMicros() {
+        final long samples = count.sum();
+        return samples == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / samples);
+    }
+
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the given percentile, in microseconds
+     */
+    public long getPercentileMicros(final double percentile) {
+        final long[] snapshot = new long[BUCKETS];
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            samples += snapshot[i];
+        }
+        if (samples == 0) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(samples * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                final long upperBoundNanos = i >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << i;
+                return Math.min(TimeUnit.NANOSECONDS.toMicros(upperBoundNanos), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+}
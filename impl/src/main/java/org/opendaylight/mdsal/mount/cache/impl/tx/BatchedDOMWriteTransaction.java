@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.tx;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import org.opendaylight.controller.md.sal.common.api.TransactionStatus;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataWriteTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write transaction used when group commit is enabled: the modifications are only recorded, and handed over
+ * on submit to the {@link CachedDOMWriteBatcher}, which applies them together with the other transactions
+ * of its batch. The transaction is accounted for in the statistics of the mount point, its batch is not.
+ */
+public class BatchedDOMWriteTransaction implements DOMDataWriteTransaction {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchedDOMWriteTransaction.class);
+
+    private final String nodeId;
+    private final CachedDOMWriteBatcher batcher;
+    private final CachedMountPointStats stats;
+    private final List<CachedDOMModification> modifications = new ArrayList<>();
+    private boolean finished;
+
+    public BatchedDOMWriteTransaction(final String nodeId, final CachedDOMWriteBatcher batcher,
+                                      final CachedMountPointStats stats) {
+        this.nodeId = nodeId;
+        this.batcher = Preconditions.checkNotNull(batcher);
+        this.stats = Preconditions.checkNotNull(stats);
+    }
+
+    @Override
+    public boolean cancel() {
+        if (finished) {
+            return false;
+        }
+        finished = true;
+        modifications.clear();
+        return true;
+    }
+
+    @Override
+    public CheckedFuture<Void, TransactionCommitFailedException> submit() {
+        checkNotFinished();
+        finished = true;
+        stats.transactionSubmitted();
+        LOG.debug("{}: Tx: {} is submitted for group commit with {} modifications.", nodeId, getIdentifier(),
+                modifications.size());
+        return batcher.submit(modifications);
+    }
+
+    @Override
+    @Deprecated
+    public ListenableFuture<RpcResult<TransactionStatus>> commit() {
+        throw new RuntimeException("Deprecated");
+    }
+
+    @Override
+    public void delete(LogicalDatastoreType store, YangInstanceIdentifier path) {
+        LOG.debug("{}: Delete store={} for path={}", nodeId, store, path);
+        checkNotFinished();
+        modifications.add(CachedDOMModification.delete(store, path));
+    }
+
+    @Override
+    public void put(LogicalDatastoreType store, YangInstanceIdentifier path, NormalizedNode<?, ?> data) {
+        LOG.debug("{}: Put data={} in store={} for path={}", nodeId, data, store, path);
+        checkNotFinished();
+        modifications.add(CachedDOMModification.put(store, path, data));
+    }
+
+    @Override
+    public void merge(LogicalDatastoreType store, YangInstanceIdentifier path, NormalizedNode<?, ?> data) {
+        LOG.debug("{}: Merge data={} in store={} for path={}", nodeId, data, store, path);
+        checkNotFinished();
+        modifications.add(CachedDOMModification.merge(store, path, data));
+    }
+
+    @Override
+    public Object getIdentifier() {
+        return this;
+    }
+
+    private void checkNotFinished() {
+        Preconditions.checkState(!finished, "%s: Transaction %s was already submitted or cancelled", nodeId,
+                getIdentifier());
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.tx;
+
+import java.util.concurrent.Executor;
+
+/**
+ * An executor of commit callbacks which rejects them once full. While it is full, the transactions fail on submission
+ * without being committed, rather than being committed with callbacks that cannot run.
+ */
+public interface CachedDOMCallbackExecutor extends Executor {
+
+    /**
+     * @return whether a callback executed now would be rejected
+     */
+    boolean isFull();
+
+    /**
+     * @return whether {@code executor} is a {@link CachedDOMCallbackExecutor} which is full
+     */
+    static boolean isFull(final Executor executor) {
+        return executor instanceof CachedDOMCallbackExecutor && ((CachedDOMCallbackExecutor) executor).isFull();
+    }
+}
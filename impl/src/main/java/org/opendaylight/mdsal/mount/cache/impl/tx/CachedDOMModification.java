@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.tx;
+
+import com.google.common.base.Preconditions;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreWriteTransaction;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+
+/**
+ * A single put, merge or delete recorded by a transaction, so it can be replayed later on another transaction.
+ */
+public final class CachedDOMModification {
+
+    public enum Type {
+        PUT,
+        MERGE,
+        DELETE
+    }
+
+    private final Type type;
+    private final LogicalDatastoreType store;
+    private final YangInstanceIdentifier path;
+    private final NormalizedNode<?, ?> data;
+
+    private CachedDOMModification(final Type type, final LogicalDatastoreType store,
+                                  final YangInstanceIdentifier path, final NormalizedNode<?, ?> data) {
+        this.type = type;
+        this.store = Preconditions.checkNotNull(store);
+        this.path = Preconditions.checkNotNull(path);
+        this.data = data;
+    }
+
+    public static CachedDOMModification put(final LogicalDatastoreType store, final YangInstanceIdentifier path,
+                                            final NormalizedNode<?, ?> data) {
+        return new CachedDOMModification(Type.PUT, store, path, Preconditions.checkNotNull(data));
+    }
+
+    public static CachedDOMModification merge(final LogicalDatastoreType store, final YangInstanceIdentifier path,
+                                              final NormalizedNode<?, ?> data) {
+        return new CachedDOMModification(Type.MERGE, store, path, Preconditions.checkNotNull(data));
+    }
+
+    public static CachedDOMModification delete(final LogicalDatastoreType store, final YangInstanceIdentifier path) {
+        return new CachedDOMModification(Type.DELETE, store, path, null);
+    }
+
+    /**
+     * @param transaction a transaction of the {@link #getStore() store} of the modification
+     * @throws IllegalArgumentException if the store rejects the modification, e.g. as invalid for its schema
+     */
+    public void applyTo(final DOMStoreWriteTransaction transaction) {
+        switch (type) {
+            case PUT:
+                transaction.write(path, data);
+                break;
+            case MERGE:
+                transaction.merge(path, data);
+                break;
+            case DELETE:
+                transaction.delete(path);
+                break;
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public LogicalDatastoreType getStore() {
+        return store;
+    }
+
+    public YangInstanceIdentifier getPath() {
+        return path;
+    }
+
+    public NormalizedNode<?, ?> getData() {
+        return data;
+    }
+}
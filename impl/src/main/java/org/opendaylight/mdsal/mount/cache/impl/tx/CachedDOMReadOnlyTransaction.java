@@ -13,11 +13,14 @@ import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.CheckedFuture;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import java.util.EnumMap;
+import java.util.Map;
 import javax.annotation.Nullable;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
 import org.opendaylight.controller.md.sal.dom.api.DOMDataReadOnlyTransaction;
 import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
 import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
 import org.slf4j.Logger;
@@ -31,19 +34,33 @@ public class CachedDOMReadOnlyTransaction implements DOMDataReadOnlyTransaction
     private static final Logger LOG = LoggerFactory.getLogger(CachedDOMReadOnlyTransaction.class);
 
     private final String nodeId;
-    private final DOMStoreReadTransaction readTransaction;
-
+    private final java.util.function.Function<LogicalDatastoreType, ? extends DOMStoreReadTransaction> transactionFactory;
+    private final Map<LogicalDatastoreType, DOMStoreReadTransaction> readTransactions =
+            new EnumMap<>(LogicalDatastoreType.class);
+    private final CachedMountPointStats stats;
+
+    /**
+     * @param transactionFactory provides the store transaction backing each {@link LogicalDatastoreType}, it is
+     *                           invoked the first time the type is read from
+     * @param stats              statistics of the mount point
+     */
     public CachedDOMReadOnlyTransaction(final String nodeId,
-                                        final DOMStoreReadTransaction readTransaction) {
+                                        final java.util.function.Function<LogicalDatastoreType,
+                                                ? extends DOMStoreReadTransaction> transactionFactory,
+                                        final CachedMountPointStats stats) {
         this.nodeId = nodeId;
-        this.readTransaction = Preconditions.checkNotNull(readTransaction);
+        this.transactionFactory = Preconditions.checkNotNull(transactionFactory);
+        this.stats = Preconditions.checkNotNull(stats);
+    }
+
+    private synchronized DOMStoreReadTransaction getReadTransaction(final LogicalDatastoreType store) {
+        return readTransactions.computeIfAbsent(store, transactionFactory);
     }
 
     @Override
-    public void close() {
-        if (readTransaction != null) {
-            readTransaction.close();
-        }
+    public synchronized void close() {
+        readTransactions.values().forEach(DOMStoreReadTransaction::close);
+        readTransactions.clear();
     }
 
     @Override
@@ -51,12 +68,16 @@ public class CachedDOMReadOnlyTransaction implements DOMDataReadOnlyTransaction
 
         LOG.debug("{}: Read store={} path={}", nodeId, store, path);
 
+        final long start = System.nanoTime();
         try {
-            Preconditions.checkState(readTransaction != null, "%s: DOMStoreReadTransaction is null" + nodeId);
-
-            return readTransaction.read(path);
+            // The in-memory stores complete reads synchronously, timing the call is enough
+            final CheckedFuture<Optional<NormalizedNode<?, ?>>, ReadFailedException> future =
+                    getReadTransaction(store).read(path);
+            stats.readCompleted(System.nanoTime() - start);
+            return future;
 
         } catch (Exception e) {
+            stats.readFailed();
             LOG.error("{}: Failed to read store={} for path={}", nodeId, store, path);
 
             return null;
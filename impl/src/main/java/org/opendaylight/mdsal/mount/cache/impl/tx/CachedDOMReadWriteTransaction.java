@@ -41,8 +41,8 @@ public class CachedDOMReadWriteTransaction implements DOMDataReadWriteTransactio
 
     @Override
     public boolean cancel() {
-        // TODO
-        return false;
+        readTransaction.close();
+        return writeTransaction.cancel();
     }
 
     @Override
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.tx;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionChainListener;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataReadWriteTransaction;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataWriteTransaction;
+import org.opendaylight.controller.md.sal.dom.api.DOMTransactionChain;
+import org.opendaylight.controller.sal.core.spi.data.DOMStore;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadWriteTransaction;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreTransactionChain;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreWriteTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link DOMTransactionChain} backed by transaction chains of the mount point's data stores, opened on first use
+ * of each {@link LogicalDatastoreType}. A transaction
+ * can be allocated as soon as the previous one is submitted: the store bases it on the previous transaction's
+ * state, so back-to-back commits are pipelined instead of waiting for each other.
+ */
+public class CachedDOMTransactionChain implements DOMTransactionChain {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedDOMTransactionChain.class);
+
+    private final String nodeId;
+    private final Function<LogicalDatastoreType, ? extends DOMStore> stores;
+    private final Map<LogicalDatastoreType, DOMStoreTransactionChain> storeTransactionChains =
+            new EnumMap<>(LogicalDatastoreType.class);
+    private final TransactionChainListener listener;
+    private final Executor clientFutureCallbackExecutor;
+    private final CachedDOMTransactionJournal journal;
+    private final CachedMountPointStats stats;
+
+    private final AtomicLong pendingTransactions = new AtomicLong();
+    private final AtomicBoolean failed = new AtomicBoolean(false);
+    private final AtomicBoolean successNotified = new AtomicBoolean(false);
+    private volatile boolean closed;
+
+    public CachedDOMTransactionChain(final String nodeId,
+                                     final Function<LogicalDatastoreType, ? extends DOMStore> stores,
+                                     final TransactionChainListener listener,
+                                     final Executor clientFutureCallbackExecutor,
+                                     @Nullable final CachedDOMTransactionJournal journal,
+                                     final CachedMountPointStats stats) {
+        this.nodeId = nodeId;
+        this.stores = Preconditions.checkNotNull(stores);
+        this.listener = Preconditions.checkNotNull(listener);
+        this.clientFutureCallbackExecutor = clientFutureCallbackExecutor;
+        this.journal = journal;
+        this.stats = Preconditions.checkNotNull(stats);
+    }
+
+    @Override
+    public DOMDataReadOnlyTransaction newReadOnlyTransaction() {
+        checkUsable();
+        stats.readOnlyTransactionCreated();
+        return new CachedDOMReadOnlyTransaction(nodeId, store -> getChain(store).newReadOnlyTransaction(), stats);
+    }
+
+    @Override
+    public DOMDataReadWriteTransaction newReadWriteTransaction() {
+        checkUsable();
+        // A chain allows a single open transaction, so both sides share the store read-write transactions
+        final Map<LogicalDatastoreType, DOMStoreReadWriteTransaction> transactions =
+                new EnumMap<>(LogicalDatastoreType.class);
+        final Function<LogicalDatastoreType, DOMStoreReadWriteTransaction> factory = store -> {
+            synchronized (transactions) {
+                return transactions.computeIfAbsent(store, type -> getChain(type).newReadWriteTransaction());
+            }
+        };
+        stats.readWriteTransactionCreated();
+        return new CachedDOMReadWriteTransaction(new CachedDOMReadOnlyTransaction(nodeId, factory, stats),
+                new ChainedWriteTransaction(factory));
+    }
+
+    @Override
+    public DOMDataWriteTransaction newWriteOnlyTransaction() {
+        checkUsable();
+        stats.writeTransactionCreated();
+        return new ChainedWriteTransaction(store -> getChain(store).newWriteOnlyTransaction());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (storeTransactionChains) {
+            storeTransactionChains.values().forEach(DOMStoreTransactionChain::close);
+        }
+        LOG.debug("{}: Transaction chain closed with {} pending transactions", nodeId, pendingTransactions.get());
+        notifySuccessIfDone();
+    }
+
+    private DOMStoreTransactionChain getChain(final LogicalDatastoreType store) {
+        synchronized (storeTransactionChains) {
+            checkUsable();
+            return storeTransactionChains.computeIfAbsent(store,
+                    type -> stores.apply(type).createTransactionChain());
+        }
+    }
+
+    private void checkUsable() {
+        Preconditions.checkState(!closed, "%s: Transaction chain is closed", nodeId);
+        Preconditions.checkState(!failed.get(), "%s: Transaction chain has failed", nodeId);
+    }
+
+    private void transactionCompleted() {
+        pendingTransactions.decrementAndGet();
+        notifySuccessIfDone();
+    }
+
+    private void transactionFailed(final DOMDataWriteTransaction transaction, final Throwable cause) {
+        pendingTransactions.decrementAndGet();
+        failChain(transaction, cause);
+    }
+
+    private void failChain(final DOMDataWriteTransaction transaction, final Throwable cause) {
+        if (failed.compareAndSet(false, true)) {
+            LOG.warn("{}: Transaction {} failed, failing the chain", nodeId, transaction.getIdentifier(), cause);
+            listener.onTransactionChainFailed(this, transaction, cause);
+        }
+    }
+
+    private void notifySuccessIfDone() {
+        if (closed && !failed.get() && pendingTransactions.get() == 0 && successNotified.compareAndSet(false, true)) {
+            listener.onTransactionChainSuccessful(this);
+        }
+    }
+
+    private final class ChainedWriteTransaction extends CachedDOMWriteTransaction {
+
+        ChainedWriteTransaction(final Function<LogicalDatastoreType, ? extends DOMStoreWriteTransaction> factory) {
+            super(nodeId, factory, clientFutureCallbackExecutor, journal, stats);
+        }
+
+        @Override
+        public CheckedFuture<Void, TransactionCommitFailedException> submit() {
+            final CheckedFuture<Void, TransactionCommitFailedException> future;
+            try {
+                future = super.submit();
+            } catch (RuntimeException e) {
+                // Never pending, but the chain cannot carry on from a transaction which failed to submit
+                failChain(this, e);
+                throw e;
+            }
+            // Pending until the callback below, which runs at once if the future is already done
+            pendingTransactions.incrementAndGet();
+            Futures.addCallback(future, new FutureCallback<Void>() {
+                @Override
+                public void onSuccess(final Void result) {
+                    transactionCompleted();
+                }
+
+                @Override
+                public void onFailure(final Throwable throwable) {
+                    transactionFailed(ChainedWriteTransaction.this, throwable);
+                }
+            }, MoreExecutors.directExecutor());
+            return future;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.tx;
+
+import java.util.List;
+
+/**
+ * Records the modifications of the transactions committed to a cached mount point, see
+ * {@link CachedDOMWriteTransaction}.
+ */
+public interface CachedDOMTransactionJournal {
+
+    /**
+     * Run {@code commit}, which makes the modifications visible in the data stores, and record the modifications.
+     * The transactions touching the same data must be journaled in their commit order; commits to other data may run
+     * concurrently. Implementations must not block on I/O: this is invoked on the commit path.
+     *
+     * @param commit        commits the transaction to the data stores
+     * @param modifications the modifications of the transaction, in the order they were made
+     * @throws IllegalStateException if the journal is closed or failed, the transaction is then not committed
+     */
+    void commit(Runnable commit, List<CachedDOMModification> modifications);
+}
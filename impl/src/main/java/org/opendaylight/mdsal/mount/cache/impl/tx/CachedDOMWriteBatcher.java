@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.tx;
+
+import static org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats.Phase.CAN_COMMIT;
+import static org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats.Phase.COMMIT;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.controller.md.sal.dom.broker.impl.TransactionCommitFailedExceptionMapper;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreTransactionFactory;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats.Phase;
+import org.opendaylight.yangtools.util.concurrent.MappingCheckedFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Group commit for a cached mount point: the transactions submitted within a time window, or until the batch
+ * is full, are applied to a single transaction per data store and go through a single canCommit/preCommit/commit
+ * cycle.
+ * Each client future is completed individually once the batch commits. A transaction with a modification the data
+ * store rejects is failed and left out of the batch. If the batch fails, its transactions are committed one by one so
+ * that only the faulty ones are failed.
+ * The statistics of the mount point count the client transactions, each one once its future completes, with its
+ * latency from its submission. The batch transactions are counted apart, under the {@code GroupCommitBatches} JMX
+ * type.
+ */
+public class CachedDOMWriteBatcher implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachedDOMWriteBatcher.class);
+    private static final String BATCH_JMX_TYPE = "GroupCommitBatches";
+
+    private final String nodeId;
+    private final Function<LogicalDatastoreType, ? extends DOMStoreTransactionFactory> stores;
+    private final Executor clientFutureCallbackExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final CachedDOMTransactionJournal journal;
+    private final CachedMountPointStats mountPointStats;
+
+    private final Queue<PendingTransaction> pendingTransactions = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Object flushLock = new Object();
+    private final GroupCommitStats stats;
+    private final CachedMountPointStats batchStats;
+
+    public CachedDOMWriteBatcher(final String nodeId,
+                                 final Function<LogicalDatastoreType, ? extends DOMStoreTransactionFactory> stores,
+                                 final Executor clientFutureCallbackExecutor,
+                                 final ScheduledExecutorService scheduler,
+                                 final long windowMicros,
+                                 final int maxBatchSize,
+                                 @Nullable final CachedDOMTransactionJournal journal,
+                                 final CachedMountPointStats mountPointStats) {
+        Preconditions.checkArgument(maxBatchSize > 0, "%s: Batch size must be positive", nodeId);
+        this.nodeId = nodeId;
+        this.stores = Preconditions.checkNotNull(stores);
+        this.clientFutureCallbackExecutor = Preconditions.checkNotNull(clientFutureCallbackExecutor);
+        this.scheduler = Preconditions.checkNotNull(scheduler);
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = maxBatchSize;
+        this.journal = journal;
+        this.mountPointStats = Preconditions.checkNotNull(mountPointStats);
+        this.stats = new GroupCommitStats(nodeId, pendingCount::get);
+        this.stats.registerMBean();
+        this.batchStats = new CachedMountPointStats(nodeId, BATCH_JMX_TYPE);
+        this.batchStats.registerMBean();
+        LOG.info("{}: Group commit enabled, window={}us max-batch-size={}", nodeId, windowMicros, maxBatchSize);
+    }
+
+    CheckedFuture<Void, TransactionCommitFailedException> submit(final List<CachedDOMModification> modifications) {
+        if (CachedDOMCallbackExecutor.isFull(clientFutureCallbackExecutor)) {
+            mountPointStats.transactionFailed(CAN_COMMIT);
+            return Futures.immediateFailedCheckedFuture(new TransactionCommitFailedException(
+                    nodeId + ": Commit callback executor is full, transaction rejected"));
+        }
+        final CachedDOMWriteTransaction.AsyncNotifyingSettableFuture clientSubmitFuture =
+                new CachedDOMWriteTransaction.AsyncNotifyingSettableFuture(clientFutureCallbackExecutor);
+
+        pendingTransactions.add(new PendingTransaction(modifications, clientSubmitFuture));
+        if (pendingCount.incrementAndGet() >= maxBatchSize) {
+            scheduler.execute(this::flush);
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+        }
+
+        return MappingCheckedFuture.create(clientSubmitFuture,
+                TransactionCommitFailedExceptionMapper.COMMIT_ERROR_MAPPER);
+    }
+
+    /**
+     * Commit the pending transactions now, on the calling thread.
+     */
+    public void flush() {
+        // Batches of the same node are committed in submission order
+        synchronized (flushLock) {
+            flushScheduled.set(false);
+            while (true) {
+                final List<PendingTransaction> batch = new ArrayList<>(Math.min(pendingCount.get(), maxBatchSize));
+                PendingTransaction transaction;
+                while (batch.size() < maxBatchSize && (transaction = pendingTransactions.poll()) != null) {
+                    batch.add(transaction);
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                pendingCount.addAndGet(-batch.size());
+                commitBatch(batch);
+            }
+        }
+    }
+
+    private void commitBatch(final List<PendingTransaction> pendingBatch) {
+        List<PendingTransaction> batch = pendingBatch;
+        CachedDOMWriteTransaction transaction;
+        while (true) {
+            LOG.trace("{}: Committing a batch of {} transactions", nodeId, batch.size());
+            transaction = new CachedDOMWriteTransaction(nodeId,
+                    store -> stores.apply(store).newWriteOnlyTransaction(), MoreExecutors.directExecutor(), journal,
+                    batchStats);
+            final PendingTransaction invalid = applyTo(transaction, batch);
+            if (invalid == null) {
+                break;
+            }
+            // The modifications of the invalid transaction applied so far are in the store transactions
+            transaction.cancel();
+            batch = new ArrayList<>(batch);
+            batch.remove(invalid);
+            if (batch.isEmpty()) {
+                return;
+            }
+        }
+        final List<PendingTransaction> committed = batch;
+        final CachedDOMWriteTransaction batchTransaction = transaction;
+
+        Futures.addCallback(transaction.submit(), new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(final Void result) {
+                stats.batchCommitted();
+                committed.forEach(pending -> pending.complete(null, null));
+            }
+
+            @Override
+            public void onFailure(final Throwable throwable) {
+                if (committed.size() == 1) {
+                    final Phase phase = batchTransaction.getFailedPhase();
+                    committed.get(0).complete(throwable, phase == null ? COMMIT : phase);
+                } else {
+                    // Only the outcome of the retries is recorded for the transactions
+                    LOG.debug("{}: Batch of {} transactions failed, committing them one by one", nodeId,
+                            committed.size(), throwable);
+                    committed.forEach(pending -> commitBatch(Collections.singletonList(pending)));
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Apply the modifications of the batch to the transaction, up to the first one the data store rejects.
+     *
+     * @return the transaction of the rejected modification, which is failed, or {@code null}
+     */
+    private PendingTransaction applyTo(final CachedDOMWriteTransaction transaction,
+                                       final List<PendingTransaction> batch) {
+        for (PendingTransaction pending : batch) {
+            for (CachedDOMModification modification : pending.modifications) {
+                try {
+                    transaction.apply(modification);
+                } catch (RuntimeException e) {
+                    LOG.debug("{}: Failing transaction with invalid {} of {}", nodeId, modification.getType(),
+                            modification.getPath(), e);
+                    pending.complete(new TransactionCommitFailedException("Invalid " + modification.getType()
+                            + " of " + modification.getPath() + " in the " + modification.getStore() + " store", e),
+                            CAN_COMMIT);
+                    return pending;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        flush();
+        stats.unregisterMBean();
+        batchStats.unregisterMBean();
+    }
+
+    private final class PendingTransaction {
+        private final List<CachedDOMModification> modifications;
+        private final CachedDOMWriteTransaction.AsyncNotifyingSettableFuture clientSubmitFuture;
+        private final long submitNanos = System.nanoTime();
+
+        PendingTransaction(final List<CachedDOMModification> modifications,
+                           final CachedDOMWriteTransaction.AsyncNotifyingSettableFuture clientSubmitFuture) {
+            this.modifications = modifications;
+            this.clientSubmitFuture = clientSubmitFuture;
+        }
+
+        /**
+         * @param phase the phase of the failure, {@code null} on success
+         */
+        void complete(@Nullable final Throwable failure, @Nullable final Phase phase) {
+            final long latencyNanos = System.nanoTime() - submitNanos;
+            stats.transactionCompleted(latencyNanos, failure == null);
+            if (failure == null) {
+                mountPointStats.transactionCommitted(latencyNanos);
+                clientSubmitFuture.set();
+            } else {
+                mountPointStats.transactionFailed(phase);
+                clientSubmitFuture.setException(failure);
+            }
+        }
+    }
+}
@@ -7,6 +7,10 @@
  */
 package org.opendaylight.mdsal.mount.cache.impl.tx;
 
+import static org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats.Phase.CAN_COMMIT;
+import static org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats.Phase.COMMIT;
+import static org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats.Phase.PRE_COMMIT;
+
 import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.CheckedFuture;
@@ -15,8 +19,15 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 import org.opendaylight.controller.md.sal.common.api.TransactionStatus;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
@@ -24,6 +35,8 @@ import org.opendaylight.controller.md.sal.dom.api.DOMDataWriteTransaction;
 import org.opendaylight.controller.md.sal.dom.broker.impl.TransactionCommitFailedExceptionMapper;
 import org.opendaylight.controller.sal.core.spi.data.DOMStoreThreePhaseCommitCohort;
 import org.opendaylight.controller.sal.core.spi.data.DOMStoreWriteTransaction;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats.Phase;
 import org.opendaylight.yangtools.util.concurrent.MappingCheckedFuture;
 import org.opendaylight.yangtools.yang.common.RpcResult;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
@@ -39,122 +52,201 @@ public class CachedDOMWriteTransaction implements DOMDataWriteTransaction {
 
     private static final Logger LOG = LoggerFactory.getLogger(CachedDOMWriteTransaction.class);
 
-    private static final String CAN_COMMIT = "CAN_COMMIT";
-    private static final String PRE_COMMIT = "PRE_COMMIT";
-    private static final String COMMIT = "COMMIT";
-
     private final Executor clientFutureCallbackExecutor;
 
     private final String nodeId;
-    private final DOMStoreWriteTransaction writeTransaction;
+    private final Function<LogicalDatastoreType, ? extends DOMStoreWriteTransaction> transactionFactory;
+    private final Map<LogicalDatastoreType, DOMStoreWriteTransaction> writeTransactions =
+            new EnumMap<>(LogicalDatastoreType.class);
+    private final CachedDOMTransactionJournal journal;
+    private final List<CachedDOMModification> modifications;
+    private final CachedMountPointStats stats;
+    private long submitNanos;
+    private volatile Phase failedPhase;
+    // Guarded by this
+    private boolean submitted;
+    private boolean cancelled;
 
+    /**
+     * @param transactionFactory provides the store transaction backing each {@link LogicalDatastoreType}, it is
+     *                           invoked the first time the type is written to
+     * @param journal            records the modifications of the transaction once committed, or {@code null}
+     * @param stats              statistics of the mount point
+     */
     public CachedDOMWriteTransaction(final String nodeId,
-                                     final DOMStoreWriteTransaction writeTransaction,
-                                     final Executor clientFutureCallbackExecutor) {
+                                     final Function<LogicalDatastoreType, ? extends DOMStoreWriteTransaction> transactionFactory,
+                                     final Executor clientFutureCallbackExecutor,
+                                     @Nullable final CachedDOMTransactionJournal journal,
+                                     final CachedMountPointStats stats) {
         this.nodeId = nodeId;
         this.clientFutureCallbackExecutor = clientFutureCallbackExecutor;
-        this.writeTransaction = writeTransaction;
+        this.transactionFactory = Preconditions.checkNotNull(transactionFactory);
+        this.journal = journal;
+        this.modifications = journal == null ? null : new ArrayList<>();
+        this.stats = Preconditions.checkNotNull(stats);
+    }
+
+    private synchronized DOMStoreWriteTransaction getWriteTransaction(final LogicalDatastoreType store) {
+        return writeTransactions.computeIfAbsent(store, transactionFactory);
     }
 
+    /**
+     * Closes the store transactions, which also frees the store transaction chains for their next transaction.
+     */
     @Override
-    public boolean cancel() {
-        if (writeTransaction != null) {
-            writeTransaction.close();
+    public synchronized boolean cancel() {
+        if (submitted) {
+            return false;
         }
-        return false;
+        cancelled = true;
+        writeTransactions.values().forEach(DOMStoreWriteTransaction::close);
+        writeTransactions.clear();
+        return true;
     }
 
     @Override
-    public CheckedFuture<Void, TransactionCommitFailedException> submit() {
-        DOMStoreThreePhaseCommitCohort cohort = writeTransaction.ready();
-
-        Preconditions.checkArgument(cohort != null, "%s: Cohort must not be null." + nodeId);
-        LOG.debug("{}: Tx: {} is submitted for execution.", nodeId, writeTransaction.getIdentifier());
+    public synchronized CheckedFuture<Void, TransactionCommitFailedException> submit() {
+        Preconditions.checkState(!cancelled, "%s: Transaction %s was cancelled", nodeId, getIdentifier());
+        Preconditions.checkState(!submitted, "%s: Transaction %s was already submitted", nodeId, getIdentifier());
+        submitted = true;
+        submitNanos = System.nanoTime();
+        stats.transactionSubmitted();
+        if (CachedDOMCallbackExecutor.isFull(clientFutureCallbackExecutor)) {
+            LOG.debug("{}: Tx: {} is rejected, the commit callback executor is full", nodeId, getIdentifier());
+            writeTransactions.values().forEach(DOMStoreWriteTransaction::close);
+            failedPhase = CAN_COMMIT;
+            stats.transactionFailed(CAN_COMMIT);
+            return Futures.immediateFailedCheckedFuture(new TransactionCommitFailedException(
+                    nodeId + ": Commit callback executor is full, transaction " + getIdentifier() + " rejected"));
+        }
+        final List<DOMStoreThreePhaseCommitCohort> cohorts = new ArrayList<>(writeTransactions.size());
+        for (DOMStoreWriteTransaction writeTransaction : writeTransactions.values()) {
+            final DOMStoreThreePhaseCommitCohort cohort = writeTransaction.ready();
+            Preconditions.checkArgument(cohort != null, "%s: Cohort must not be null." + nodeId);
+            cohorts.add(cohort);
+        }
+        LOG.debug("{}: Tx: {} is submitted for execution on {} stores.", nodeId, getIdentifier(), cohorts.size());
 
         final AsyncNotifyingSettableFuture clientSubmitFuture =
                 new AsyncNotifyingSettableFuture(clientFutureCallbackExecutor);
 
-        doCanCommit(clientSubmitFuture, writeTransaction, cohort);
+        if (cohorts.isEmpty()) {
+            // Nothing was written
+            stats.transactionCommitted(System.nanoTime() - submitNanos);
+            clientSubmitFuture.set();
+        } else {
+            doCanCommit(clientSubmitFuture, cohorts);
+        }
 
         return MappingCheckedFuture.create(clientSubmitFuture,
                 TransactionCommitFailedExceptionMapper.COMMIT_ERROR_MAPPER);
     }
 
     private void doCanCommit(final AsyncNotifyingSettableFuture clientSubmitFuture,
-                             final DOMStoreWriteTransaction transaction,
-                             final DOMStoreThreePhaseCommitCohort cohort) {
+                             final List<DOMStoreThreePhaseCommitCohort> cohorts) {
+
+        final AtomicInteger remaining = new AtomicInteger(cohorts.size());
 
         // Not using Futures.allAsList here to avoid its internal overhead.
         FutureCallback<Boolean> futureCallback = new FutureCallback<Boolean>() {
             @Override
             public void onSuccess(Boolean result) {
                 if (result == null || !result) {
-                    handleException(clientSubmitFuture, transaction, cohort,
+                    handleException(clientSubmitFuture, getIdentifier(), cohorts, stats,
                             CAN_COMMIT, TransactionCommitFailedExceptionMapper.CAN_COMMIT_ERROR_MAPPER,
                             new TransactionCommitFailedException(
                                     "%s: Can Commit failed, no detailed cause available." + nodeId));
-                } else {
+                } else if (remaining.decrementAndGet() == 0) {
                     // All cohorts completed successfully - we can move on to the preCommit phase
-                    doPreCommit(clientSubmitFuture, transaction, cohort);
+                    doPreCommit(clientSubmitFuture, cohorts);
                 }
             }
 
             @Override
             public void onFailure(Throwable failure) {
-                handleException(clientSubmitFuture, transaction, cohort, CAN_COMMIT,
+                handleException(clientSubmitFuture, getIdentifier(), cohorts, stats, CAN_COMMIT,
                         TransactionCommitFailedExceptionMapper.CAN_COMMIT_ERROR_MAPPER, failure);
             }
         };
 
-        ListenableFuture<Boolean> canCommitFuture = cohort.canCommit();
-        Futures.addCallback(canCommitFuture, futureCallback, MoreExecutors.directExecutor());
+        for (DOMStoreThreePhaseCommitCohort cohort : cohorts) {
+            if (clientSubmitFuture.isDone()) {
+                // A previous cohort failed and all of them were aborted, a sharded one would lock its shards again
+                return;
+            }
+            ListenableFuture<Boolean> canCommitFuture = cohort.canCommit();
+            Futures.addCallback(canCommitFuture, futureCallback, MoreExecutors.directExecutor());
+        }
     }
 
     private void doPreCommit(final AsyncNotifyingSettableFuture clientSubmitFuture,
-                             final DOMStoreWriteTransaction transaction,
-                             final DOMStoreThreePhaseCommitCohort cohort) {
+                             final List<DOMStoreThreePhaseCommitCohort> cohorts) {
 
+        final AtomicInteger remaining = new AtomicInteger(cohorts.size());
 
         // Not using Futures.allAsList here to avoid its internal overhead.
         FutureCallback<Void> futureCallback = new FutureCallback<Void>() {
             @Override
             public void onSuccess(Void notUsed) {
-                // All cohorts completed successfully - we can move on to the commit phase
-                doCommit(clientSubmitFuture, transaction, cohort);
+                if (remaining.decrementAndGet() == 0) {
+                    // All cohorts completed successfully - we can move on to the commit phase
+                    doCommit(clientSubmitFuture, cohorts);
+                }
             }
 
             @Override
             public void onFailure(Throwable failure) {
-                handleException(clientSubmitFuture, transaction, cohort, PRE_COMMIT,
+                handleException(clientSubmitFuture, getIdentifier(), cohorts, stats, PRE_COMMIT,
                         TransactionCommitFailedExceptionMapper.PRE_COMMIT_MAPPER, failure);
             }
         };
 
-        ListenableFuture<Void> preCommitFuture = cohort.preCommit();
-        Futures.addCallback(preCommitFuture, futureCallback, MoreExecutors.directExecutor());
+        for (DOMStoreThreePhaseCommitCohort cohort : cohorts) {
+            ListenableFuture<Void> preCommitFuture = cohort.preCommit();
+            Futures.addCallback(preCommitFuture, futureCallback, MoreExecutors.directExecutor());
+        }
     }
 
     private void doCommit(final AsyncNotifyingSettableFuture clientSubmitFuture,
-                          final DOMStoreWriteTransaction transaction,
-                          final DOMStoreThreePhaseCommitCohort cohort) {
+                          final List<DOMStoreThreePhaseCommitCohort> cohorts) {
 
+        final AtomicInteger remaining = new AtomicInteger(cohorts.size());
 
         // Not using Futures.allAsList here to avoid its internal overhead.
         FutureCallback<Void> futureCallback = new FutureCallback<Void>() {
             @Override
             public void onSuccess(Void notUsed) {
-                clientSubmitFuture.set();
+                if (remaining.decrementAndGet() == 0) {
+                    stats.transactionCommitted(System.nanoTime() - submitNanos);
+                    clientSubmitFuture.set();
+                }
             }
 
             @Override
             public void onFailure(Throwable throwable) {
-                handleException(clientSubmitFuture, transaction, cohort, COMMIT,
+                handleException(clientSubmitFuture, getIdentifier(), cohorts, stats, COMMIT,
                         TransactionCommitFailedExceptionMapper.COMMIT_ERROR_MAPPER, throwable);
             }
         };
 
-        ListenableFuture<Void> commitFuture = cohort.commit();
-        Futures.addCallback(commitFuture, futureCallback, MoreExecutors.directExecutor());
+        final List<ListenableFuture<Void>> commitFutures = new ArrayList<>(cohorts.size());
+        final Runnable commit = () -> cohorts.forEach(cohort -> commitFutures.add(cohort.commit()));
+        try {
+            if (journal == null || modifications.isEmpty()) {
+                commit.run();
+            } else {
+                journal.commit(commit, modifications);
+            }
+        } catch (RuntimeException e) {
+            // e.g. the journal of a released mount point
+            futureCallback.onFailure(e);
+            return;
+        }
+
+        // Callbacks are added once out of the journal, the commit futures of the in-memory stores are already done
+        for (ListenableFuture<Void> commitFuture : commitFutures) {
+            Futures.addCallback(commitFuture, futureCallback, MoreExecutors.directExecutor());
+        }
     }
 
     @Override
@@ -168,10 +260,9 @@ public class CachedDOMWriteTransaction implements DOMDataWriteTransaction {
     public void delete(LogicalDatastoreType store, YangInstanceIdentifier path) {
         LOG.debug("{}: Delete store={} for path={}", nodeId, store, path);
 
-        Preconditions.checkState(writeTransaction != null);
-
         try {
-            writeTransaction.delete(path);
+            getWriteTransaction(store).delete(path);
+            record(CachedDOMModification.delete(store, path));
         } catch (Exception e) {
             LOG.error("{}: Failed to delete store={} for path={}", nodeId, store, path);
         }
@@ -182,10 +273,9 @@ public class CachedDOMWriteTransaction implements DOMDataWriteTransaction {
     public void put(LogicalDatastoreType store, YangInstanceIdentifier path, NormalizedNode<?, ?> data) {
         LOG.debug("{}: Put data={} in store={} for path={}", nodeId, data, store, path);
 
-        Preconditions.checkState(writeTransaction != null);
-
         try {
-            writeTransaction.write(path, data);
+            getWriteTransaction(store).write(path, data);
+            record(CachedDOMModification.put(store, path, data));
         } catch (Exception e) {
             LOG.error("{}: Failed to put data={} in store={} for path={}", nodeId, data, store, path);
         }
@@ -195,15 +285,39 @@ public class CachedDOMWriteTransaction implements DOMDataWriteTransaction {
     public void merge(LogicalDatastoreType store, YangInstanceIdentifier path, NormalizedNode<?, ?> data) {
         LOG.debug("{}: Merge data={} in store={} for path={}", nodeId, data, store, path);
 
-        Preconditions.checkState(writeTransaction != null);
-
         try {
-            writeTransaction.merge(path, data);
+            getWriteTransaction(store).merge(path, data);
+            record(CachedDOMModification.merge(store, path, data));
         } catch (Exception e) {
             LOG.error("{}: Failed to Merge data={} in store={} for path={}", nodeId, data, store, path);
         }
     }
 
+    /**
+     * Apply a modification recorded by another transaction. Unlike {@link #put}, {@link #merge} and {@link #delete},
+     * a modification the store rejects is not skipped but fails.
+     *
+     * @throws IllegalArgumentException if the store rejects the modification
+     */
+    void apply(final CachedDOMModification modification) {
+        modification.applyTo(getWriteTransaction(modification.getStore()));
+        record(modification);
+    }
+
+    private synchronized void record(final CachedDOMModification modification) {
+        if (modifications != null) {
+            modifications.add(modification);
+        }
+    }
+
+    /**
+     * @return the phase the transaction failed in, or {@code null} if it did not fail
+     */
+    @Nullable
+    Phase getFailedPhase() {
+        return failedPhase;
+    }
+
     @Override
     public Object getIdentifier() {
         return this;
@@ -215,18 +329,21 @@ public class CachedDOMWriteTransaction implements DOMDataWriteTransaction {
             justification = "Pertains to the assignment of the 'clientException' var. FindBugs flags this as an "
                     + "uncomfirmed cast but the generic type in TransactionCommitFailedExceptionMapper is "
                     + "TransactionCommitFailedException and thus should be deemed as confirmed.")
-    private static void handleException(final AsyncNotifyingSettableFuture clientSubmitFuture,
-                                        final DOMStoreWriteTransaction transaction,
-                                        final DOMStoreThreePhaseCommitCohort cohort,
-                                        final String phase, final TransactionCommitFailedExceptionMapper exMapper,
-                                        final Throwable throwable) {
+    private void handleException(final AsyncNotifyingSettableFuture clientSubmitFuture,
+                                 final Object transactionId,
+                                 final List<DOMStoreThreePhaseCommitCohort> cohorts,
+                                 final CachedMountPointStats stats, final Phase phase,
+                                 final TransactionCommitFailedExceptionMapper exMapper,
+                                 final Throwable throwable) {
 
         if (clientSubmitFuture.isDone()) {
             // We must have had failures from multiple cohorts.
             return;
         }
 
-        LOG.warn("Tx: {} Error during phase {}, starting Abort", transaction.getIdentifier(), phase, throwable);
+        LOG.warn("Tx: {} Error during phase {}, starting Abort", transactionId, phase, throwable);
+        failedPhase = phase;
+        stats.transactionFailed(phase);
         final Exception e = new RuntimeException("Unexpected error occurred", throwable);
 
         final TransactionCommitFailedException clientException = exMapper.apply(e);
@@ -234,8 +351,10 @@ public class CachedDOMWriteTransaction implements DOMDataWriteTransaction {
         // Transaction failed - tell all cohorts to abort.
 
         @SuppressWarnings("unchecked")
-        ListenableFuture<Void>[] canCommitFutures = new ListenableFuture[1];
-        canCommitFutures[0] = cohort.abort();
+        ListenableFuture<Void>[] canCommitFutures = new ListenableFuture[cohorts.size()];
+        for (int i = 0; i < canCommitFutures.length; i++) {
+            canCommitFutures[i] = cohorts.get(i).abort();
+        }
 
         ListenableFuture<List<Void>> combinedFuture = Futures.allAsList(canCommitFutures);
         Futures.addCallback(combinedFuture, new FutureCallback<List<Void>>() {
@@ -247,7 +366,7 @@ public class CachedDOMWriteTransaction implements DOMDataWriteTransaction {
 
             @Override
             public void onFailure(Throwable failure) {
-                LOG.error("Tx: {} Error during Abort.", transaction.getIdentifier(), failure);
+                LOG.error("Tx: {} Error during Abort.", transactionId, failure);
 
                 // Propagate the original exception as that is what caused the Tx to fail and is
                 // what's interesting to the client.
@@ -266,7 +385,7 @@ public class CachedDOMWriteTransaction implements DOMDataWriteTransaction {
      * FIXME: This class should probably be moved to yangtools common utils for re-usability and
      * unified with AsyncNotifyingListenableFutureTask.
      */
-    private static class AsyncNotifyingSettableFuture extends AbstractFuture<Void> {
+    static class AsyncNotifyingSettableFuture extends AbstractFuture<Void> {
 
         /**
          * ThreadLocal used to detect if the task completion thread is running the future listener Runnables.
@@ -327,7 +446,14 @@ public class CachedDOMWriteTransaction implements DOMDataWriteTransaction {
                     // We're running on the task completion thread so off-load to the executor.
                     LOG.trace("Submitting ListenenableFuture Runnable from thread {} to executor {}",
                             Thread.currentThread().getName(), executor);
-                    executor.execute(delegate);
+                    try {
+                        executor.execute(delegate);
+                    } catch (RejectedExecutionException e) {
+                        // The future is complete already, running the listener late beats losing it
+                        LOG.warn("Executor {} rejected a future listener, running it on thread {}", executor,
+                                Thread.currentThread().getName(), e);
+                        delegate.run();
+                    }
                 } else {
                     // We're not running on the task completion thread so run the delegate inline.
                     LOG.trace("Executing ListenenableFuture Runnable on this thread: {}",
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.tx;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import org.opendaylight.controller.md.sal.common.util.jmx.AbstractMXBean;
+
+/**
+ * {@link GroupCommitStatsMXBean} implementation, registered per cached mount point.
+ */
+class GroupCommitStats extends AbstractMXBean implements GroupCommitStatsMXBean {
+
+    private static final String JMX_TYPE = "GroupCommit";
+    private static final String JMX_CATEGORY = "CachedMountPoint";
+
+    private final LongAdder committedTransactions = new LongAdder();
+    private final LongAdder failedTransactions = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private final IntSupplier queuedTransactions;
+
+    GroupCommitStats(final String nodeId, final IntSupplier queuedTransactions) {
+        super(nodeId, JMX_TYPE, JMX_CATEGORY);
+        this.queuedTransactions = queuedTransactions;
+    }
+
+    void batchCommitted() {
+        batches.increment();
+    }
+
+    void transactionCompleted(final long latencyNanos, final boolean success) {
+        if (success) {
+            committedTransactions.increment();
+        } else {
+            failedTransactions.increment();
+        }
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    @Override
+    public long getCommittedTransactionCount() {
+        return committedTransactions.sum();
+    }
+
+    @Override
+    public long getFailedTransactionCount() {
+        return failedTransactions.sum();
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    @Override
+    public int getQueuedTransactionCount() {
+        return queuedTransactions.getAsInt();
+    }
+
+    @Override
+    public double getAverageBatchSize() {
+        final long count = batches.sum();
+        return count == 0 ? 0 : (double) committedTransactions.sum() / count;
+    }
+
+    @Override
+    public double getCommittedTransactionsPerSecond() {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        return elapsedNanos == 0 ? 0 : committedTransactions.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public double getAverageCommitLatencyMicros() {
+        final long count = committedTransactions.sum() + failedTransactions.sum();
+        return count == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.sum()) / count;
+    }
+
+    @Override
+    public long getMaxCommitLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get());
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.tx;
+
+/**
+ * Throughput and latency of the group commit of a cached mount point.
+ */
+public interface GroupCommitStatsMXBean {
+
+    long getCommittedTransactionCount();
+
+    long getFailedTransactionCount();
+
+    long getBatchCount();
+
+    int getQueuedTransactionCount();
+
+    double getAverageBatchSize();
+
+    double getCommittedTransactionsPerSecond();
+
+    double getAverageCommitLatencyMicros();
+
+    long getMaxCommitLatencyMicros();
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.util;
+
+import org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStoreConfigProperties;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.CachedMountPointConfig;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.change.notification.ChangeNotification;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.executors.ExecutorIsolation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.executors.executor.isolation.CommitCallback;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.executors.executor.isolation.StoreNotification;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.group.commit.GroupCommit;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.persistence.Persistence;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.sharding.Sharding;
+
+/**
+ * Read the {@link CachedMountPointConfig} and the per node leaves, falling back to the defaults of the model when the
+ * configuration is absent or a leaf is not set.
+ */
+public final class ConfigurationHelper {
+
+    private static final int DEFAULT_CREATION_MAX_THREADS = 8;
+    private static final int DEFAULT_CREATION_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_BOOTSTRAP_PARALLELISM = 0;
+    private static final int DEFAULT_SCHEMA_PARSE_THREADS = 0;
+    private static final int DEFAULT_READ_FAN_OUT_THREADS = 0;
+    private static final long DEFAULT_SCHEMA_WATCH_DEBOUNCE_MILLIS = 500;
+    private static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 600;
+    private static final int DEFAULT_MAX_ACTIVE_MOUNT_POINTS = 0;
+    private static final int DEFAULT_LISTENER_MAX_THREADS = 4;
+    private static final int DEFAULT_LISTENER_QUEUE_SIZE = 1000;
+    private static final long DEFAULT_STATISTICS_PUBLISH_INTERVAL_SECONDS = 30;
+    private static final long DEFAULT_GROUP_COMMIT_WINDOW_MICROS = 500;
+    private static final int DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE = 64;
+    private static final int DEFAULT_SHARD_COUNT = 1;
+    private static final String DEFAULT_EXECUTOR_GROUP = "default";
+    private static final int DEFAULT_COMMIT_CALLBACK_MAX_THREADS = 20;
+    private static final int DEFAULT_COMMIT_CALLBACK_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_STORE_NOTIFICATION_MAX_THREADS = 20;
+    private static final int DEFAULT_STORE_NOTIFICATION_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_STORE_NOTIFICATION_LISTENER_QUEUE_SIZE = 1000;
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 60;
+    private static final long DEFAULT_JOURNAL_SYNC_INTERVAL_MILLIS = 10;
+    private static final long DEFAULT_CHANGE_NOTIFICATION_BATCH_WINDOW_MILLIS = 10;
+    private static final int DEFAULT_CHANGE_STREAM_BUFFER_SIZE = 256;
+    private static final int DEFAULT_CHANGE_STREAM_HISTORY_SIZE = 1024;
+    private static final long DEFAULT_CHANGE_STREAM_RETENTION_SECONDS = 60;
+
+    private ConfigurationHelper() {
+        throw new AssertionError("Utility class");
+    }
+
+    public static int getCreationMaxThreads(final CachedMountPointConfig config) {
+        if (config == null || config.getCreationMaxThreads() == null) {
+            return DEFAULT_CREATION_MAX_THREADS;
+        }
+        return config.getCreationMaxThreads();
+    }
+
+    public static int getCreationQueueSize(final CachedMountPointConfig config) {
+        if (config == null || config.getCreationQueueSize() == null) {
+            return DEFAULT_CREATION_QUEUE_SIZE;
+        }
+        return config.getCreationQueueSize().intValue();
+    }
+
+    /**
+     * @return the parallelism of the initial bulk creation, {@code 0} meaning the number of available processors
+     */
+    public static int getBootstrapParallelism(final CachedMountPointConfig config) {
+        int parallelism = DEFAULT_BOOTSTRAP_PARALLELISM;
+        if (config != null && config.getBootstrapParallelism() != null) {
+            parallelism = config.getBootstrapParallelism();
+        }
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the number of threads parsing YANG sources, {@code 0} meaning the number of available processors
+     */
+    public static int getSchemaParseThreads(final CachedMountPointConfig config) {
+        int threads = DEFAULT_SCHEMA_PARSE_THREADS;
+        if (config != null && config.getSchemaParseThreads() != null) {
+            threads = config.getSchemaParseThreads();
+        }
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the number of threads of the read fan-out, {@code 0} meaning the number of available processors
+     */
+    public static int getReadFanOutThreads(final CachedMountPointConfig config) {
+        int threads = DEFAULT_READ_FAN_OUT_THREADS;
+        if (config != null && config.getReadFanOutThreads() != null) {
+            threads = config.getReadFanOutThreads();
+        }
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public static boolean isSchemaWatchEnabled(final CachedMountPointConfig config) {
+        return config == null || config.isSchemaWatchEnabled() == null || config.isSchemaWatchEnabled();
+    }
+
+    public static long getSchemaWatchDebounceMillis(final CachedMountPointConfig config) {
+        if (config == null || config.getSchemaWatchDebounceMillis() == null) {
+            return DEFAULT_SCHEMA_WATCH_DEBOUNCE_MILLIS;
+        }
+        return config.getSchemaWatchDebounceMillis();
+    }
+
+    public static boolean isSchemaHotReload(final CachedMountPointConfig config) {
+        return config != null && Boolean.TRUE.equals(config.isSchemaHotReload());
+    }
+
+    public static boolean isLazyActivation(final CachedMountPointConfig config) {
+        return config != null && Boolean.TRUE.equals(config.isLazyActivation());
+    }
+
+    /**
+     * @return how long a lazy mount point stays active without being accessed, {@code 0} meaning forever
+     */
+    public static long getIdleTimeoutSeconds(final CachedMountPointConfig config) {
+        if (config == null || config.getIdleTimeoutSeconds() == null) {
+            return DEFAULT_IDLE_TIMEOUT_SECONDS;
+        }
+        return config.getIdleTimeoutSeconds();
+    }
+
+    /**
+     * @return the maximum number of active lazy mount points, {@code 0} meaning no limit
+     */
+    public static int getMaxActiveMountPoints(final CachedMountPointConfig config) {
+        if (config == null || config.getMaxActiveMountPoints() == null) {
+            return DEFAULT_MAX_ACTIVE_MOUNT_POINTS;
+        }
+        return (int) Math.min(config.getMaxActiveMountPoints(), Integer.MAX_VALUE);
+    }
+
+    public static int getListenerMaxThreads(final CachedMountPointConfig config) {
+        if (config == null || config.getListenerMaxThreads() == null) {
+            return DEFAULT_LISTENER_MAX_THREADS;
+        }
+        return config.getListenerMaxThreads();
+    }
+
+    public static int getListenerQueueSize(final CachedMountPointConfig config) {
+        if (config == null || config.getListenerQueueSize() == null) {
+            return DEFAULT_LISTENER_QUEUE_SIZE;
+        }
+        return config.getListenerQueueSize().intValue();
+    }
+
+    /**
+     * @return the delay between two updates of the operational statistics, {@code 0} meaning never
+     */
+    public static long getStatisticsPublishIntervalSeconds(final CachedMountPointConfig config) {
+        if (config == null || config.getStatisticsPublishIntervalSeconds() == null) {
+            return DEFAULT_STATISTICS_PUBLISH_INTERVAL_SECONDS;
+        }
+        return config.getStatisticsPublishIntervalSeconds();
+    }
+
+    public static boolean isGroupCommitEnabled(final GroupCommit groupCommit) {
+        return groupCommit != null && Boolean.TRUE.equals(groupCommit.isEnabled());
+    }
+
+    public static long getGroupCommitWindowMicros(final GroupCommit groupCommit) {
+        if (groupCommit == null || groupCommit.getWindowMicros() == null) {
+            return DEFAULT_GROUP_COMMIT_WINDOW_MICROS;
+        }
+        return groupCommit.getWindowMicros();
+    }
+
+    public static int getGroupCommitMaxBatchSize(final GroupCommit groupCommit) {
+        if (groupCommit == null || groupCommit.getMaxBatchSize() == null) {
+            return DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE;
+        }
+        return groupCommit.getMaxBatchSize();
+    }
+
+    public static int getShardCount(final Sharding sharding) {
+        if (sharding == null || sharding.getShardCount() == null) {
+            return DEFAULT_SHARD_COUNT;
+        }
+        return sharding.getShardCount();
+    }
+
+    public static String getExecutorGroup(final ExecutorIsolation isolation) {
+        if (isolation == null || isolation.getGroup() == null || isolation.getGroup().isEmpty()) {
+            return DEFAULT_EXECUTOR_GROUP;
+        }
+        return isolation.getGroup();
+    }
+
+    public static int getCommitCallbackMaxThreads(final ExecutorIsolation isolation) {
+        final CommitCallback commitCallback = isolation == null ? null : isolation.getCommitCallback();
+        if (commitCallback == null || commitCallback.getMaxThreads() == null) {
+            return DEFAULT_COMMIT_CALLBACK_MAX_THREADS;
+        }
+        return commitCallback.getMaxThreads();
+    }
+
+    public static int getCommitCallbackQueueSize(final ExecutorIsolation isolation) {
+        final CommitCallback commitCallback = isolation == null ? null : isolation.getCommitCallback();
+        if (commitCallback == null || commitCallback.getQueueSize() == null) {
+            return DEFAULT_COMMIT_CALLBACK_QUEUE_SIZE;
+        }
+        return commitCallback.getQueueSize().intValue();
+    }
+
+    public static CommitCallback.ExecutionMode getCommitCallbackExecutionMode(final ExecutorIsolation isolation) {
+        final CommitCallback commitCallback = isolation == null ? null : isolation.getCommitCallback();
+        if (commitCallback == null || commitCallback.getExecutionMode() == null) {
+            return CommitCallback.ExecutionMode.POOL;
+        }
+        return commitCallback.getExecutionMode();
+    }
+
+    public static CommitCallback.RejectionPolicy getCommitCallbackRejectionPolicy(final ExecutorIsolation isolation) {
+        final CommitCallback commitCallback = isolation == null ? null : isolation.getCommitCallback();
+        if (commitCallback == null || commitCallback.getRejectionPolicy() == null) {
+            return CommitCallback.RejectionPolicy.BLOCK;
+        }
+        return commitCallback.getRejectionPolicy();
+    }
+
+    /**
+     * @return the sizes of the notification executor and queues of the data stores
+     */
+    public static InMemoryDOMDataStoreConfigProperties getStoreNotificationProperties(
+            final ExecutorIsolation isolation) {
+        final StoreNotification storeNotification = isolation == null ? null : isolation.getStoreNotification();
+        if (storeNotification == null) {
+            return InMemoryDOMDataStoreConfigProperties.create(DEFAULT_STORE_NOTIFICATION_MAX_THREADS,
+                    DEFAULT_STORE_NOTIFICATION_QUEUE_SIZE, DEFAULT_STORE_NOTIFICATION_LISTENER_QUEUE_SIZE);
+        }
+        return InMemoryDOMDataStoreConfigProperties.create(
+                storeNotification.getMaxThreads() == null
+                        ? DEFAULT_STORE_NOTIFICATION_MAX_THREADS : storeNotification.getMaxThreads(),
+                storeNotification.getQueueSize() == null
+                        ? DEFAULT_STORE_NOTIFICATION_QUEUE_SIZE : storeNotification.getQueueSize().intValue(),
+                storeNotification.getListenerQueueSize() == null
+                        ? DEFAULT_STORE_NOTIFICATION_LISTENER_QUEUE_SIZE
+                        : storeNotification.getListenerQueueSize().intValue());
+    }
+
+    public static CachedDOMStores.ShardBy getShardBy(final Sharding sharding) {
+        if (sharding != null && sharding.getShardBy() == Sharding.ShardBy.TOPLEVELNODE) {
+            return CachedDOMStores.ShardBy.TOP_LEVEL_NODE;
+        }
+        return CachedDOMStores.ShardBy.MODULE;
+    }
+
+    public static boolean isSnapshotEnabled(final Persistence persistence) {
+        return persistence != null && Boolean.TRUE.equals(persistence.isSnapshotEnabled());
+    }
+
+    public static long getSnapshotIntervalSeconds(final Persistence persistence) {
+        if (persistence == null || persistence.getSnapshotIntervalSeconds() == null) {
+            return DEFAULT_SNAPSHOT_INTERVAL_SECONDS;
+        }
+        return persistence.getSnapshotIntervalSeconds();
+    }
+
+    public static boolean isJournalEnabled(final Persistence persistence) {
+        return persistence != null && Boolean.TRUE.equals(persistence.isJournalEnabled());
+    }
+
+    public static long getJournalSyncIntervalMillis(final Persistence persistence) {
+        if (persistence == null || persistence.getJournalSyncIntervalMillis() == null) {
+            return DEFAULT_JOURNAL_SYNC_INTERVAL_MILLIS;
+        }
+        return persistence.getJournalSyncIntervalMillis();
+    }
+
+    public static long getChangeNotificationBatchWindowMillis(final ChangeNotification changeNotification) {
+        if (changeNotification == null || changeNotification.getBatchWindowMillis() == null) {
+            return DEFAULT_CHANGE_NOTIFICATION_BATCH_WINDOW_MILLIS;
+        }
+        return changeNotification.getBatchWindowMillis();
+    }
+
+    public static int getChangeStreamBufferSize(final ChangeNotification changeNotification) {
+        if (changeNotification == null || changeNotification.getStreamBufferSize() == null) {
+            return DEFAULT_CHANGE_STREAM_BUFFER_SIZE;
+        }
+        return changeNotification.getStreamBufferSize().intValue();
+    }
+
+    public static int getChangeStreamHistorySize(final ChangeNotification changeNotification) {
+        if (changeNotification == null || changeNotification.getStreamHistorySize() == null) {
+            return DEFAULT_CHANGE_STREAM_HISTORY_SIZE;
+        }
+        return changeNotification.getStreamHistorySize().intValue();
+    }
+
+    public static long getChangeStreamRetentionSeconds(final ChangeNotification changeNotification) {
+        if (changeNotification == null || changeNotification.getStreamRetentionSeconds() == null) {
+            return DEFAULT_CHANGE_STREAM_RETENTION_SECONDS;
+        }
+        return changeNotification.getStreamRetentionSeconds();
+    }
+}
@@ -7,14 +7,23 @@
  */
 package org.opendaylight.mdsal.mount.cache.impl.util;
 
+import java.math.BigInteger;
 import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.CachedMountPointNode;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.CachedMountPointNodeBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.CachedMountPointStatus;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.cached.mount.point.rev170201.cached.mount.point.statistics.StatisticsBuilder;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NetworkTopology;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NetworkTopologyBuilder;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TopologyId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.Topology;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.TopologyBuilder;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.TopologyKey;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Node;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.NodeBuilder;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.NodeKey;
 import org.opendaylight.yangtools.yang.binding.Identifier;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
@@ -53,4 +62,51 @@ public final class TopologyHelper {
         }
         throw new IllegalStateException("Unable to create NodeId from: " + pathArgument);
     }
+
+    public static InstanceIdentifier<Node> getNodeIdentifier(final String nodeId) {
+        return CACHED_MOUNT_POINT_TOPOLOGY.child(Node.class, new NodeKey(new NodeId(nodeId)));
+    }
+
+    public static Node buildMountStatusNode(final String nodeId,
+                                            final CachedMountPointStatus.MountStatus status,
+                                            final String message) {
+        final NodeId id = new NodeId(nodeId);
+        return new NodeBuilder()
+                .setNodeId(id)
+                .setKey(new NodeKey(id))
+                .addAugmentation(CachedMountPointNode.class, new CachedMountPointNodeBuilder()
+                        .setMountStatus(status)
+                        .setStatusMessage(message)
+                        .build())
+                .build();
+    }
+
+    public static Node buildStatisticsNode(final String nodeId, final CachedMountPointStats stats) {
+        final NodeId id = new NodeId(nodeId);
+        return new NodeBuilder()
+                .setNodeId(id)
+                .setKey(new NodeKey(id))
+                .addAugmentation(CachedMountPointNode.class, new CachedMountPointNodeBuilder()
+                        .setStatistics(new StatisticsBuilder()
+                                .setTransactionsSubmitted(BigInteger.valueOf(stats.getSubmittedTransactionCount()))
+                                .setTransactionsCommitted(BigInteger.valueOf(stats.getCommittedTransactionCount()))
+                                .setCanCommitFailures(BigInteger.valueOf(stats.getCanCommitFailureCount()))
+                                .setPreCommitFailures(BigInteger.valueOf(stats.getPreCommitFailureCount()))
+                                .setCommitFailures(BigInteger.valueOf(stats.getCommitFailureCount()))
+                                .setCommitLatencyAvgMicros(BigInteger.valueOf(stats.getAverageCommitLatencyMicros()))
+                                .setCommitLatencyP99Micros(
+                                        BigInteger.valueOf(stats.getCommitLatency99thPercentileMicros()))
+                                .setCommitLatencyMaxMicros(BigInteger.valueOf(stats.getMaxCommitLatencyMicros()))
+                                .setReads(BigInteger.valueOf(stats.getReadCount()))
+                                .setReadFailures(BigInteger.valueOf(stats.getReadFailureCount()))
+                                .setReadLatencyAvgMicros(BigInteger.valueOf(stats.getAverageReadLatencyMicros()))
+                                .setReadLatencyP99Micros(BigInteger.valueOf(stats.getReadLatency99thPercentileMicros()))
+                                .setReadLatencyMaxMicros(BigInteger.valueOf(stats.getMaxReadLatencyMicros()))
+                                .setListeners(BigInteger.valueOf(stats.getListenerCount()))
+                                .setListenerNotifications(BigInteger.valueOf(stats.getListenerNotificationCount()))
+                                .setListenerBacklog(BigInteger.valueOf(stats.getListenerBacklog()))
+                                .build())
+                        .build())
+                .build();
+    }
 }
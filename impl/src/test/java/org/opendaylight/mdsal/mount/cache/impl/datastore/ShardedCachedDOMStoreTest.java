@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.INTERFACES;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.INTERFACES_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.NAME;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.ROUTING;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.ROUTING_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.TELEMETRY;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.TELEMETRY_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.commit;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.container;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.read;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.root;
+
+import com.google.common.base.Optional;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opendaylight.controller.md.sal.dom.api.DOMDataTreeChangeListener;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreWriteTransaction;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.tree.DataTreeCandidate;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+
+public class ShardedCachedDOMStoreTest {
+
+    private static SchemaContext schemaContext;
+
+    private ShardedCachedDOMStore store;
+
+    @BeforeClass
+    public static void setUpSchema() throws Exception {
+        schemaContext = ShardingTestSchema.createSchemaContext();
+    }
+
+    @Before
+    public void setUp() {
+        store = ShardingTestSchema.createStore(schemaContext);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void testShardOf() {
+        // The mapping only depends on the names and the shard count, it must not change across releases
+        assertEquals(1, store.shardOf(INTERFACES_PATH));
+        assertEquals(1, store.shardOf(ROUTING_PATH));
+        assertEquals(0, store.shardOf(TELEMETRY_PATH));
+        // Nested nodes follow their top-level node
+        assertEquals(1, store.shardOf(INTERFACES_PATH.node(NAME)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShardOfRoot() {
+        store.shardOf(YangInstanceIdentifier.EMPTY);
+    }
+
+    @Test
+    public void testSplitRoot() {
+        final List<ContainerNode> roots = store.splitRoot(root(container(INTERFACES, "eth0"),
+                container(ROUTING, "static"), container(TELEMETRY, "sensor")));
+        assertEquals(2, roots.size());
+        assertEquals(1, roots.get(0).getValue().size());
+        assertTrue(roots.get(0).getChild(new NodeIdentifier(TELEMETRY)).isPresent());
+        assertEquals(2, roots.get(1).getValue().size());
+        assertTrue(roots.get(1).getChild(new NodeIdentifier(INTERFACES)).isPresent());
+        assertTrue(roots.get(1).getChild(new NodeIdentifier(ROUTING)).isPresent());
+    }
+
+    @Test
+    public void testReadMergedRoot() throws Exception {
+        write(INTERFACES_PATH, container(INTERFACES, "eth0"));
+        write(TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+
+        final Optional<NormalizedNode<?, ?>> root = read(store, YangInstanceIdentifier.EMPTY);
+        assertTrue(root.isPresent());
+        assertEquals(container(INTERFACES, "eth0"), child(root, INTERFACES));
+        assertEquals(container(TELEMETRY, "sensor"), child(root, TELEMETRY));
+        // The root of unchanged shards is not merged again
+        assertSame(root.get(), read(store, YangInstanceIdentifier.EMPTY).get());
+    }
+
+    @Test(timeout = 10000)
+    public void testRootListener() throws Exception {
+        final BlockingQueue<DataTreeCandidate> changes = new LinkedBlockingQueue<>();
+        final ListenerRegistration<DOMDataTreeChangeListener> registration = store.registerTreeChangeListener(
+                YangInstanceIdentifier.EMPTY, (DOMDataTreeChangeListener) changes::addAll);
+
+        write(INTERFACES_PATH, container(INTERFACES, "eth0"));
+        awaitRoot(changes, root -> root.getChild(new NodeIdentifier(INTERFACES)).isPresent());
+
+        // A change of the other shard is notified with the root of the whole tree, before and after
+        write(TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        final DataTreeCandidate change = awaitRoot(changes,
+                root -> root.getChild(new NodeIdentifier(TELEMETRY)).isPresent());
+        assertEquals(YangInstanceIdentifier.EMPTY, change.getRootPath());
+        assertEquals(container(INTERFACES, "eth0"), child(change.getRootNode().getDataBefore(), INTERFACES));
+        assertEquals(container(INTERFACES, "eth0"), child(change.getRootNode().getDataAfter(), INTERFACES));
+        assertFalse(((ContainerNode) change.getRootNode().getDataBefore().get())
+                .getChild(new NodeIdentifier(TELEMETRY)).isPresent());
+
+        registration.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testTopLevelListener() throws Exception {
+        final BlockingQueue<DataTreeCandidate> changes = new LinkedBlockingQueue<>();
+        final ListenerRegistration<DOMDataTreeChangeListener> registration = store.registerTreeChangeListener(
+                INTERFACES_PATH, (DOMDataTreeChangeListener) changes::addAll);
+
+        write(TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        write(INTERFACES_PATH, container(INTERFACES, "eth0"));
+
+        // Registered on the shard of interfaces alone, the change of telemetry is not seen
+        final DataTreeCandidate change = changes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(change);
+        assertEquals(INTERFACES_PATH, change.getRootPath());
+        assertEquals(container(INTERFACES, "eth0"), change.getRootNode().getDataAfter().get());
+
+        registration.close();
+    }
+
+    private void write(final YangInstanceIdentifier path, final NormalizedNode<?, ?> data) throws Exception {
+        final DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.write(path, data);
+        commit(transaction.ready());
+    }
+
+    private static NormalizedNode<?, ?> child(final Optional<NormalizedNode<?, ?>> root, final QName qname) {
+        return ((ContainerNode) root.get()).getChild(new NodeIdentifier(qname)).get();
+    }
+
+    /**
+     * Wait for the change of the root matching the predicate, skipping the other ones.
+     */
+    private static DataTreeCandidate awaitRoot(final BlockingQueue<DataTreeCandidate> changes,
+                                               final Predicate<ContainerNode> predicate) throws InterruptedException {
+        while (true) {
+            final DataTreeCandidate change = changes.take();
+            final Optional<NormalizedNode<?, ?>> root = change.getRootNode().getDataAfter();
+            if (root.isPresent() && predicate.test((ContainerNode) root.get())) {
+                return change;
+            }
+        }
+    }
+}
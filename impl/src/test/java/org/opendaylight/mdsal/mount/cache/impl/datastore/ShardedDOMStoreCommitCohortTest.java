@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.datastore;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreThreePhaseCommitCohort;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+
+public class ShardedDOMStoreCommitCohortTest {
+
+    private static SchemaContext schemaContext;
+
+    private ShardedCachedDOMStore store;
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void setUpSchema() throws Exception {
+        schemaContext = ShardingTestSchema.createSchemaContext();
+    }
+
+    @Before
+    public void setUp() {
+        store = ShardingTestSchema.createStore(schemaContext);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        store.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testSingleShardCommit() throws Exception {
+        final DOMStoreThreePhaseCommitCohort delegate = delegate(Futures.immediateFuture(true));
+        final ShardedDOMStoreCommitCohort cohort = cohort(delegate, 1);
+        assertTrue(cohort.canCommit().get());
+        cohort.preCommit().get();
+        cohort.commit().get();
+        verify(delegate).commit();
+
+        assertUnlocked(1);
+    }
+
+    @Test(timeout = 10000)
+    public void testCrossShardCommit() throws Exception {
+        final DOMStoreThreePhaseCommitCohort first = delegate(Futures.immediateFuture(true));
+        final DOMStoreThreePhaseCommitCohort second = delegate(Futures.immediateFuture(true));
+        final ShardedDOMStoreCommitCohort cohort = new ShardedDOMStoreCommitCohort(store, Arrays.asList(0, 1),
+                Arrays.asList(first, second));
+        assertTrue(cohort.canCommit().get());
+        cohort.preCommit().get();
+        cohort.commit().get();
+        verify(first).commit();
+        verify(second).commit();
+
+        assertUnlocked(0);
+        assertUnlocked(1);
+    }
+
+    @Test(timeout = 10000)
+    public void testLockedUntilCommit() throws Exception {
+        final ShardedDOMStoreCommitCohort cohort = cohort(delegate(Futures.immediateFuture(true)), 1);
+        assertTrue(cohort.canCommit().get());
+
+        // Waits for the commit of the first transaction of the shard
+        final Future<Boolean> waiting = canCommitAsync(cohort(delegate(Futures.immediateFuture(true)), 1));
+        try {
+            waiting.get(200, TimeUnit.MILLISECONDS);
+            fail("Validated while the shard is locked");
+        } catch (TimeoutException e) {
+            // Expected
+        }
+        // Not the other shard
+        assertUnlocked(0);
+
+        cohort.preCommit().get();
+        cohort.commit().get();
+        assertTrue(waiting.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testAbortUnlocksShards() throws Exception {
+        final DOMStoreThreePhaseCommitCohort delegate = delegate(Futures.immediateFuture(true));
+        final ShardedDOMStoreCommitCohort cohort = cohort(delegate, 1);
+        assertTrue(cohort.canCommit().get());
+        cohort.abort().get();
+        verify(delegate).abort();
+
+        assertUnlocked(1);
+    }
+
+    @Test(timeout = 10000)
+    public void testCanCommitAfterAbort() throws Exception {
+        final DOMStoreThreePhaseCommitCohort delegate = delegate(Futures.immediateFuture(true));
+        final ShardedDOMStoreCommitCohort cohort = cohort(delegate, 1);
+        cohort.abort().get();
+
+        try {
+            cohort.canCommit().get();
+            fail("Aborted transaction was validated");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        verify(delegate, never()).canCommit();
+
+        assertUnlocked(1);
+    }
+
+    @Test(timeout = 10000)
+    public void testCanCommitFailureUnlocksShards() throws Exception {
+        final ShardedDOMStoreCommitCohort cohort = cohort(
+                delegate(Futures.immediateFailedFuture(new IllegalStateException("Conflict"))), 1);
+        try {
+            cohort.canCommit().get();
+            fail("Failed validation was reported as successful");
+        } catch (ExecutionException e) {
+            // Expected
+        }
+
+        assertUnlocked(1);
+    }
+
+    @Test(timeout = 10000)
+    public void testCanCommitFalseUnlocksShards() throws Exception {
+        final ShardedDOMStoreCommitCohort cohort = cohort(delegate(Futures.immediateFuture(false)), 1);
+        assertFalse(cohort.canCommit().get());
+
+        assertUnlocked(1);
+    }
+
+    @Test(timeout = 10000)
+    public void testCrossShardCanCommitFailureUnlocksShards() throws Exception {
+        final ShardedDOMStoreCommitCohort cohort = new ShardedDOMStoreCommitCohort(store, Arrays.asList(0, 1),
+                Arrays.asList(delegate(Futures.immediateFuture(true)),
+                        delegate(Futures.immediateFailedFuture(new IllegalStateException("Conflict")))));
+        try {
+            cohort.canCommit().get();
+            fail("Failed validation was reported as successful");
+        } catch (ExecutionException e) {
+            // Expected
+        }
+
+        assertUnlocked(0);
+        assertUnlocked(1);
+    }
+
+    @Test(timeout = 10000)
+    public void testCanCommitThrowingUnlocksShards() throws Exception {
+        final DOMStoreThreePhaseCommitCohort delegate = mock(DOMStoreThreePhaseCommitCohort.class);
+        doThrow(new IllegalStateException("Closed")).when(delegate).canCommit();
+        final ShardedDOMStoreCommitCohort cohort = cohort(delegate, 1);
+        try {
+            cohort.canCommit().get();
+            fail("Failed validation was reported as successful");
+        } catch (ExecutionException e) {
+            // Expected
+        }
+
+        assertUnlocked(1);
+    }
+
+    /**
+     * Validate then abort a transaction of the shard, which waits until the test timeout if the shard is still locked.
+     */
+    private void assertUnlocked(final int shard) throws Exception {
+        final ShardedDOMStoreCommitCohort cohort = cohort(delegate(Futures.immediateFuture(true)), shard);
+        assertTrue(cohort.canCommit().get());
+        cohort.abort().get();
+    }
+
+    private Future<Boolean> canCommitAsync(final ShardedDOMStoreCommitCohort cohort) {
+        return executor.submit(() -> cohort.canCommit().get());
+    }
+
+    private ShardedDOMStoreCommitCohort cohort(final DOMStoreThreePhaseCommitCohort delegate, final int shard) {
+        return new ShardedDOMStoreCommitCohort(store, Collections.singletonList(shard),
+                Collections.singletonList(delegate));
+    }
+
+    private static DOMStoreThreePhaseCommitCohort delegate(final ListenableFuture<Boolean> canCommit) {
+        final DOMStoreThreePhaseCommitCohort delegate = mock(DOMStoreThreePhaseCommitCohort.class);
+        doReturn(canCommit).when(delegate).canCommit();
+        doReturn(Futures.immediateFuture(null)).when(delegate).preCommit();
+        doReturn(Futures.immediateFuture(null)).when(delegate).commit();
+        doReturn(Futures.immediateFuture(null)).when(delegate).abort();
+        return delegate;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.INTERFACES;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.INTERFACES_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.ROUTING;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.ROUTING_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.TELEMETRY;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.TELEMETRY_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.commit;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.container;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.read;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.root;
+
+import com.google.common.base.Optional;
+import java.util.concurrent.ExecutionException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadTransaction;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadWriteTransaction;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreThreePhaseCommitCohort;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreWriteTransaction;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+
+public class ShardedDOMStoreTransactionTest {
+
+    private static SchemaContext schemaContext;
+
+    private ShardedCachedDOMStore store;
+
+    @BeforeClass
+    public static void setUpSchema() throws Exception {
+        schemaContext = ShardingTestSchema.createSchemaContext();
+    }
+
+    @Before
+    public void setUp() {
+        store = ShardingTestSchema.createStore(schemaContext);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void testSingleShardCommit() throws Exception {
+        final DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.write(INTERFACES_PATH, container(INTERFACES, "eth0"));
+        transaction.write(ROUTING_PATH, container(ROUTING, "static"));
+        commit(transaction.ready());
+
+        assertEquals(container(INTERFACES, "eth0"), read(store, INTERFACES_PATH).get());
+        assertEquals(container(ROUTING, "static"), read(store, ROUTING_PATH).get());
+        assertFalse(read(store, TELEMETRY_PATH).isPresent());
+    }
+
+    @Test
+    public void testCrossShardCommit() throws Exception {
+        final DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.write(INTERFACES_PATH, container(INTERFACES, "eth0"));
+        transaction.write(TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        commit(transaction.ready());
+
+        assertEquals(container(INTERFACES, "eth0"), read(store, INTERFACES_PATH).get());
+        assertEquals(container(TELEMETRY, "sensor"), read(store, TELEMETRY_PATH).get());
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        final DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.write(INTERFACES_PATH, container(INTERFACES, "eth0"));
+        transaction.write(TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        final DOMStoreThreePhaseCommitCohort cohort = transaction.ready();
+        assertTrue(cohort.canCommit().get());
+        cohort.abort().get();
+
+        assertFalse(read(store, INTERFACES_PATH).isPresent());
+        assertFalse(read(store, TELEMETRY_PATH).isPresent());
+        // The shards are unlocked
+        write(INTERFACES_PATH, container(INTERFACES, "eth1"), TELEMETRY_PATH, container(TELEMETRY, "probe"));
+    }
+
+    @Test(timeout = 10000)
+    public void testCanCommitFailureUnlocksShards() throws Exception {
+        final DOMStoreWriteTransaction first = store.newWriteOnlyTransaction();
+        first.write(INTERFACES_PATH, container(INTERFACES, "eth0"));
+        final DOMStoreWriteTransaction second = store.newWriteOnlyTransaction();
+        second.write(INTERFACES_PATH, container(INTERFACES, "eth1"));
+        second.write(TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        commit(first.ready());
+
+        // Prepared on the data the first transaction replaced
+        try {
+            second.ready().canCommit().get();
+            fail("Conflicting transaction was validated");
+        } catch (ExecutionException e) {
+            // Expected
+        }
+
+        // Blocks until the timeout if the failed transaction still holds a shard lock
+        write(INTERFACES_PATH, container(INTERFACES, "eth2"), TELEMETRY_PATH, container(TELEMETRY, "probe"));
+        assertEquals(container(INTERFACES, "eth2"), read(store, INTERFACES_PATH).get());
+    }
+
+    @Test
+    public void testWriteRoot() throws Exception {
+        write(YangInstanceIdentifier.EMPTY, root(container(INTERFACES, "eth0"), container(TELEMETRY, "sensor")));
+        assertEquals(container(INTERFACES, "eth0"), read(store, INTERFACES_PATH).get());
+        assertEquals(container(TELEMETRY, "sensor"), read(store, TELEMETRY_PATH).get());
+
+        // Replacing the root replaces the top-level nodes of every shard
+        write(YangInstanceIdentifier.EMPTY, root(container(ROUTING, "static")));
+        assertFalse(read(store, INTERFACES_PATH).isPresent());
+        assertFalse(read(store, TELEMETRY_PATH).isPresent());
+        assertEquals(container(ROUTING, "static"), read(store, ROUTING_PATH).get());
+    }
+
+    @Test
+    public void testMergeRoot() throws Exception {
+        write(YangInstanceIdentifier.EMPTY, root(container(INTERFACES, "eth0"), container(TELEMETRY, "sensor")));
+
+        final DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.merge(YangInstanceIdentifier.EMPTY, root(container(ROUTING, "static")));
+        commit(transaction.ready());
+
+        assertEquals(container(INTERFACES, "eth0"), read(store, INTERFACES_PATH).get());
+        assertEquals(container(ROUTING, "static"), read(store, ROUTING_PATH).get());
+        assertEquals(container(TELEMETRY, "sensor"), read(store, TELEMETRY_PATH).get());
+    }
+
+    @Test
+    public void testReadRootOfReadWriteTransaction() throws Exception {
+        write(TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+
+        final DOMStoreReadWriteTransaction transaction = store.newReadWriteTransaction();
+        transaction.write(INTERFACES_PATH, container(INTERFACES, "eth0"));
+        // The root merges the transaction's own writes with the data of the shards it did not write to
+        final Optional<NormalizedNode<?, ?>> root = transaction.read(YangInstanceIdentifier.EMPTY).checkedGet();
+        assertTrue(root.isPresent());
+        assertTrue(((ContainerNode) root.get()).getChild(new NodeIdentifier(INTERFACES)).isPresent());
+        assertTrue(((ContainerNode) root.get()).getChild(new NodeIdentifier(TELEMETRY)).isPresent());
+        assertTrue(transaction.exists(INTERFACES_PATH).checkedGet());
+        transaction.close();
+    }
+
+    @Test
+    public void testReadOnlySnapshot() throws Exception {
+        final DOMStoreReadTransaction snapshot = store.newReadOnlyTransaction();
+        write(INTERFACES_PATH, container(INTERFACES, "eth0"), TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+
+        // Taken before the commit, on all the shards
+        final Optional<NormalizedNode<?, ?>> root = snapshot.read(YangInstanceIdentifier.EMPTY).checkedGet();
+        assertFalse(root.isPresent() && !((ContainerNode) root.get()).getValue().isEmpty());
+        assertFalse(snapshot.exists(TELEMETRY_PATH).checkedGet());
+        snapshot.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteAfterReady() {
+        final DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.write(INTERFACES_PATH, container(INTERFACES, "eth0"));
+        transaction.ready();
+        transaction.write(TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+    }
+
+    private void write(final YangInstanceIdentifier path, final NormalizedNode<?, ?> data) throws Exception {
+        final DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.write(path, data);
+        commit(transaction.ready());
+    }
+
+    private void write(final YangInstanceIdentifier path1, final NormalizedNode<?, ?> data1,
+                       final YangInstanceIdentifier path2, final NormalizedNode<?, ?> data2) throws Exception {
+        final DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.write(path1, data1);
+        transaction.write(path2, data2);
+        commit(transaction.ready());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.datastore;
+
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Optional;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreReadTransaction;
+import org.opendaylight.controller.sal.core.spi.data.DOMStoreThreePhaseCommitCohort;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.impl.schema.Builders;
+import org.opendaylight.yangtools.yang.data.impl.schema.ImmutableNodes;
+import org.opendaylight.yangtools.yang.data.impl.schema.builder.api.DataContainerNodeAttrBuilder;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+import org.opendaylight.yangtools.yang.model.repo.api.RevisionSourceIdentifier;
+import org.opendaylight.yangtools.yang.model.repo.api.SchemaSourceFilter;
+import org.opendaylight.yangtools.yang.model.repo.api.YangTextSchemaSource;
+import org.opendaylight.yangtools.yang.model.repo.util.FilesystemSchemaSourceCache;
+import org.opendaylight.yangtools.yang.parser.repo.SharedSchemaRepository;
+import org.opendaylight.yangtools.yang.parser.util.TextToASTTransformer;
+
+/**
+ * The schema of the data store and persistence tests, {@code sharding-test} in the test resources. Split in two shards
+ * by top-level node, {@code interfaces} and {@code routing} share shard 1, {@code telemetry} has shard 0.
+ */
+public final class ShardingTestSchema {
+
+    private static final String NAMESPACE = "urn:opendaylight:mount:cache:sharding-test";
+    private static final String REVISION = "2017-06-01";
+
+    public static final QName INTERFACES = QName.create(NAMESPACE, REVISION, "interfaces");
+    public static final QName ROUTING = QName.create(NAMESPACE, REVISION, "routing");
+    public static final QName TELEMETRY = QName.create(NAMESPACE, REVISION, "telemetry");
+    public static final QName NAME = QName.create(NAMESPACE, REVISION, "name");
+
+    public static final YangInstanceIdentifier INTERFACES_PATH = YangInstanceIdentifier.of(INTERFACES);
+    public static final YangInstanceIdentifier ROUTING_PATH = YangInstanceIdentifier.of(ROUTING);
+    public static final YangInstanceIdentifier TELEMETRY_PATH = YangInstanceIdentifier.of(TELEMETRY);
+
+    private ShardingTestSchema() {
+        throw new AssertionError("Utility class");
+    }
+
+    public static SchemaContext createSchemaContext() throws Exception {
+        final SharedSchemaRepository repository = new SharedSchemaRepository("sharding-test");
+        repository.registerSchemaSourceListener(TextToASTTransformer.create(repository, repository));
+        repository.registerSchemaSourceListener(new FilesystemSchemaSourceCache<>(repository,
+                YangTextSchemaSource.class, new File(ShardingTestSchema.class.getResource("/sharding-test").toURI())));
+        return repository.createSchemaContextFactory(SchemaSourceFilter.ALWAYS_ACCEPT)
+                .createSchemaContext(Collections.singleton(
+                        RevisionSourceIdentifier.create("sharding-test", Optional.of(REVISION))))
+                .checkedGet();
+    }
+
+    /**
+     * @return a configuration store of two shards, split by top-level node
+     */
+    static ShardedCachedDOMStore createStore(final SchemaContext schemaContext) {
+        return new ShardedCachedDOMStore("sharding-test", Arrays.asList(
+                InMemoryDOMDataStoreFactory.newShardInstance(YangInstanceIdentifier.EMPTY, schemaContext,
+                        LogicalDatastoreType.CONFIGURATION, 0, null),
+                InMemoryDOMDataStoreFactory.newShardInstance(YangInstanceIdentifier.EMPTY, schemaContext,
+                        LogicalDatastoreType.CONFIGURATION, 1, null)),
+                CachedDOMStores.ShardBy.TOP_LEVEL_NODE);
+    }
+
+    public static ContainerNode container(final QName qname, final String name) {
+        return Builders.containerBuilder().withNodeIdentifier(new NodeIdentifier(qname))
+                .withChild(ImmutableNodes.leafNode(NAME, name)).build();
+    }
+
+    public static ContainerNode root(final ContainerNode... children) {
+        final DataContainerNodeAttrBuilder<NodeIdentifier, ContainerNode> builder =
+                Builders.containerBuilder().withNodeIdentifier(new NodeIdentifier(SchemaContext.NAME));
+        for (ContainerNode child : children) {
+            builder.withChild(child);
+        }
+        return builder.build();
+    }
+
+    public static void commit(final DOMStoreThreePhaseCommitCohort cohort) throws Exception {
+        assertTrue(cohort.canCommit().get());
+        cohort.preCommit().get();
+        cohort.commit().get();
+    }
+
+    public static Optional<NormalizedNode<?, ?>> read(final CachedDOMStore store, final YangInstanceIdentifier path)
+            throws Exception {
+        try (DOMStoreReadTransaction transaction = store.newReadOnlyTransaction()) {
+            return transaction.read(path).checkedGet();
+        }
+    }
+}
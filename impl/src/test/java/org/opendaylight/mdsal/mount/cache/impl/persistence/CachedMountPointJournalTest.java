@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.INTERFACES;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.INTERFACES_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.ROUTING;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.ROUTING_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.TELEMETRY;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.TELEMETRY_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.container;
+
+import com.google.common.base.Optional;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.internal.util.reflection.Whitebox;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.CachedDOMStores;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema;
+import org.opendaylight.mdsal.mount.cache.impl.tx.CachedDOMModification;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+
+public class CachedMountPointJournalTest {
+
+    private static final long SYNC_INTERVAL_MILLIS = 10;
+
+    private static SchemaContext schemaContext;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<CachedDOMStores> createdStores = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+    private Path file;
+
+    @BeforeClass
+    public static void setUpSchema() throws Exception {
+        schemaContext = ShardingTestSchema.createSchemaContext();
+    }
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        file = folder.getRoot().toPath().resolve(".journal").resolve("node.journal");
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        createdStores.forEach(CachedDOMStores::close);
+    }
+
+    @Test
+    public void testRecover() throws Exception {
+        final CachedMountPointJournal journal = newJournal();
+        assertEquals(0, journal.recover(newStores(), 0));
+        put(journal, INTERFACES_PATH, container(INTERFACES, "eth0"));
+        put(journal, TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        commit(journal, CachedDOMModification.delete(LogicalDatastoreType.CONFIGURATION, INTERFACES_PATH));
+        journal.close();
+
+        final CachedDOMStores stores = newStores();
+        final CachedMountPointJournal recovered = newJournal();
+        assertEquals(3, recovered.recover(stores, 0));
+        assertFalse(read(stores, INTERFACES_PATH).isPresent());
+        assertEquals(container(TELEMETRY, "sensor"), read(stores, TELEMETRY_PATH).get());
+        // The sequence goes on from the last entry
+        assertEquals(3, recovered.checkpoint(() -> { }));
+        recovered.close();
+    }
+
+    @Test
+    public void testRecoverAfterSnapshotSequence() throws Exception {
+        final CachedMountPointJournal journal = newJournal();
+        journal.recover(newStores(), 0);
+        put(journal, INTERFACES_PATH, container(INTERFACES, "eth0"));
+        put(journal, ROUTING_PATH, container(ROUTING, "static"));
+        put(journal, TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        journal.close();
+
+        // The first two entries are in the snapshot, only the last one is replayed
+        final CachedDOMStores stores = newStores();
+        final CachedMountPointJournal recovered = newJournal();
+        assertEquals(1, recovered.recover(stores, 2));
+        assertFalse(read(stores, INTERFACES_PATH).isPresent());
+        assertFalse(read(stores, ROUTING_PATH).isPresent());
+        assertEquals(container(TELEMETRY, "sensor"), read(stores, TELEMETRY_PATH).get());
+        recovered.close();
+    }
+
+    @Test
+    public void testRecoverWithSnapshotAheadOfJournal() throws Exception {
+        final CachedMountPointJournal journal = newJournal();
+        journal.recover(newStores(), 0);
+        put(journal, INTERFACES_PATH, container(INTERFACES, "eth0"));
+        journal.close();
+
+        // The sequence goes on from the snapshot, the entries following it are not mistaken for older ones
+        final CachedMountPointJournal recovered = newJournal();
+        assertEquals(0, recovered.recover(newStores(), 5));
+        put(recovered, TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        assertEquals(6, recovered.checkpoint(() -> { }));
+        recovered.close();
+
+        final CachedDOMStores stores = newStores();
+        final CachedMountPointJournal again = newJournal();
+        assertEquals(1, again.recover(stores, 5));
+        assertEquals(container(TELEMETRY, "sensor"), read(stores, TELEMETRY_PATH).get());
+        again.close();
+    }
+
+    @Test
+    public void testRoll() throws Exception {
+        final CachedMountPointJournal journal = newJournal();
+        journal.recover(newStores(), 0);
+        put(journal, INTERFACES_PATH, container(INTERFACES, "eth0"));
+        put(journal, ROUTING_PATH, container(ROUTING, "static"));
+        journal.roll(journal.checkpoint(() -> { }));
+        put(journal, TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        journal.close();
+
+        // The rolled entries are dropped from the file
+        final CachedDOMStores stores = newStores();
+        final CachedMountPointJournal recovered = newJournal();
+        assertEquals(1, recovered.recover(stores, 0));
+        assertFalse(read(stores, INTERFACES_PATH).isPresent());
+        assertEquals(container(TELEMETRY, "sensor"), read(stores, TELEMETRY_PATH).get());
+        recovered.close();
+    }
+
+    @Test
+    public void testTruncatedLastEntry() throws Exception {
+        writeTwoEntries();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertTornLastEntryDiscarded();
+    }
+
+    @Test
+    public void testCorruptedLastEntry() throws Exception {
+        writeTwoEntries();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer lastByte = ByteBuffer.allocate(1);
+            channel.read(lastByte, channel.size() - 1);
+            lastByte.put(0, (byte) ~lastByte.get(0));
+            lastByte.rewind();
+            channel.write(lastByte, channel.size() - 1);
+        }
+
+        assertTornLastEntryDiscarded();
+    }
+
+    @Test(timeout = 10000)
+    public void testWriteFailureThenRetry() throws Exception {
+        final CachedMountPointJournal journal = newJournal();
+        journal.recover(newStores(), 0);
+        put(journal, INTERFACES_PATH, container(INTERFACES, "eth0"));
+        while (Files.size(file) == 0) {
+            Thread.sleep(SYNC_INTERVAL_MILLIS);
+        }
+
+        // The disk fails
+        final Object writeLock = Whitebox.getInternalState(journal, "writeLock");
+        final FileChannel channel = (FileChannel) Whitebox.getInternalState(journal, "channel");
+        final FileChannel failingChannel = FileChannel.open(folder.newFile().toPath(), StandardOpenOption.WRITE);
+        failingChannel.close();
+        synchronized (writeLock) {
+            Whitebox.setInternalState(journal, "channel", failingChannel);
+        }
+        put(journal, ROUTING_PATH, container(ROUTING, "static"));
+        while (Whitebox.getInternalState(journal, "failure") == null) {
+            Thread.sleep(SYNC_INTERVAL_MILLIS);
+        }
+
+        // No transaction is acknowledged without being journaled
+        try {
+            put(journal, TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+            fail("Committed while the journal cannot be written");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        // The disk recovers, the kept entry is written again
+        synchronized (writeLock) {
+            Whitebox.setInternalState(journal, "channel", channel);
+        }
+        while (Whitebox.getInternalState(journal, "failure") != null) {
+            Thread.sleep(SYNC_INTERVAL_MILLIS);
+        }
+        put(journal, TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        journal.close();
+
+        final CachedDOMStores stores = newStores();
+        final CachedMountPointJournal recovered = newJournal();
+        assertEquals(3, recovered.recover(stores, 0));
+        assertEquals(container(INTERFACES, "eth0"), read(stores, INTERFACES_PATH).get());
+        assertEquals(container(ROUTING, "static"), read(stores, ROUTING_PATH).get());
+        assertEquals(container(TELEMETRY, "sensor"), read(stores, TELEMETRY_PATH).get());
+        recovered.close();
+    }
+
+    @Test
+    public void testFailedCommitIsNotJournaled() throws Exception {
+        final CachedMountPointJournal journal = newJournal();
+        journal.recover(newStores(), 0);
+        try {
+            journal.commit(() -> {
+                throw new IllegalStateException("Rejected by the store");
+            }, Collections.singletonList(CachedDOMModification.put(LogicalDatastoreType.CONFIGURATION,
+                    INTERFACES_PATH, container(INTERFACES, "eth0"))));
+            fail("The failure of the commit was not propagated");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        // Written after the gap left by the failed commit
+        put(journal, TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        journal.close();
+
+        final CachedDOMStores stores = newStores();
+        final CachedMountPointJournal recovered = newJournal();
+        assertEquals(1, recovered.recover(stores, 0));
+        assertFalse(read(stores, INTERFACES_PATH).isPresent());
+        assertEquals(container(TELEMETRY, "sensor"), read(stores, TELEMETRY_PATH).get());
+        recovered.close();
+    }
+
+    private void writeTwoEntries() throws Exception {
+        final CachedMountPointJournal journal = newJournal();
+        journal.recover(newStores(), 0);
+        put(journal, INTERFACES_PATH, container(INTERFACES, "eth0"));
+        put(journal, TELEMETRY_PATH, container(TELEMETRY, "sensor"));
+        journal.close();
+    }
+
+    private void assertTornLastEntryDiscarded() throws Exception {
+        final CachedDOMStores stores = newStores();
+        final CachedMountPointJournal recovered = newJournal();
+        assertEquals(1, recovered.recover(stores, 0));
+        assertEquals(container(INTERFACES, "eth0"), read(stores, INTERFACES_PATH).get());
+        assertFalse(read(stores, TELEMETRY_PATH).isPresent());
+
+        // The next entries are appended after the last valid one
+        put(recovered, ROUTING_PATH, container(ROUTING, "static"));
+        recovered.close();
+        final CachedDOMStores restarted = newStores();
+        final CachedMountPointJournal again = newJournal();
+        assertEquals(2, again.recover(restarted, 0));
+        assertEquals(container(ROUTING, "static"), read(restarted, ROUTING_PATH).get());
+        again.close();
+    }
+
+    private CachedMountPointJournal newJournal() {
+        return new CachedMountPointJournal("node", file, scheduler, SYNC_INTERVAL_MILLIS);
+    }
+
+    private CachedDOMStores newStores() {
+        final CachedDOMStores created = CachedDOMStores.create(YangInstanceIdentifier.EMPTY, schemaContext);
+        createdStores.add(created);
+        return created;
+    }
+
+    private static void put(final CachedMountPointJournal journal, final YangInstanceIdentifier path,
+                            final NormalizedNode<?, ?> data) {
+        commit(journal, CachedDOMModification.put(LogicalDatastoreType.CONFIGURATION, path, data));
+    }
+
+    private static void commit(final CachedMountPointJournal journal, final CachedDOMModification modification) {
+        // Only the journal is under test, the stores are those of the recovery
+        journal.commit(() -> { }, Collections.singletonList(modification));
+    }
+
+    private static Optional<NormalizedNode<?, ?>> read(final CachedDOMStores stores,
+                                                       final YangInstanceIdentifier path) throws Exception {
+        return ShardingTestSchema.read(stores.getStore(LogicalDatastoreType.CONFIGURATION), path);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.INTERFACES;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.TELEMETRY;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.container;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.root;
+
+import com.google.common.base.Strings;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+
+public class CachedMountPointSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() {
+        file = folder.getRoot().toPath().resolve(".snapshots").resolve("node.snapshot");
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        final CachedMountPointSnapshot written = snapshot(7, "eth0");
+        CachedMountPointSnapshot.write(file, written);
+
+        final CachedMountPointSnapshot read = CachedMountPointSnapshot.read(file);
+        assertEquals(7, read.getSequence());
+        assertEquals(written.getRoots(), read.getRoots());
+    }
+
+    @Test
+    public void testReadMissing() throws IOException {
+        assertNull(CachedMountPointSnapshot.read(file));
+    }
+
+    @Test
+    public void testLargeRecords() throws IOException {
+        // Larger than the write buffer and the checksum chunks
+        final CachedMountPointSnapshot written = snapshot(1, Strings.repeat("eth", 100000));
+        CachedMountPointSnapshot.write(file, written);
+
+        assertEquals(written.getRoots(), CachedMountPointSnapshot.read(file).getRoots());
+    }
+
+    @Test
+    public void testOverwrite() throws IOException {
+        CachedMountPointSnapshot.write(file, snapshot(1, "eth0"));
+        final CachedMountPointSnapshot second = snapshot(2, "eth1");
+        CachedMountPointSnapshot.write(file, second);
+
+        final CachedMountPointSnapshot read = CachedMountPointSnapshot.read(file);
+        assertEquals(2, read.getSequence());
+        assertEquals(second.getRoots(), read.getRoots());
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        CachedMountPointSnapshot.write(file, snapshot(1, "eth0"));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertUnreadable();
+    }
+
+    @Test
+    public void testCorrupted() throws IOException {
+        CachedMountPointSnapshot.write(file, snapshot(1, "eth0"));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer lastByte = ByteBuffer.allocate(1);
+            channel.read(lastByte, channel.size() - 1);
+            lastByte.put(0, (byte) ~lastByte.get(0));
+            lastByte.rewind();
+            channel.write(lastByte, channel.size() - 1);
+        }
+
+        assertUnreadable();
+    }
+
+    @Test
+    public void testWriteFailureThenRetry() throws IOException {
+        final CachedMountPointSnapshot first = snapshot(1, "eth0");
+        CachedMountPointSnapshot.write(file, first);
+
+        // The temporary file cannot be created
+        final Path tmpFile = Files.createDirectory(file.resolveSibling(file.getFileName() + ".tmp"));
+        try {
+            CachedMountPointSnapshot.write(file, snapshot(2, "eth1"));
+            fail("Snapshot written over a directory");
+        } catch (IOException e) {
+            // Expected
+        }
+        // The previous snapshot is intact
+        assertEquals(first.getRoots(), CachedMountPointSnapshot.read(file).getRoots());
+
+        Files.delete(tmpFile);
+        final CachedMountPointSnapshot second = snapshot(2, "eth1");
+        CachedMountPointSnapshot.write(file, second);
+        assertEquals(second.getRoots(), CachedMountPointSnapshot.read(file).getRoots());
+    }
+
+    private void assertUnreadable() {
+        try {
+            CachedMountPointSnapshot.read(file);
+            fail("Damaged snapshot was read");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static CachedMountPointSnapshot snapshot(final long sequence, final String name) {
+        final Map<LogicalDatastoreType, NormalizedNode<?, ?>> roots = new EnumMap<>(LogicalDatastoreType.class);
+        roots.put(LogicalDatastoreType.CONFIGURATION, root(container(INTERFACES, name)));
+        roots.put(LogicalDatastoreType.OPERATIONAL, root(container(TELEMETRY, name)));
+        return new CachedMountPointSnapshot(sequence, roots);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.mdsal.mount.cache.impl.tx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.INTERFACES;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.INTERFACES_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.ROUTING;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.ROUTING_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.TELEMETRY;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.TELEMETRY_PATH;
+import static org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema.container;
+
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.controller.md.sal.dom.store.impl.InMemoryDOMDataStore;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.InMemoryDOMDataStoreFactory;
+import org.opendaylight.mdsal.mount.cache.impl.datastore.ShardingTestSchema;
+import org.opendaylight.mdsal.mount.cache.impl.stats.CachedMountPointStats;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.model.api.SchemaContext;
+
+public class CachedDOMWriteBatcherTest {
+
+    private static final String NODE_ID = "batcher-test";
+    // Long enough for the batches to only be committed by the explicit flushes
+    private static final long WINDOW_MICROS = 60000000;
+    private static final QName UNKNOWN = QName.create("urn:opendaylight:mount:cache:unknown", "2017-06-01", "unknown");
+
+    private static SchemaContext schemaContext;
+
+    private InMemoryDOMDataStore store;
+    private ScheduledExecutorService scheduler;
+    private CachedMountPointStats mountPointStats;
+    private CachedDOMWriteBatcher batcher;
+
+    @BeforeClass
+    public static void setUpSchema() throws Exception {
+        schemaContext = ShardingTestSchema.createSchemaContext();
+    }
+
+    @Before
+    public void setUp() {
+        store = InMemoryDOMDataStoreFactory.newShardInstance(YangInstanceIdentifier.EMPTY, schemaContext,
+                LogicalDatastoreType.CONFIGURATION, 0, null);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        mountPointStats = new CachedMountPointStats(NODE_ID);
+        batcher = new CachedDOMWriteBatcher(NODE_ID, type -> store, MoreExecutors.directExecutor(), scheduler,
+                WINDOW_MICROS, 64, null, mountPointStats);
+    }
+
+    @After
+    public void tearDown() {
+        batcher.close();
+        scheduler.shutdownNow();
+        store.close();
+    }
+
+    @Test
+    public void testClientTransactionsCounted() throws Exception {
+        final CheckedFuture<Void, TransactionCommitFailedException> first = put(INTERFACES_PATH,
+                container(INTERFACES, "eth0"));
+        final CheckedFuture<Void, TransactionCommitFailedException> second = put(ROUTING_PATH,
+                container(ROUTING, "static"));
+        final CheckedFuture<Void, TransactionCommitFailedException> third = put(TELEMETRY_PATH,
+                container(TELEMETRY, "sensor"));
+        batcher.flush();
+        first.checkedGet();
+        second.checkedGet();
+        third.checkedGet();
+
+        // A single batch, but three transactions of the mount point
+        assertEquals(3, mountPointStats.getSubmittedTransactionCount());
+        assertEquals(3, mountPointStats.getCommittedTransactionCount());
+        assertEquals(0, mountPointStats.getCanCommitFailureCount());
+    }
+
+    @Test
+    public void testInvalidTransactionCounted() throws Exception {
+        final CheckedFuture<Void, TransactionCommitFailedException> valid = put(INTERFACES_PATH,
+                container(INTERFACES, "eth0"));
+        final CheckedFuture<Void, TransactionCommitFailedException> invalid = put(YangInstanceIdentifier.of(UNKNOWN),
+                container(UNKNOWN, "unknown"));
+        batcher.flush();
+        valid.checkedGet();
+        try {
+            invalid.checkedGet();
+            fail("Write out of the schema was committed");
+        } catch (TransactionCommitFailedException e) {
+            // Expected
+        }
+
+        assertEquals(2, mountPointStats.getSubmittedTransactionCount());
+        assertEquals(1, mountPointStats.getCommittedTransactionCount());
+        assertEquals(1, mountPointStats.getCanCommitFailureCount());
+    }
+
+    private CheckedFuture<Void, TransactionCommitFailedException> put(final YangInstanceIdentifier path,
+                                                                      final NormalizedNode<?, ?> data) {
+        final BatchedDOMWriteTransaction transaction = new BatchedDOMWriteTransaction(NODE_ID, batcher,
+                mountPointStats);
+        transaction.put(LogicalDatastoreType.CONFIGURATION, path, data);
+        return transaction.submit();
+    }
+}